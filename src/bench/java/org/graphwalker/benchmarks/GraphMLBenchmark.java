@@ -0,0 +1,86 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.graphwalker.graph.Graph;
+import org.graphwalker.io.GraphML;
+import org.graphwalker.io.ModelCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Parsing and merging of the GraphML test fixtures, and reading them from the model cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphMLBenchmark {
+
+  @Param({"graphml/test03", "graphml/merging", "graphml/mergeSubgraphs_01", "graphml/reqtags/ExtendedMain.graphml"})
+  public String model;
+
+  private ModelCache cache;
+
+  @Setup
+  public void setUp() throws IOException {
+    File folder = File.createTempFile("modelcache", "");
+    folder.delete();
+    cache = new ModelCache(folder);
+    loadCached();
+  }
+
+  @TearDown
+  public void tearDown() {
+    for (File file : cache.getFolder().listFiles()) {
+      file.delete();
+    }
+    cache.getFolder().delete();
+  }
+
+  @Benchmark
+  public Graph load() {
+    GraphML graphML = new GraphML();
+    graphML.load(model);
+    return graphML.getModel();
+  }
+
+  @Benchmark
+  public Graph loadCached() {
+    GraphML graphML = new GraphML();
+    graphML.setModelCache(cache);
+    graphML.load(model);
+    return graphML.getModel();
+  }
+}
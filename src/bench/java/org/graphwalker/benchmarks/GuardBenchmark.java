@@ -0,0 +1,79 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.benchmarks;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.graphwalker.exceptions.FoundNoEdgeException;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.ModelSynthesizer;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Evaluation of the guards of the out-edges of a vertex, through each script engine.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GuardBenchmark {
+
+  @Param({"BEANSHELL", "JAVASCRIPT"})
+  public String engine;
+
+  /** The number of out-edges of the vertex, all of them but the loop of the ring are guarded */
+  @Param({"4", "32"})
+  public int outDegree;
+
+  private ExtendedFiniteStateMachine machine;
+
+  @Setup(Level.Trial)
+  public void setUp() throws FoundNoEdgeException {
+    // A single vertex, so the ring is a loop and every chord is an out-edge of it
+    ModelSynthesizer synthesizer = new ModelSynthesizer();
+    synthesizer.setVertices(1);
+    synthesizer.setEdges(outDegree);
+    synthesizer.setGuardDensity(1);
+    synthesizer.setSeed(1);
+    Graph graph = synthesizer.createGraph();
+    machine = new ExtendedFiniteStateMachine(engine.equals("JAVASCRIPT"));
+    machine.setModel(graph);
+    machine.walkEdge(graph.findEdge("e_Init"));
+  }
+
+  @Benchmark
+  public Set<Edge> evaluateGuards() throws FoundNoEdgeException {
+    return machine.getCurrentOutEdges();
+  }
+}
@@ -0,0 +1,94 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.graphwalker.exceptions.FoundNoEdgeException;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.ModelSynthesizer;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
+import org.graphwalker.machines.FiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of walking edges in a FSM, and in an EFSM evaluating the actions of the edges.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MachineBenchmark {
+
+  @Param({"100", "10000"})
+  public int vertices;
+
+  @Param({"FSM", "BEANSHELL", "JAVASCRIPT"})
+  public String machineType;
+
+  private FiniteStateMachine machine;
+  private final Map<Vertex, Edge[]> outEdges = new HashMap<Vertex, Edge[]>();
+  private int walked;
+
+  @Setup(Level.Trial)
+  public void setUp() throws FoundNoEdgeException {
+    ModelSynthesizer synthesizer = new ModelSynthesizer();
+    synthesizer.setVertices(vertices);
+    synthesizer.setEdges(3 * vertices);
+    synthesizer.setGuardDensity(machineType.equals("FSM") ? 0 : 0.5);
+    synthesizer.setSeed(1);
+    Graph graph = synthesizer.createGraph();
+    if (machineType.equals("FSM")) {
+      machine = new FiniteStateMachine();
+    } else {
+      machine = new ExtendedFiniteStateMachine(machineType.equals("JAVASCRIPT"));
+    }
+    machine.setModel(graph);
+    for (Vertex vertex : graph.getVertices()) {
+      outEdges.put(vertex, graph.getOutEdges(vertex).toArray(new Edge[0]));
+    }
+    machine.walkEdge(outEdges.get(machine.getCurrentVertex())[0]);
+  }
+
+  /**
+   * Walks the out-edges of each vertex in turn. The edges with guards may be walked as well, only
+   * the walk itself is measured.
+   */
+  @Benchmark
+  public boolean walkEdge() {
+    Edge[] edges = outEdges.get(machine.getCurrentVertex());
+    return machine.walkEdge(edges[walked++ % edges.length]);
+  }
+}
@@ -0,0 +1,129 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.graphwalker.ModelBasedTesting;
+import org.graphwalker.conditions.EdgeCoverage;
+import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.generators.A_StarPathGenerator;
+import org.graphwalker.generators.AllPathPermutationsGenerator;
+import org.graphwalker.generators.LeastVisitedPathGenerator;
+import org.graphwalker.generators.NonOptimizedShortestPath;
+import org.graphwalker.generators.PathGenerator;
+import org.graphwalker.generators.RandomPathGenerator;
+import org.graphwalker.generators.RequirementPlannerGenerator;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.ModelSynthesizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generation of a complete path to 100% edge coverage, by each generator. For REQUIREMENT_PLANNER
+ * every edge is tagged with a requirement of its own, so that the planned requirement coverage is
+ * the edge coverage.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PathGeneratorBenchmark {
+
+  @Param({"RANDOM", "A_STAR", "SHORTEST_NON_OPTIMIZED", "LEAST_VISITED", "ALL_PATH_PERMUTATIONS", "REQUIREMENT_PLANNER"})
+  public String generator;
+
+  @Param({"30", "100"})
+  public int vertices;
+
+  /**
+   * Walks the model as an EFSM with guards when true, selected with -p extended=true. The A_STAR
+   * generator then searches the data states as well, which is only practical for small models.
+   */
+  @Param({"false"})
+  public boolean extended;
+
+  private Graph graph;
+  private ModelBasedTesting mbt;
+
+  @Setup(Level.Trial)
+  public void createGraph() {
+    ModelSynthesizer synthesizer = new ModelSynthesizer();
+    synthesizer.setVertices(vertices);
+    synthesizer.setEdges(3 * vertices);
+    synthesizer.setGuardDensity(extended ? 0.5 : 0);
+    synthesizer.setSeed(1);
+    graph = synthesizer.createGraph();
+    if (generator.equals("REQUIREMENT_PLANNER")) {
+      for (Edge edge : graph.getEdges()) {
+        edge.setReqTagKey("R_" + edge.getLabelKey());
+      }
+    }
+  }
+
+  /**
+   * Walks a copy of the graph, since the walk marks its vertices and edges as visited, and the edge
+   * coverage of a walked graph can not be fulfilled again.
+   */
+  @Setup(Level.Invocation)
+  public void setUp() throws StopConditionException {
+    mbt = new ModelBasedTesting();
+    mbt.setGraph(new Graph(graph));
+    mbt.enableExtended(extended);
+    mbt.setGenerator(createGenerator());
+  }
+
+  private PathGenerator createGenerator() throws StopConditionException {
+    EdgeCoverage edgeCoverage = new EdgeCoverage(1.0);
+    if (generator.equals("A_STAR")) {
+      return new A_StarPathGenerator(edgeCoverage);
+    } else if (generator.equals("SHORTEST_NON_OPTIMIZED")) {
+      return new NonOptimizedShortestPath(edgeCoverage);
+    } else if (generator.equals("LEAST_VISITED")) {
+      return new LeastVisitedPathGenerator(edgeCoverage);
+    } else if (generator.equals("ALL_PATH_PERMUTATIONS")) {
+      return new AllPathPermutationsGenerator(edgeCoverage);
+    } else if (generator.equals("REQUIREMENT_PLANNER")) {
+      return new RequirementPlannerGenerator(edgeCoverage);
+    }
+    return new RandomPathGenerator(edgeCoverage);
+  }
+
+  @Benchmark
+  public int generatePath() throws InterruptedException {
+    int steps = 0;
+    while (mbt.hasNextStep()) {
+      mbt.getNextStep();
+      steps++;
+    }
+    return steps;
+  }
+}
@@ -0,0 +1,110 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.graphwalker.StatisticsManager;
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.ModelSynthesizer;
+import org.graphwalker.statistics.EdgeCoverageStatistics;
+import org.graphwalker.statistics.EdgeSequenceCoverageStatistics;
+import org.graphwalker.statistics.RequirementCoverageStatistics;
+import org.graphwalker.statistics.VertexCoverageStatistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Throughput of {@link StatisticsManager#addProgress(AbstractElement)} with the counters used by
+ * the model, keeping the progress in memory or streaming it to a file.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StatisticsBenchmark {
+
+  @Param({"100", "10000"})
+  public int vertices;
+
+  @Param({"false", "true"})
+  public boolean streaming;
+
+  private Graph graph;
+  private AbstractElement[] elements;
+  private StatisticsManager manager;
+  private File progressFile;
+  private int added;
+
+  @Setup(Level.Trial)
+  public void createGraph() {
+    ModelSynthesizer synthesizer = new ModelSynthesizer();
+    synthesizer.setVertices(vertices);
+    synthesizer.setEdges(3 * vertices);
+    synthesizer.setGuardDensity(0);
+    synthesizer.setSeed(1);
+    graph = synthesizer.createGraph();
+    elements = graph.getEdges().toArray(new AbstractElement[0]);
+  }
+
+  /**
+   * The manager is created for each iteration, since the in-memory progress grows with every step.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException {
+    manager = new StatisticsManager();
+    manager.addStatisicsCounter("Vertex Coverage", new VertexCoverageStatistics(graph));
+    manager.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(graph));
+    manager.addStatisicsCounter("2-Edge Sequence Coverage", new EdgeSequenceCoverageStatistics(graph, 2));
+    manager.addStatisicsCounter("3-Edge Sequence Coverage", new EdgeSequenceCoverageStatistics(graph, 3));
+    manager.addStatisicsCounter("Requirements Coverage", new RequirementCoverageStatistics(graph));
+    if (streaming) {
+      progressFile = File.createTempFile("progress", ".txt");
+      manager.setProgressFile(progressFile);
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    manager.close();
+    if (progressFile != null) {
+      progressFile.delete();
+    }
+  }
+
+  @Benchmark
+  public void addProgress() {
+    manager.addProgress(elements[added++ % elements.length]);
+  }
+}
@@ -0,0 +1,82 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.graphwalker.conditions.ReachedEdge;
+import org.graphwalker.conditions.ReachedVertex;
+import org.graphwalker.graph.ModelSynthesizer;
+import org.graphwalker.machines.FiniteStateMachine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Setup of the stop conditions computing the Floyd-Warshall distances of the model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StopConditionBenchmark {
+
+  @Param({"50", "200", "800"})
+  public int vertices;
+
+  private FiniteStateMachine machine;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    machine = new FiniteStateMachine();
+    ModelSynthesizer synthesizer = new ModelSynthesizer();
+    synthesizer.setVertices(vertices);
+    synthesizer.setEdges(3 * vertices);
+    synthesizer.setGuardDensity(0);
+    synthesizer.setSeed(1);
+    machine.setModel(synthesizer.createGraph());
+  }
+
+  @Benchmark
+  public ReachedVertex reachedVertex() {
+    ReachedVertex condition = new ReachedVertex("V" + (vertices - 1));
+    condition.setMachine(machine);
+    return condition;
+  }
+
+  /**
+   * The edges of the ring are created first, so the last edge of the ring is e&lt;vertices - 1&gt;.
+   */
+  @Benchmark
+  public ReachedEdge reachedEdge() {
+    ReachedEdge condition = new ReachedEdge("e" + (vertices - 1));
+    condition.setMachine(machine);
+    return condition;
+  }
+}
@@ -53,6 +53,10 @@ import org.graphwalker.analyze.Analyze;
 import org.graphwalker.conditions.AlternativeCondition;
 import org.graphwalker.exceptions.GeneratorException;
 import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.generators.A_StarPathGenerator;
+import org.graphwalker.generators.PathGenerator;
+import org.graphwalker.generators.PlanCache;
+import org.graphwalker.graph.ModelSynthesizer;
 import org.graphwalker.io.PrintHTMLTestSequence;
 import org.jdom2.JDOMException;
 
@@ -82,6 +86,20 @@ import org.jdom2.JDOMException;
  * </pre>
  * 
  * <br>
+ * <strong>Example:</strong> Merge graphml files and save the merged result, gzipped, to a file.<br>
+ * 
+ * <pre>
+ * java -jar graphwalker.jar merge -f folder -o merged.graphml.gz
+ * </pre>
+ * 
+ * <br>
+ * <strong>Example:</strong> Create a model of 100000 vertices, with 3 levels of subgraphs<br>
+ * 
+ * <pre>
+ * java -jar graphwalker.jar synthesize -o folder -v 100000 -e 300000 -n 2
+ * </pre>
+ * 
+ * <br>
  * <strong>Example:</strong> Generate offline test sequence, using random walk<br>
  * 
  * <pre>
@@ -205,6 +223,8 @@ public class CLI {
         buildSoapCLI();
       } else if (args[0].equalsIgnoreCase("analyze")) {
         buildAnalyzeCLI();
+      } else if (args[0].equalsIgnoreCase("synthesize")) {
+        buildSynthesizeCLI();
       } else if (args[0].equals("-v") || args[0].equals("--version")) {
         printVersionInformation();
         return;
@@ -281,6 +301,12 @@ public class CLI {
       else if (args[0].equalsIgnoreCase("analyze")) {
         RunCommandAnalyze(cl);
       }
+      /**
+       * Command: synthesize
+       */
+      else if (args[0].equalsIgnoreCase("synthesize")) {
+        RunCommandSynthesize(cl);
+      }
       /**
        * Command: manual
        */
@@ -350,6 +376,7 @@ public class CLI {
     System.out.println("    requirements");
     System.out.println("    soap");
     System.out.println("    source");
+    System.out.println("    synthesize");
     System.out.println("    xml\n");
     System.out.println("Type 'java -jar graphwalker.jar -v (--version)' for version information.");
   }
@@ -399,6 +426,11 @@ public class CLI {
       header =
           "This will start an analyzing session of an graphml file.\n" + "Graphwalker will try to find any potentials pitfalls, and report them"
               + " This is usefull when the user whishes to debug a graph.";
+    } else if (helpSection.equalsIgnoreCase("synthesize")) {
+      buildSynthesizeCLI();
+      header =
+          "Create a model of any size, for load testing and benchmarking.\n" + "The model is written as graphml files to a folder, "
+              + "one file for the mother graph and one for each level of subgraphs.";
     } else {
       System.err.println("Type 'java -jar graphwalker.jar help' for usage.");
       return;
@@ -470,6 +502,9 @@ public class CLI {
     opt.addOption("r", "report-output", true, "Optional report filename to save report to. (Also requires option -t)  (To be better documented)");
     opt.addOption("w", "weighted", false, "Use weighted values if they exist in the model, and the generator is RANDOM.");
     opt.addOption("d", "dry-run", false, "Will execute a dry-run of the model. Dialog will pop up for every edge and vertex.");
+    opt.addOption(OptionBuilder.withArgName("folder")
+        .withDescription("Optional folder where paths planned by the A_STAR generator are cached, and reused by later runs.").hasArg()
+        .withLongOpt("plan-cache").create("p"));
   }
 
   /**
@@ -505,10 +540,28 @@ public class CLI {
         .withArgName("seconds")
         .withDescription(
             "Prints the test coverage of the graph during execution every <n second>. The printout goes to the log file defined in "
-                + "mbt.properties, and only, if at least INFO level is set in " + "that same file.").hasArg().create("o"));
+                + "mbt.properties, and only, if at least INFO level is set in " + "that same file. "
+                + "When using option -k, the coverage of the selected walk is printed once, after the walks are done.").hasArg().create("o"));
     opt.addOption("t", "report-template", true, "Optional report template to use. (Also requires option -r) (To be better documented)");
     opt.addOption("r", "report-output", true, "Optional report filename to save report to. (Also requires option -t)  (To be better documented)");
     opt.addOption("w", "weighted", false, "Use weighted values if they exist in the model, and the generator is RANDOM.");
+    opt.addOption(OptionBuilder
+        .withArgName("walks")
+        .withDescription(
+            "Generates <walks> independent walks in parallel, and prints only one of them, selected by option -m. "
+                + "Only useful with generators that are not deterministic, like RANDOM.").hasArg().withLongOpt("walkers").create("k"));
+    opt.addOption(OptionBuilder.withArgName("policy")
+        .withDescription("How to select the walk to print when using option -k. One of FIRST, SHORTEST or BEST_COVERAGE. Default is SHORTEST.")
+        .hasArg().withLongOpt("merge").create("m"));
+    opt.addOption(OptionBuilder.withArgName("threads")
+        .withDescription("The number of threads used when using option -k. Default is the number of available processors.").hasArg()
+        .withLongOpt("threads").create("n"));
+    opt.addOption(OptionBuilder.withArgName("folder")
+        .withDescription("Optional folder where paths planned by the A_STAR generator are cached, and reused by later runs.").hasArg()
+        .withLongOpt("plan-cache").create("p"));
+    opt.addOption(OptionBuilder.withArgName("file")
+        .withDescription("Appends the coverage statistics of every step to <file>, instead of keeping them in memory. "
+            + "Recommended for long runs using option -o together with -t and -r.").hasArg().withLongOpt("statistics-file").create("e"));
   }
 
   /**
@@ -556,6 +609,9 @@ public class CLI {
     opt.addOption(OptionBuilder.isRequired().withArgName("file|folder").withDescription("The file (or folder) containing graphml formatted files.")
         .hasArg().withLongOpt("input_graphml").create("f"));
     opt.addOption("i", "index", true, "Print out the INDEX value when merging models. Default is true");
+    opt.addOption(OptionBuilder.withArgName("file").withDescription("Write the merged model to this file, instead of to standard output.")
+        .hasArg().withLongOpt("output").create("o"));
+    opt.addOption("z", "gzip", false, "Compress the merged model using gzip. Files with the .gz extension are always compressed.");
   }
 
   /**
@@ -595,6 +651,23 @@ public class CLI {
         .hasArg().create("p"));
   }
 
+  /**
+   * Build the command synthesize command line parser
+   */
+  @SuppressWarnings("static-access")
+  private void buildSynthesizeCLI() {
+    opt.addOption(OptionBuilder.isRequired().withArgName("folder").withDescription("The folder to write the graphml files to.").hasArg()
+        .withLongOpt("output").create("o"));
+    opt.addOption("v", "vertices", true, "The number of vertices. Default is 100");
+    opt.addOption("e", "edges", true, "The number of edges. Default is 3 times the number of vertices");
+    opt.addOption("d", "out-degree", true, "The distribution of the out-degree of the vertices, UNIFORM or POWER_LAW. Default is UNIFORM");
+    opt.addOption("c", "components", true, "The number of strongly connected components of the mother graph. Default is 1");
+    opt.addOption("g", "guard-density", true, "The share of edges having a guard, from 0 to 1. Default is 0");
+    opt.addOption("r", "requirement-density", true, "The share of vertices having a requirement tag, from 0 to 1. Default is 0");
+    opt.addOption("n", "depth", true, "The nesting depth of the subgraphs. Default is 0");
+    opt.addOption("s", "seed", true, "The seed of the random model. Default is 0");
+  }
+
   /**
    * Build the command analyze command line parser
    */
@@ -660,6 +733,20 @@ public class CLI {
       getMbt().setGenerator(Keywords.getGenerator(genrator.trim()));
     }
     getMbt().getGenerator().setStopCondition(alternativeCondition);
+    final PlanCache planCache = (cl.hasOption("p") ? new PlanCache(new File(cl.getOptionValue("p"))) : null);
+    if (planCache != null && getMbt().getGenerator() instanceof A_StarPathGenerator) {
+      ((A_StarPathGenerator) getMbt().getGenerator()).setPlanCache(planCache);
+    }
+
+    if (cl.hasOption("e")) {
+      getMbt().setUseStatisticsManager(true);
+      getMbt().getStatisticsManager().setProgressFile(new File(cl.getOptionValue("e")));
+    }
+
+    if (cl.hasOption("k") && Integer.parseInt(cl.getOptionValue("k")) > 1) {
+      runWalkerFarm(cl, planCache);
+      return;
+    }
 
     if (cl.hasOption("o")) {
       long seconds = Integer.valueOf(cl.getOptionValue("o")).longValue();
@@ -675,7 +762,7 @@ public class CLI {
           @Override
           public void run() {
             try {
-              getMbt().getStatisticsManager().writeFullReport(new PrintStream(reportName));
+              getMbt().getStatisticsManager().writeIntermediateReport(new PrintStream(reportName));
             } catch (FileNotFoundException e) {
               throw new RuntimeException("Could not open or write report file '" + reportName + "'", e);
             }
@@ -685,7 +772,7 @@ public class CLI {
         logTask = new TimerTask() {
           @Override
           public void run() {
-            logger.info(getMbt().getStatisticsCompact());
+            logStatistics();
           }
         };
       }
@@ -699,13 +786,79 @@ public class CLI {
       writeStatisticsVerbose(System.out);
     }
     if (cl.hasOption("o")) {
-      logger.info(mbt.getStatisticsCompact());
+      logStatistics();
     }
     if (cl.hasOption("t") && cl.hasOption("r")) {
       getMbt().getStatisticsManager().setReportTemplate(new FileInputStream(new File(cl.getOptionValue('t'))));
       getMbt().getStatisticsManager().writeFullReport(cl.getOptionValue('r'));
     }
+    if (cl.hasOption("e")) {
+      getMbt().getStatisticsManager().close();
+    }
+  }
+
+  /**
+   * Generates several offline walks in parallel, and prints the one selected by the merge policy.
+   * The plan cache is shared by all walks. The coverage options -o, -e, -a and -t/-r apply to the
+   * selected walk, which is replayed on the main machine.
+   * 
+   * @param cl
+   * @param planCache the plan cache of option -p, or null
+   * @throws InterruptedException
+   * @throws FileNotFoundException
+   */
+  private void runWalkerFarm(final CommandLine cl, final PlanCache planCache) throws InterruptedException, FileNotFoundException {
+    WalkerFarm farm = new WalkerFarm(getMbt().getGraph(), new WalkerFarm.GeneratorFactory() {
+      @Override
+      public PathGenerator createGenerator() throws StopConditionException, GeneratorException {
+        AlternativeCondition alternativeCondition = new AlternativeCondition();
+        for (String stopCondition : cl.getOptionValue("s").split("\\|")) {
+          String[] sc = stopCondition.trim().split(":");
+          alternativeCondition.add(Util.getCondition(null, Keywords.getStopCondition(sc[0].trim()), (sc.length == 1 ? "" : sc[1].trim())));
+        }
+        String[] generators = cl.getOptionValue("g").split("\\|");
+        PathGenerator generator = Util.getGenerator(Keywords.getGenerator(generators[generators.length - 1].trim()));
+        generator.setStopCondition(alternativeCondition);
+        if (planCache != null && generator instanceof A_StarPathGenerator) {
+          ((A_StarPathGenerator) generator).setPlanCache(planCache);
+        }
+        return generator;
+      }
+    });
+    farm.setExtended(cl.hasOption("x"), cl.hasOption("j"));
+    farm.setWeighted(cl.hasOption("w"));
+    farm.setNumberOfWalks(Integer.parseInt(cl.getOptionValue("k")));
+    if (cl.hasOption("n")) {
+      farm.setNumberOfThreads(Integer.parseInt(cl.getOptionValue("n")));
+    }
+    if (cl.hasOption("m")) {
+      try {
+        farm.setMergePolicy(WalkerFarm.MergePolicy.valueOf(cl.getOptionValue("m").trim().toUpperCase()));
+      } catch (IllegalArgumentException e) {
+        throw new RuntimeException("Unknown merge policy: '" + cl.getOptionValue("m") + "'", e);
+      }
+    }
+
+    WalkerFarm.Walk walk = farm.run();
+    farm.write(walk, System.out);
+    logger.debug("Selected a walk with " + walk.getLength() + " steps, and edge coverage: " + walk.getEdgeCoverage());
 
+    if (cl.hasOption("a") || cl.hasOption("o") || cl.hasOption("e") || (cl.hasOption("t") && cl.hasOption("r"))) {
+      farm.replay(walk, getMbt().getMachine(), (getMbt().isUseStatisticsManager() ? getMbt().getStatisticsManager() : null));
+    }
+    if (cl.hasOption("a")) {
+      writeStatisticsVerbose(System.out);
+    }
+    if (cl.hasOption("o")) {
+      logStatistics();
+    }
+    if (cl.hasOption("t") && cl.hasOption("r")) {
+      getMbt().getStatisticsManager().setReportTemplate(new FileInputStream(new File(cl.getOptionValue('t'))));
+      getMbt().getStatisticsManager().writeFullReport(cl.getOptionValue('r'));
+    }
+    if (cl.hasOption("e")) {
+      getMbt().getStatisticsManager().close();
+    }
   }
 
   /**
@@ -803,6 +956,9 @@ public class CLI {
       getMbt().setGenerator(Keywords.getGenerator(genrator.trim()));
     }
     getMbt().getGenerator().setStopCondition(alternativeCondition);
+    if (cl.hasOption("p") && getMbt().getGenerator() instanceof A_StarPathGenerator) {
+      ((A_StarPathGenerator) getMbt().getGenerator()).setPlanCache(new PlanCache(new File(cl.getOptionValue("p"))));
+    }
 
     /**
      * Set dry-run
@@ -823,7 +979,7 @@ public class CLI {
           @Override
           public void run() {
             try {
-              getMbt().getStatisticsManager().writeFullReport(new PrintStream(reportName));
+              getMbt().getStatisticsManager().writeIntermediateReport(new PrintStream(reportName));
             } catch (FileNotFoundException e) {
               throw new RuntimeException("Could not open or write report file '" + reportName + "'", e);
             }
@@ -833,7 +989,7 @@ public class CLI {
         logTask = new TimerTask() {
           @Override
           public void run() {
-            logger.info(getMbt().getStatisticsCompact());
+            logStatistics();
           }
         };
       }
@@ -853,7 +1009,7 @@ public class CLI {
       writeStatisticsVerbose(System.out);
     }
     if (cl.hasOption("o")) {
-      logger.info(mbt.getStatisticsCompact());
+      logStatistics();
     }
     if (cl.hasOption("t") && cl.hasOption("r")) {
       getMbt().getStatisticsManager().setReportTemplate(new FileInputStream(new File(cl.getOptionValue('t'))));
@@ -862,6 +1018,17 @@ public class CLI {
 
   }
 
+  /**
+   * Logs the compact coverage statistics, and the latency statistics if any have been recorded.
+   */
+  private void logStatistics() {
+    logger.info(getMbt().getStatisticsCompact());
+    String latency = getMbt().getLatencyStatistics();
+    if (!latency.isEmpty()) {
+      logger.info("Latency:\n" + latency.trim());
+    }
+  }
+
   private void writeStatisticsVerbose(PrintStream out) {
     out.println(getMbt().getStatisticsVerbose());
   }
@@ -923,12 +1090,20 @@ public class CLI {
    * Run the merge command
    * 
    * @param cl
+   * @throws IOException
    */
-  private void RunCommandMerge(CommandLine cl) {
+  private void RunCommandMerge(CommandLine cl) throws IOException {
     if (helpNeeded("merge", !cl.hasOption("f"), "Missing the input graphml file (folder), See -f (--input_graphml)")) return;
 
     getMbt().readGraph(cl.getOptionValue("f"));
-    getMbt().writeModel(System.out, !cl.hasOption("i"));
+    if (cl.hasOption("o")) {
+      File file = new File(cl.getOptionValue("o"));
+      getMbt().writeModel(file, !cl.hasOption("i"), cl.hasOption("z") || file.getName().endsWith(".gz"));
+    } else if (cl.hasOption("z")) {
+      getMbt().writeModel(System.out, !cl.hasOption("i"), true);
+    } else {
+      getMbt().writeModel(System.out, !cl.hasOption("i"));
+    }
   }
 
   /**
@@ -1012,6 +1187,29 @@ public class CLI {
     System.out.println(Analyze.unreachableVertices(getMbt()));
   }
 
+  /**
+   * Run the synthesize command
+   * 
+   * @param cl
+   * @throws IOException
+   */
+  private void RunCommandSynthesize(CommandLine cl) throws IOException {
+    if (helpNeeded("synthesize", !cl.hasOption("o"), "Missing the output folder, See -o (--output)")) return;
+
+    ModelSynthesizer synthesizer = new ModelSynthesizer();
+    synthesizer.setVertices(Integer.parseInt(cl.getOptionValue("v", "100")));
+    synthesizer.setEdges(cl.hasOption("e") ? Integer.parseInt(cl.getOptionValue("e")) : 3 * synthesizer.getVertices());
+    synthesizer.setOutDegree(ModelSynthesizer.OutDegree.valueOf(cl.getOptionValue("d", "UNIFORM").toUpperCase()));
+    synthesizer.setComponents(Integer.parseInt(cl.getOptionValue("c", "1")));
+    synthesizer.setGuardDensity(Double.parseDouble(cl.getOptionValue("g", "0")));
+    synthesizer.setRequirementDensity(Double.parseDouble(cl.getOptionValue("r", "0")));
+    synthesizer.setDepth(Integer.parseInt(cl.getOptionValue("n", "0")));
+    synthesizer.setSeed(Long.parseLong(cl.getOptionValue("s", "0")));
+    for (File file : synthesizer.write(new File(cl.getOptionValue("o")))) {
+      System.out.println(file.getPath());
+    }
+  }
+
   private boolean helpNeeded(String module, boolean condition, String message) {
     if (condition) {
       System.out.println(message);
@@ -34,6 +34,7 @@ public class EventDrivenModels {
   Stack<ThreadWrapper> pausedModels = new Stack<ThreadWrapper>();
   private Object executionClass = null;
   private ThreadWrapper executingModel = null;
+  private boolean cooperative = false;
   private static final Object lockbox = new Object();
 
   public EventDrivenModels(Object executionClass) {
@@ -46,6 +47,22 @@ public class EventDrivenModels {
     return models;
   }
 
+  public boolean isCooperative() {
+    return cooperative;
+  }
+
+  /**
+   * Sets whether the models are executed cooperatively. Then the models are not started in threads
+   * of their own, but are executed one at a time by {@link #waitToFinish()}, on the thread calling
+   * it. A model switched away from returns its thread, and a paused model does not hold any thread
+   * until it is resumed.
+   * 
+   * @param cooperative
+   */
+  public void setCooperative(boolean cooperative) {
+    this.cooperative = cooperative;
+  }
+
   public void addModel(ModelBasedTesting model) {
     models.add(model);
   }
@@ -65,7 +82,10 @@ public class EventDrivenModels {
       if (modelName.equals(m.getGraph().getLabelKey())) {
         logger.debug("Found the model, will now start it: " + m.getGraph().getLabelKey());
         executingModel = new ThreadWrapper(m);
-        executingModel.start();
+        if (!cooperative) {
+          executingModel.start();
+        }
+        executingModelChanged();
         return;
       }
     }
@@ -84,14 +104,30 @@ public class EventDrivenModels {
       if (modelName.equals(m.getGraph().getLabelKey())) {
         logger.debug("Found the model, will now start it: " + m.getGraph().getLabelKey());
         executingModel = new ThreadWrapper(m);
-        executingModel.start();
+        if (!cooperative) {
+          executingModel.start();
+        }
+        executingModelChanged();
         return;
       }
     }
     throw new RuntimeException("Did not find a model: " + modelName);
   }
 
+  /**
+   * Wakes up waitToFinish, when the executing model has been switched or has terminated.
+   */
+  private void executingModelChanged() {
+    synchronized (lockbox) {
+      lockbox.notifyAll();
+    }
+  }
+
   public void waitToFinish() {
+    if (cooperative) {
+      runCooperatively();
+      return;
+    }
     try {
       while (true) {
         synchronized (lockbox) {
@@ -104,13 +140,46 @@ public class EventDrivenModels {
             executingModel = pausedModels.pop();
             executingModel.getModel().resume();
           } else {
-            if (executingModel.getState() == Thread.State.TERMINATED) {
+            if (executingModel.isFinished() || executingModel.getState() == Thread.State.TERMINATED) {
               logger.debug("Terminated: " + executingModel);
               executingModel = null;
+            } else {
+              lockbox.wait();
             }
           }
         }
-        Thread.sleep(100);
+      }
+    } catch (InterruptedException e) {
+      Util.logStackTraceToError(e);
+    }
+  }
+
+  /**
+   * Runs the executing model on the current thread until it is switched away from or finished, and
+   * then the next one, until all models have finished.
+   */
+  private void runCooperatively() {
+    try {
+      while (true) {
+        ThreadWrapper model;
+        synchronized (lockbox) {
+          if (executingModel == null) {
+            if (pausedModels.isEmpty()) {
+              logger.debug("All models finished");
+              return;
+            }
+            logger.debug("Found suspended model: " + pausedModels.peek());
+            executingModel = pausedModels.pop();
+          }
+          model = executingModel;
+        }
+        boolean suspended = model.runUntilHandoff();
+        synchronized (lockbox) {
+          if (!suspended && executingModel == model) {
+            logger.debug("Finished: " + model);
+            executingModel = null;
+          }
+        }
       }
     } catch (InterruptedException e) {
       Util.logStackTraceToError(e);
@@ -119,6 +188,7 @@ public class EventDrivenModels {
 
   public class ThreadWrapper extends Thread {
     private ModelBasedTesting model;
+    private volatile boolean finished = false;
 
     public ModelBasedTesting getModel() {
       return model;
@@ -128,11 +198,36 @@ public class EventDrivenModels {
       this.model = model;
     }
 
+    /**
+     * @return true when the execution of the model has ended.
+     */
+    public boolean isFinished() {
+      return finished;
+    }
+
     public ThreadWrapper(ModelBasedTesting model) {
       this.model = model;
       setName(model.getGraph().getLabelKey());
     }
 
+    /**
+     * Executes the model on the current thread, until it is suspended or finished.
+     * 
+     * @return true if the model was suspended.
+     */
+    boolean runUntilHandoff() throws InterruptedException {
+      try {
+        if (!model.isSuspended()) {
+          model.setCurrentVertex("Start");
+          model.reload();
+        }
+        return model.executeUntilHandoff(executionClass);
+      } catch (RuntimeException e) {
+        logger.debug(e.getMessage());
+        return false;
+      }
+    }
+
     @Override
     public void run() {
       try {
@@ -143,6 +238,9 @@ public class EventDrivenModels {
         Util.logStackTraceToError(e);
       } catch (RuntimeException e) {
         logger.debug(e.getMessage());
+      } finally {
+        finished = true;
+        executingModelChanged();
       }
     }
   }
@@ -0,0 +1,155 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+
+package org.graphwalker;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Vector;
+
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.FiniteStateMachine;
+
+/**
+ * The methods of an execution class, resolved once for all edges and vertices of a model, and
+ * indexed by their ids in the compiled graph.
+ */
+class ExecutorMethods {
+
+  /**
+   * The call of an edge without label, which does nothing.
+   */
+  static final Call NONE = new Call(null, null);
+
+  private final Class<?> clsClass;
+  private final CompiledGraph compiledGraph;
+  private final Call[] edgeCalls;
+  private final Call[] vertexCalls;
+  private final Vector<String> missingMethods = new Vector<String>();
+
+  ExecutorMethods(Class<?> clsClass, FiniteStateMachine machine) {
+    this.clsClass = clsClass;
+    compiledGraph = machine.getModel().getCompiledGraph();
+    edgeCalls = new Call[compiledGraph.getEdgeCount()];
+    vertexCalls = new Call[compiledGraph.getVertexCount()];
+    for (int i = 0; i < edgeCalls.length; i++) {
+      String strMethod = machine.getEdgeName(compiledGraph.getEdge(i));
+      try {
+        edgeCalls[i] = resolve(clsClass, strMethod, true);
+      } catch (NoSuchMethodException e) {
+        missingMethods.add(strMethod);
+      }
+    }
+    for (int i = 0; i < vertexCalls.length; i++) {
+      String strMethod = compiledGraph.getVertex(i).getLabelKey();
+      if (strMethod.equals(Keywords.START_NODE)) {
+        continue;
+      }
+      try {
+        vertexCalls[i] = resolve(clsClass, strMethod, false);
+      } catch (NoSuchMethodException e) {
+        missingMethods.add(strMethod);
+      }
+    }
+  }
+
+  /**
+   * @return the labels of the edges and vertices, for which there is no method in the class.
+   */
+  Vector<String> getMissingMethods() {
+    return missingMethods;
+  }
+
+  /**
+   * @return true if the methods were resolved for the class and the current version of the model.
+   */
+  boolean isFor(Class<?> clsClass, FiniteStateMachine machine) {
+    return this.clsClass == clsClass && compiledGraph == machine.getModel().getCompiledGraph();
+  }
+
+  /**
+   * @return the call of the element, or null if it has not been resolved.
+   */
+  Call getCall(AbstractElement element, boolean isEdge) {
+    if (isEdge) {
+      int id = compiledGraph.getEdgeId((Edge) element);
+      return (id < 0 ? null : edgeCalls[id]);
+    }
+    int id = compiledGraph.getVertexId((Vertex) element);
+    return (id < 0 ? null : vertexCalls[id]);
+  }
+
+  /**
+   * Finds the method to call for the label of an edge or vertex. The label is cut at any '/' or
+   * '[', and if it contains a space, the rest of the label is passed as a String parameter.
+   */
+  static Call resolve(Class<?> clsClass, String strMethod, boolean isEdge) throws NoSuchMethodException {
+    if (strMethod.contains("/")) {
+      strMethod = strMethod.substring(0, strMethod.indexOf('/'));
+    }
+
+    if (strMethod.contains("[")) {
+      strMethod = strMethod.substring(0, strMethod.indexOf('['));
+    }
+
+    if (strMethod.contains(" ")) {
+      String s1 = strMethod.substring(0, strMethod.indexOf(' '));
+      String s2 = strMethod.substring(strMethod.indexOf(' ') + 1);
+      return new Call(clsClass.getMethod(s1, String.class), new Object[] {s2});
+    }
+    if (isEdge && strMethod.isEmpty()) {
+      return NONE;
+    }
+    return new Call(clsClass.getMethod(strMethod), null);
+  }
+
+  static class Call {
+    private final Method method;
+    private final Object[] arguments;
+
+    private Call(Method method, Object[] arguments) {
+      this.method = method;
+      this.arguments = arguments;
+      if (method != null) {
+        try {
+          // Skips the access check on every invocation
+          method.setAccessible(true);
+        } catch (SecurityException e) {
+          // The access is then checked on every invocation
+        }
+      }
+    }
+
+    boolean hasParameter() {
+      return arguments != null;
+    }
+
+    void invoke(Object objInstance) throws IllegalAccessException, InvocationTargetException {
+      method.invoke(objInstance, arguments);
+    }
+  }
+}
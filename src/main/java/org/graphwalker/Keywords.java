@@ -253,6 +253,12 @@ public class Keywords {
 
   public static final int GENERATOR_ALL_PATH_PERMUTATIONS = 2008;
 
+  public static final int GENERATOR_LEAST_VISITED = 2009;
+
+  public static final int GENERATOR_REQUIREMENT_PLANNER = 2010;
+
+  public static final int GENERATOR_REPLAY = 2011;
+
   /**
    * Holds the pre-defined key words
    */
@@ -438,6 +444,9 @@ public class Keywords {
     Keywords.generators.add(new Generator("REQUIREMENTS", "REQUIREMENTS", Keywords.GENERATOR_REQUIREMENTS, false));
     Keywords.generators.add(new Generator("SHORTEST_NON_OPTIMIZED", "SHORTEST_NON_OPTIMIZED", Keywords.GENERATOR_SHORTEST_NON_OPTIMIZED, true));
     Keywords.generators.add(new Generator("ALL_PATH_PERMUTATIONS", "ALL_PATH_PERMUTATIONS", Keywords.GENERATOR_ALL_PATH_PERMUTATIONS, true));
+    Keywords.generators.add(new Generator("LEAST_VISITED", "LEAST_VISITED", Keywords.GENERATOR_LEAST_VISITED, true));
+    Keywords.generators.add(new Generator("REQUIREMENT_PLANNER", "REQUIREMENT_PLANNER", Keywords.GENERATOR_REQUIREMENT_PLANNER, true));
+    Keywords.generators.add(new Generator("REPLAY", "REPLAY", Keywords.GENERATOR_REPLAY, false));
   }
 
   static public Vector<Generator> getGenerators() {
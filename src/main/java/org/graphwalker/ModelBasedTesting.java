@@ -26,14 +26,16 @@ package org.graphwalker;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Observable;
 import java.util.Properties;
 import java.util.Vector;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -46,17 +48,23 @@ import org.graphwalker.exceptions.InvalidDataException;
 import org.graphwalker.generators.CodeGenerator;
 import org.graphwalker.generators.NonOptimizedShortestPath;
 import org.graphwalker.generators.PathGenerator;
+import org.graphwalker.generators.ReplayGenerator;
 import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.CompiledGraph;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
 import org.graphwalker.io.AbstractModelHandler;
 import org.graphwalker.io.GraphML;
+import org.graphwalker.io.GraphMLWriter;
+import org.graphwalker.io.ModelCache;
+import org.graphwalker.io.TraceWriter;
 import org.graphwalker.machines.ExtendedFiniteStateMachine;
 import org.graphwalker.machines.FiniteStateMachine;
 import org.graphwalker.multipleModels.ModelHandler;
 import org.graphwalker.statistics.EdgeCoverageStatistics;
 import org.graphwalker.statistics.EdgeSequenceCoverageStatistics;
+import org.graphwalker.statistics.MetricsRegistry;
 import org.graphwalker.statistics.RequirementCoverageStatistics;
 import org.graphwalker.statistics.VertexCoverageStatistics;
 import org.json.simple.JSONObject;
@@ -85,12 +93,19 @@ public class ModelBasedTesting extends Observable {
   private volatile boolean hasStartedExecution = false;
 
   private ModelHandler multiModelHandler = null;
+  private int pipelineCapacity = 0;
+  private StepPipeline pipeline = null;
+  private StepPipeline closedPipeline = null;
+  private ExecutorMethods executorMethods = null;
+  private TraceWriter traceWriter = null;
+  private int tracedEdges = 0;
+  private final MetricsRegistry metrics = new MetricsRegistry();
+  private ModelCache modelCache = null;
+  private int countedEdges = 0;
 
   private Thread thisThread = null;
   private Future<?> future;
 
-  private static final Object lock = new Object();
-
   /**
    * Do not verify labels for edges and vertices. This is used when creating manual test sequences.
    */
@@ -133,6 +148,7 @@ public class ModelBasedTesting extends Observable {
     javaExecutorClass = null;
     startupScript = "";
     useStatisticsManager = false;
+    metrics.reset();
     runRandomGeneratorOnce = false;
     dryRun = false;
     useJsScriptEngine = false;
@@ -143,6 +159,10 @@ public class ModelBasedTesting extends Observable {
     hasStartedExecution = false;
     multiModelHandler = null;
     thisThread = null;
+    discardPipeline();
+    closedPipeline = null;
+    pipelineCapacity = 0;
+    executorMethods = null;
   }
 
   public void reload() {
@@ -165,6 +185,7 @@ public class ModelBasedTesting extends Observable {
     if (this.statisticsManager == null) {
       this.statisticsManager = new StatisticsManager();
     }
+    this.statisticsManager.setMetrics(metrics);
     this.statisticsManager.addStatisicsCounter("Vertex Coverage", new VertexCoverageStatistics(getGraph()));
     this.statisticsManager.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(getGraph()));
     this.statisticsManager.addStatisicsCounter("2-Edge Sequence Coverage", new EdgeSequenceCoverageStatistics(getGraph(), 2));
@@ -194,7 +215,10 @@ public class ModelBasedTesting extends Observable {
   }
 
   private void setMachine(FiniteStateMachine machine) {
+    discardPipeline();
     this.machine = machine;
+    this.machine.setMetrics(metrics);
+    this.countedEdges = machine.getNumberOfEdgesTravesed();
     if (this.modelHandler != null) getMachine().setModel(getGraph());
     if (getGenerator() != null) getGenerator().setMachine(machine);
   }
@@ -297,6 +321,8 @@ public class ModelBasedTesting extends Observable {
    * @param pass Tells mbt if the requirement has pass (true), or failed (false).
    */
   public void passRequirement(boolean pass) {
+    // The pipeline is kept, since the verdicts are not read by the generators and stop conditions
+    // generating ahead, see StepPipeline.isSupported
     String str = "";
     String[] tmp = getCurrentRequirement();
     for (int i = 0; i < tmp.length; i++) {
@@ -310,6 +336,10 @@ public class ModelBasedTesting extends Observable {
             Boolean reqValue = (getMachine().getValueFromReqs(reqVarVal));
             if (reqValue == null || reqValue.booleanValue() != false) {
               getMachine().setValueForReq(reqVarVal, pass);
+              metrics.increment(pass ? MetricsRegistry.REQUIREMENTS_PASSED : MetricsRegistry.REQUIREMENTS_FAILED);
+              if (traceWriter != null) {
+                traceWriter.writeRequirement(reqVarVal, pass);
+              }
               str = "REQUIREMENT: '" + reqVarVal + "' has ";
               if (pass)
                 str += "PASSED, at " + getMachine().getCurrentVertex();
@@ -326,6 +356,10 @@ public class ModelBasedTesting extends Observable {
         Boolean reqValue = (getMachine().getValueFromReqs(tmp[i]));
         if (reqValue == null || reqValue.booleanValue() != false) {
           getMachine().setValueForReq(tmp[i], pass);
+          metrics.increment(pass ? MetricsRegistry.REQUIREMENTS_PASSED : MetricsRegistry.REQUIREMENTS_FAILED);
+          if (traceWriter != null) {
+            traceWriter.writeRequirement(tmp[i], pass);
+          }
           str = "REQUIREMENT: '" + tmp[i] + "' has ";
           if (pass)
             str += "PASSED, at " + getMachine().getCurrentVertex();
@@ -373,6 +407,7 @@ public class ModelBasedTesting extends Observable {
   }
 
   public void setGenerator(PathGenerator generator) {
+    discardPipeline();
     this.generator = generator;
 
     if (this.machine != null) getGenerator().setMachine(getMachine());
@@ -397,19 +432,7 @@ public class ModelBasedTesting extends Observable {
   }
 
   public String[] getNextStep() throws InterruptedException {
-    if (threadSuspended) {
-      logger.debug("Execution is now suspended: " + getGraph().getLabelKey());
-      synchronized (lock) {
-        while (threadSuspended) {
-          wait();
-        }
-      }
-      logger.debug("Executions is now resumed: " + getGraph().getLabelKey());
-    }
-
-    if (Thread.interrupted()) {
-      throw new InterruptedException();
-    }
+    waitIfSuspended();
     if (this.machine == null) {
       getMachine();
     }
@@ -429,7 +452,12 @@ public class ModelBasedTesting extends Observable {
     }
 
     try {
-      return getGenerator().getNext();
+      long start = System.nanoTime();
+      String[] step = getGenerator().getNext();
+      metrics.recordLatency(MetricsRegistry.GENERATION_LATENCY, getMachine().getLastEdge(), System.nanoTime() - start);
+      countStep();
+      traceStep();
+      return step;
     } catch (RuntimeException e) {
       logger.fatal(e.toString());
       throw new RuntimeException("ERROR: " + e.getMessage(), e);
@@ -441,6 +469,153 @@ public class ModelBasedTesting extends Observable {
     }
   }
 
+  private void waitIfSuspended() throws InterruptedException {
+    if (threadSuspended) {
+      logger.debug("Execution is now suspended: " + getGraph().getLabelKey());
+      waitWhileSuspended();
+      logger.debug("Executions is now resumed: " + getGraph().getLabelKey());
+    }
+
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+  }
+
+  /**
+   * Sets how many steps the path is generated ahead of the execution, when executing the path
+   * using a class. The steps are only generated ahead for a plain FSM, using a RANDOM, A_STAR or
+   * LEAST_VISITED generator, and a stop condition not depending on the walk history. 0, which is
+   * the default, generates every step when it is to be executed.
+   */
+  public void setPipelineCapacity(int pipelineCapacity) {
+    Util.AbortIf(pipelineCapacity < 0, "The pipeline capacity cannot be negative");
+    discardPipeline();
+    this.pipelineCapacity = pipelineCapacity;
+  }
+
+  public int getPipelineCapacity() {
+    return pipelineCapacity;
+  }
+
+  /**
+   * The lock is only held while the pipeline is created, and not while waiting for the next step, so
+   * the execution can be stopped, suspended and discarded while a step is generated.
+   */
+  private boolean hasNextPipelinedStep() throws InterruptedException {
+    while (true) {
+      StepPipeline current;
+      synchronized (this) {
+        if (pipeline == null && pipelineCapacity > 0 && !runRandomGeneratorOnce && StepPipeline.isSupported(getMachine(), getGenerator())) {
+          logger.debug("Will generate up to " + pipelineCapacity + " steps ahead of the execution");
+          pipeline = new StepPipeline(getMachine(), getGenerator(), pipelineCapacity, closedPipeline);
+          closedPipeline = null;
+        }
+        current = pipeline;
+      }
+      if (current == null) {
+        return hasNextStep();
+      }
+      if (current.hasNext()) {
+        return true;
+      }
+      if (!current.isClosed()) {
+        return false;
+      }
+      // The pipeline was discarded while waiting, so start again from the current state
+    }
+  }
+
+  private String[] getNextPipelinedStep() throws InterruptedException {
+    StepPipeline current;
+    synchronized (this) {
+      current = pipeline;
+    }
+    if (current == null) {
+      return getNextStep();
+    }
+    waitIfSuspended();
+    long start = System.nanoTime();
+    while (true) {
+      current.hasNext();
+      synchronized (this) {
+        if (current == pipeline && !current.isClosed()) {
+          getStatisticsManager();
+          String[] step = current.getNext();
+          metrics.recordLatency(MetricsRegistry.GENERATION_LATENCY, getMachine().getLastEdge(), System.nanoTime() - start);
+          countStep();
+          traceStep();
+          return step;
+        }
+        current = pipeline;
+      }
+      if (current == null) {
+        return getNextStep();
+      }
+    }
+  }
+
+  /**
+   * @return The counters of the execution, which can be read at any time, see
+   *         {@link MetricsRegistry#getSnapshot()}
+   */
+  public MetricsRegistry getMetrics() {
+    return metrics;
+  }
+
+  private void countStep() {
+    metrics.increment(MetricsRegistry.STEPS);
+    if (getMachine().getNumberOfEdgesTravesed() != countedEdges && getMachine().getLastEdge() != null) {
+      metrics.increment(MetricsRegistry.EDGES_WALKED);
+      metrics.increment(MetricsRegistry.VERTICES_REACHED);
+    }
+    countedEdges = getMachine().getNumberOfEdgesTravesed();
+    metrics.set(MetricsRegistry.EDGES_COVERED, getMachine().getNumOfCoveredEdges());
+    metrics.set(MetricsRegistry.VERTICES_COVERED, getMachine().getNumOfCoveredVertices());
+  }
+
+  public TraceWriter getTraceWriter() {
+    return traceWriter;
+  }
+
+  /**
+   * Sets the writer of the execution trace. Every walked edge and reached vertex, and every
+   * requirement verdict, is written to the trace. The trace can be replayed using the
+   * {@link ReplayGenerator}.
+   * 
+   * @param traceWriter The writer, or null to stop tracing. The writer is not closed by the model.
+   */
+  public void setTraceWriter(TraceWriter traceWriter) {
+    this.traceWriter = traceWriter;
+    this.tracedEdges = (this.machine == null ? 0 : getMachine().getNumberOfEdgesTravesed());
+  }
+
+  /**
+   * Writes the last walked edge and the current vertex to the trace, if an edge has been walked
+   * since the last step written.
+   */
+  private void traceStep() {
+    if (traceWriter == null || getMachine().getNumberOfEdgesTravesed() == tracedEdges || getMachine().getLastEdge() == null) {
+      return;
+    }
+    tracedEdges = getMachine().getNumberOfEdgesTravesed();
+    CompiledGraph compiledGraph = getGraph().getCompiledGraph();
+    traceWriter.writeEdge(compiledGraph.getEdgeId(getMachine().getLastEdge()));
+    traceWriter.writeVertex(compiledGraph.getVertexId(getMachine().getCurrentVertex()),
+        (getMachine().hasInternalVariables() ? getMachine().getCurrentDataString() : null));
+  }
+
+  /**
+   * Discards the steps generated ahead of the execution, if any. Has to be called whenever the
+   * machine is changed by anything else than the executed path.
+   */
+  private synchronized void discardPipeline() {
+    if (pipeline != null) {
+      pipeline.close();
+      closedPipeline = pipeline;
+      pipeline = null;
+    }
+  }
+
   public String getCurrentVertexName() {
     if (this.machine != null) return getMachine().getCurrentVertexName();
     logger.warn("Trying to retrieve current vertex without specifying machine");
@@ -455,7 +630,9 @@ public class ModelBasedTesting extends Observable {
 
   public void readGraph(String graphmlFileName) {
     if (this.modelHandler == null) {
-      this.modelHandler = new GraphML();
+      GraphML graphML = new GraphML();
+      graphML.setModelCache(getModelCache());
+      this.modelHandler = graphML;
     }
     this.modelHandler.load(graphmlFileName);
 
@@ -468,10 +645,49 @@ public class ModelBasedTesting extends Observable {
     readGraph(graphmlFile.getAbsolutePath());
   }
 
+  /**
+   * @return The cache used when reading models, by default the folder set by graphwalker.cache.folder
+   *         in graphwalker.properties, or null if models are not cached
+   */
+  public ModelCache getModelCache() {
+    if (this.modelCache == null) {
+      String folder = Util.readModelCacheFolder();
+      if (folder != null) {
+        this.modelCache = new ModelCache(new File(folder));
+      }
+    }
+    return this.modelCache;
+  }
+
+  /**
+   * Sets the cache of merged models, used by the following calls to readGraph.
+   */
+  public void setModelCache(ModelCache modelCache) {
+    this.modelCache = modelCache;
+  }
+
   protected void writeModel(PrintStream ps, boolean printIndex) {
     this.modelHandler.save(ps, printIndex);
   }
 
+  /**
+   * Writes the model as GraphML to a stream, optionally compressed using gzip.
+   */
+  protected void writeModel(OutputStream out, boolean printIndex, boolean gzip) throws IOException {
+    GraphMLWriter writer = new GraphMLWriter(printIndex);
+    writer.setGzip(gzip);
+    writer.write(getGraph(), out);
+  }
+
+  /**
+   * Writes the model as GraphML to a file, optionally compressed using gzip.
+   */
+  public void writeModel(File file, boolean printIndex, boolean gzip) throws IOException {
+    GraphMLWriter writer = new GraphMLWriter(printIndex);
+    writer.setGzip(gzip);
+    writer.write(getGraph(), file);
+  }
+
   public String getStatisticsString() {
     if (this.machine != null) {
       return getMachine().getStatisticsString();
@@ -527,6 +743,21 @@ public class ModelBasedTesting extends Observable {
     return "";
   }
 
+  /**
+   * @return The count, p50, p99, p99.9 and max of the time spent generating steps, executing the
+   *         methods of the system under test, and evaluating guards and actions
+   */
+  public String getLatencyStatistics() {
+    return metrics.getLatencyReport(false);
+  }
+
+  /**
+   * @return The latency statistics, followed by the statistics of every element
+   */
+  public String getLatencyStatisticsVerbose() {
+    return metrics.getLatencyReport(true);
+  }
+
   public void setTemplate(String[] template) {
     this.template = template.clone();
 
@@ -712,10 +943,44 @@ public class ModelBasedTesting extends Observable {
   }
 
   protected void executePath(Class<?> clsClass, Object objInstance) throws InterruptedException {
+    executePath(clsClass, objInstance, false);
+  }
+
+  /**
+   * Executes the path using the object instance, until the model is suspended, either at a
+   * SWITCH_MODEL or GRAPH_VERTEX vertex, or by a call to {@link #suspend()}. Instead of waiting to
+   * be resumed, the method then returns, so the calling thread can run other models in the
+   * meantime. Calling the method again for the suspended model resumes the execution where it was
+   * suspended. Otherwise the execution is started from the current state.
+   *
+   * @param objInstance The instance of the class implementing the methods of the model.
+   * @return true if the model was suspended, false if the execution has finished.
+   * @throws InterruptedException
+   */
+  public boolean executeUntilHandoff(Object objInstance) throws InterruptedException {
+    if (!isSuspended()) {
+      return executePath(null, objInstance, true);
+    }
+    boolean suspended = false;
+    try {
+      resume();
+      suspended = executeSteps(objInstance.getClass(), objInstance, true);
+      return suspended;
+    } finally {
+      if (!suspended) {
+        discardPipeline();
+        stop();
+      }
+    }
+  }
+
+  private boolean executePath(Class<?> clsClass, Object objInstance, boolean cooperative) throws InterruptedException {
+    boolean suspended = false;
     try {
       thisThread = Thread.currentThread();
       stopFlag = thisThread;
       hasStartedExecution = true;
+      fireStateChanged();
       if (getGenerator().getStopCondition() instanceof TimeDuration) {
         ((TimeDuration) getGenerator().getStopCondition()).restartTime();
       }
@@ -751,7 +1016,7 @@ public class ModelBasedTesting extends Observable {
             getStatisticsManager().addProgress(getMachine().getCurrentVertex());
           }
         }
-        return;
+        return false;
       } else {
         logger.debug("Executing a non-dry run");
       }
@@ -787,138 +1052,194 @@ public class ModelBasedTesting extends Observable {
       } catch (IllegalAccessException e) {
         throw new RuntimeException("Cannot access execution instance: " + e.getMessage(), e);
       }
-      while (hasNextStep()) {
-        if (future == null || future.isDone()) {
-          String[] stepPair = getNextStep();
 
-          try {
-            logExecution(getMachine().getLastEdge(), "");
-            getMachine().setCurrentAbstractElement(getMachine().getLastEdge());
-            setChanged();
-            notifyObservers(getMachine().getLastEdge());
-            executeMethod(clsClass, objInstance, stepPair[0], true);
-            if (isUseStatisticsManager()) {
-              getStatisticsManager().addProgress(getMachine().getLastEdge());
-            }
+      executorMethods = new ExecutorMethods(clsClass, getMachine());
+      if (!executorMethods.getMissingMethods().isEmpty()) {
+        logger.error("In model: " + getGraph());
+        for (String method : executorMethods.getMissingMethods()) {
+          logger.error("Method: " + method + ", is missing in class: " + clsClass);
+        }
+        throw new RuntimeException("NoSuchMethodException.", new NoSuchMethodException(executorMethods.getMissingMethods().toString()));
+      }
+      suspended = executeSteps(clsClass, objInstance, cooperative);
+      return suspended;
+    } finally {
+      if (!suspended) {
+        discardPipeline();
+        stop();
+      }
+    }
+  }
 
-            if (future != null && !future.isDone()) {
-              while (!future.isDone()) {
-                Thread.sleep(10); // Wait for future event to be done.
-              }
-            }
+  /**
+   * Executes the steps of the path.
+   *
+   * @param cooperative If true, the method returns as soon as the model is suspended or stopped,
+   *        instead of waiting to be resumed.
+   * @return true if the model was suspended.
+   */
+  private boolean executeSteps(Class<?> clsClass, Object objInstance, boolean cooperative) throws InterruptedException {
+    while (hasNextPipelinedStep()) {
+      if (future != null && !future.isDone()) {
+        waitForFuture();
+        continue;
+      }
+      String[] stepPair = getNextPipelinedStep();
 
-            logExecution(getMachine().getCurrentVertex(), "");
-            getMachine().setCurrentAbstractElement(getMachine().getCurrentVertex());
-            setChanged();
-            notifyObservers(getMachine().getCurrentVertex());
-            executeMethod(clsClass, objInstance, stepPair[1], false);
-            if (isUseStatisticsManager()) {
-              getStatisticsManager().addProgress(getMachine().getCurrentVertex());
-            }
+      try {
+        logExecution(getMachine().getLastEdge(), "");
+        getMachine().setCurrentAbstractElement(getMachine().getLastEdge());
+        setChanged();
+        notifyObservers(getMachine().getLastEdge());
+        executeMethod(clsClass, objInstance, getMachine().getLastEdge(), stepPair[0], true);
+        if (isUseStatisticsManager()) {
+          getStatisticsManager().addProgress(getMachine().getLastEdge());
+        }
 
-            checkMultiModelHandling();
+        waitForFuture();
 
-          } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Illegal argument used.", e);
-          } catch (SecurityException e) {
-            throw new RuntimeException("Security failure occured.", e);
-          } catch (IllegalAccessException e) {
-            throw new RuntimeException("Illegal access was stoped.", e);
-          }
+        logExecution(getMachine().getCurrentVertex(), "");
+        getMachine().setCurrentAbstractElement(getMachine().getCurrentVertex());
+        setChanged();
+        notifyObservers(getMachine().getCurrentVertex());
+        executeMethod(clsClass, objInstance, getMachine().getCurrentVertex(), stepPair[1], false);
+        if (isUseStatisticsManager()) {
+          getStatisticsManager().addProgress(getMachine().getCurrentVertex());
+        }
 
-        } else {
-          if (future.isCancelled()) {
-            throw new RuntimeException("Future task was canceled.");
-          }
-          Thread.sleep(10); // Sleep a little to release the thread for other
-                            // activities
+        if (checkMultiModelHandling(cooperative)) {
+          return true;
+        }
+        if (cooperative && threadSuspended) {
+          logger.debug("The model has been suspended: " + getGraph());
+          return true;
         }
+        if (cooperative && stopFlag == null) {
+          logger.debug("The model has been stopped: " + getGraph());
+          return false;
+        }
+
+      } catch (IllegalArgumentException e) {
+        throw new RuntimeException("Illegal argument used.", e);
+      } catch (SecurityException e) {
+        throw new RuntimeException("Security failure occured.", e);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException("Illegal access was stoped.", e);
       }
-    } finally {
-      stop();
     }
+    return false;
   }
 
-  private void checkMultiModelHandling() throws InterruptedException {
+  /**
+   * Waits until the future set for the model, if any, is done.
+   */
+  private void waitForFuture() throws InterruptedException {
+    Future<?> current = future;
+    while (current != null && !current.isDone()) {
+      try {
+        current.get();
+      } catch (ExecutionException e) {
+        // Only the completion of the future event matters for the execution
+      } catch (CancellationException e) {
+        // Only the completion of the future event matters for the execution
+      }
+      current = future;
+    }
+  }
+
+  /**
+   * Waits until the model is resumed.
+   */
+  private synchronized void waitWhileSuspended() throws InterruptedException {
+    while (threadSuspended) {
+      wait();
+    }
+  }
+
+  private void fireStateChanged() {
+    if (multiModelHandler != null) {
+      multiModelHandler.stateChanged(this);
+    }
+  }
+
+  /**
+   * Suspends the model, if it has reached a vertex where the execution is to be handed over to
+   * another model.
+   *
+   * @param cooperative If true, the method returns instead of waiting for the model to be resumed.
+   * @return true if the model was suspended and not waited for.
+   */
+  private boolean checkMultiModelHandling(boolean cooperative) throws InterruptedException {
     if (getMultiModelHandler() != null) {
       getMultiModelHandler().setCurrentVertex(getCurrentVertex().getLabelKey());
     }
 
     if (getCurrentVertex().isSwitchModelKey()) {
       logger.debug("Will suspend the model because the SWITCH_MODEL key is found for current vertex: " + getCurrentVertex().getLabelKey());
+      discardPipeline();
       suspend();
-      while (threadSuspended) {
-        Thread.sleep(10);
+      if (cooperative) {
+        return true;
       }
+      waitWhileSuspended();
     } else if (getMultiModelHandler() != null) {
       if (getCurrentVertex().isGraphVertex()) {
         logger.debug("Will suspend the model because the vertex is a GRAPH_VERTEX: " + getCurrentVertex().getLabelKey());
+        discardPipeline();
         suspend();
-        while (threadSuspended) {
-          Thread.sleep(10);
+        if (cooperative) {
+          return true;
         }
+        waitWhileSuspended();
       }
     }
+    return false;
   }
 
-  private void executeMethod(Class<?> clsClass, Object objInstance, String strMethod, boolean isEdge) throws IllegalArgumentException,
-      SecurityException, IllegalAccessException {
-    if (strMethod.contains("/")) {
-      strMethod = strMethod.substring(0, strMethod.indexOf('/'));
+  private void executeMethod(Class<?> clsClass, Object objInstance, AbstractElement element, String strMethod, boolean isEdge)
+      throws IllegalArgumentException, SecurityException, IllegalAccessException {
+    ExecutorMethods.Call call = null;
+    if (executorMethods != null && executorMethods.isFor(clsClass, getMachine())) {
+      call = executorMethods.getCall(element, isEdge);
     }
-
-    if (strMethod.contains("[")) {
-      strMethod = strMethod.substring(0, strMethod.indexOf('['));
-    }
-
-    if (strMethod.contains(" ")) {
-      String s1 = strMethod.substring(0, strMethod.indexOf(' '));
-      String s2 = strMethod.substring(strMethod.indexOf(' ') + 1);
-      Class<?>[] paramTypes = {String.class};
-      Object[] paramValues = {s2};
-
+    if (call == null) {
       try {
-        clsClass.getMethod(s1, paramTypes).invoke(objInstance, paramValues);
-      } catch (InvocationTargetException e) {
-        if (isEdge) {
-          logger.error("InvocationTargetException for: " + getMachine().getLastEdge());
-        } else {
-          logger.error("InvocationTargetException for: " + getMachine().getCurrentVertex());
-        }
-        throw new RuntimeException("InvocationTargetException.", e);
+        call = ExecutorMethods.resolve(clsClass, strMethod, isEdge);
       } catch (NoSuchMethodException e) {
         logger.error("In model: " + getGraph());
         if (isEdge) {
-          logger.error("NoSuchMethodException for: " + getMachine().getLastEdge());
+          logger.error("Method: " + getMachine().getLastEdge() + ", is missing in class: " + clsClass);
         } else {
-          logger.error("NoSuchMethodException for: " + getMachine().getCurrentVertex());
+          logger.error("Method: " + getMachine().getCurrentVertex() + ", is missing in class: " + clsClass);
         }
         throw new RuntimeException("NoSuchMethodException.", e);
       }
-    } else {
-      if (isEdge && strMethod.isEmpty()) {
-        return;
-      }
-      try {
-        Method m = clsClass.getMethod(strMethod, null);
-        m.invoke(objInstance, null);
-      } catch (InvocationTargetException e) {
-        if (isEdge) {
-          logger.error("InvocationTargetException for: " + getMachine().getLastEdge() + " : " + e.getCause().getMessage());
-        } else {
-          logger.error("InvocationTargetException for: " + getMachine().getCurrentVertex() + " : " + e.getCause().getMessage());
-        }
-        Util.logStackTraceToError(e);
-        throw new RuntimeException("InvocationTargetException.", e.getCause());
-      } catch (NoSuchMethodException e) {
-        logger.error("In model: " + getGraph());
+    }
+    if (call == ExecutorMethods.NONE) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    try {
+      call.invoke(objInstance);
+    } catch (InvocationTargetException e) {
+      if (call.hasParameter()) {
         if (isEdge) {
-          logger.error("Method: " + getMachine().getLastEdge() + ", is missing in class: " + clsClass);
+          logger.error("InvocationTargetException for: " + getMachine().getLastEdge());
         } else {
-          logger.error("Method: " + getMachine().getCurrentVertex() + ", is missing in class: " + clsClass);
+          logger.error("InvocationTargetException for: " + getMachine().getCurrentVertex());
         }
-        throw new RuntimeException("NoSuchMethodException.", e);
+        throw new RuntimeException("InvocationTargetException.", e);
+      }
+      if (isEdge) {
+        logger.error("InvocationTargetException for: " + getMachine().getLastEdge() + " : " + e.getCause().getMessage());
+      } else {
+        logger.error("InvocationTargetException for: " + getMachine().getCurrentVertex() + " : " + e.getCause().getMessage());
       }
+      Util.logStackTraceToError(e);
+      throw new RuntimeException("InvocationTargetException.", e.getCause());
+    } finally {
+      metrics.recordLatency(MetricsRegistry.EXECUTION_LATENCY, element, System.nanoTime() - start);
     }
   }
 
@@ -1054,12 +1375,14 @@ public class ModelBasedTesting extends Observable {
         return false;
       }
       logger.info("Manually changing vertex from: " + getMachine().getCurrentVertexName() + " to: " + newVertex);
+      discardPipeline();
       getMachine().setVertex(newVertex);
 
       // We have to empty current Dijkstra path, if it exists.
       if (getGenerator() instanceof NonOptimizedShortestPath) {
         ((NonOptimizedShortestPath) getGenerator()).emptyCurrentPath();
       }
+      fireStateChanged();
       return true;
     } else {
       logger.warn("Trying to set current state without specifying machine");
@@ -1076,22 +1399,27 @@ public class ModelBasedTesting extends Observable {
   }
 
   public AbstractElement setAsVisited(Integer index) {
+    discardPipeline();
     AbstractElement e = getMachine().findElement(index);
     e.setVisitedKey(e.getVisitedKey() + 1);
     return e;
   }
 
   public void setCurrentVertex(Vertex vertex) {
+    discardPipeline();
     getMachine().setVertex(vertex);
+    fireStateChanged();
   }
 
   public AbstractElement decrementVisited(Integer index) {
+    discardPipeline();
     AbstractElement e = getMachine().findElement(index);
     if (e.getVisitedKey() > 0) e.setVisitedKey(e.getVisitedKey() - 1);
     return e;
   }
 
   public void setAllUnvisited() {
+    discardPipeline();
     getMachine().setAllUnvisited();
   }
 
@@ -1100,24 +1428,28 @@ public class ModelBasedTesting extends Observable {
     finishedFlag = true;
     stopFlag = null;
     notifyAll();
+    fireStateChanged();
   }
 
   public synchronized void suspend() {
     logger.debug("Will suspend the excution of the model.");
     threadSuspended = true;
     notifyAll();
+    fireStateChanged();
   }
 
   public synchronized void resume() {
     logger.debug("Will resume the excution of the model " + getGraph());
     threadSuspended = false;
     notifyAll();
+    fireStateChanged();
   }
 
   public synchronized void setRunning() {
     thisThread = Thread.currentThread();
     stopFlag = thisThread;
     notifyAll();
+    fireStateChanged();
   }
 
   public boolean isRunning() {
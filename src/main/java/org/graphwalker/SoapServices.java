@@ -185,7 +185,8 @@ public class SoapServices {
 
   public String GetStatistics() {
     logger.debug("SOAP service getStatistics");
-    return mbt.getStatisticsVerbose();
+    String latency = mbt.getLatencyStatisticsVerbose();
+    return mbt.getStatisticsVerbose() + (latency.isEmpty() ? "" : "\nLatency:\n" + latency.trim());
   }
 
   private void Reset() {
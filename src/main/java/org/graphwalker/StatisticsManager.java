@@ -23,10 +23,16 @@
 
 package org.graphwalker;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.Hashtable;
@@ -42,6 +48,7 @@ import javax.xml.transform.stream.StreamSource;
 
 import org.apache.log4j.Logger;
 import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.statistics.MetricsRegistry;
 import org.graphwalker.statistics.Statistics;
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -49,6 +56,15 @@ import org.jdom2.output.XMLOutputter;
 import org.jdom2.transform.JDOMSource;
 
 /**
+ * Keeps the coverage counters, and the progress of the counters over the whole execution. By
+ * default the progress is kept in memory. When a progress file is set, using
+ * {@link #setProgressFile(File)}, every step is appended as one line to the file instead, and the
+ * progress document is built from the file when a report is requested.<br>
+ * The progress file starts with a header line, listing the counter types separated by tab:<br>
+ * <code>#Edge Coverage&lt;tab&gt;Vertex Coverage</code><br>
+ * and is followed by one line per step, with the value and max of each counter:<br>
+ * <code>1/4&lt;tab&gt;1/3</code>
+ * 
  * @author Johan Tejle
  * 
  */
@@ -56,8 +72,14 @@ public class StatisticsManager {
 
   static private Logger log = Util.setupLogger(StatisticsManager.class);
   private Hashtable<String, Statistics> counters;
+  private volatile Statistics[] counterArray = new Statistics[0];
+  private MetricsRegistry metrics = null;
   private Document progress;
   private Transformer styleTemplate;
+  private File progressFile;
+  private BufferedWriter progressWriter;
+  private String[] recordTypes;
+  private long progressCount = 0;
 
   /**
 	 * 
@@ -67,17 +89,195 @@ public class StatisticsManager {
     this.progress = new Document(new Element("Statistics"));
   }
 
-  public void addStatisicsCounter(String name, Statistics statisicsCounter) {
+  public synchronized void addStatisicsCounter(String name, Statistics statisicsCounter) {
     counters.put(name, statisicsCounter);
+    counterArray = counters.values().toArray(new Statistics[counters.size()]);
+    recordTypes = null;
+    if (metrics != null) {
+      metrics.register(name, statisicsCounter);
+    }
   }
 
-  public void addProgress(AbstractElement element) {
+  /**
+   * Registers the counters, present and future, in the metrics registry, where they can be read
+   * without locking the manager.
+   */
+  public synchronized void setMetrics(MetricsRegistry metrics) {
+    this.metrics = metrics;
     for (Enumeration<String> e = counters.keys(); e.hasMoreElements();) {
       String key = e.nextElement();
-      Statistics stats = counters.get(key);
+      metrics.register(key, counters.get(key));
+    }
+  }
+
+  public synchronized void addProgress(AbstractElement element) {
+    for (Statistics stats : counterArray) {
       stats.addProgress(element);
     }
-    this.progress.getRootElement().addContent(getCurrentStatistic().detachRootElement());
+    progressCount++;
+    if (progressWriter != null) {
+      writeRecord();
+    } else {
+      this.progress.getRootElement().addContent(getCurrentStatistic().detachRootElement());
+    }
+  }
+
+  /**
+   * Switches the manager to streaming mode. The progress recorded so far is moved to the file, and
+   * all following steps are appended to it. Only the counters are kept in memory.
+   * 
+   * @param file The file to write the progress to. It is overwritten.
+   */
+  public synchronized void setProgressFile(File file) {
+    log.info("Writing statistics progress to '" + file + "'");
+    close();
+    try {
+      progressWriter = new BufferedWriter(new FileWriter(file));
+    } catch (IOException e) {
+      throw new RuntimeException("Could not create or open '" + file + "'", e);
+    }
+    progressFile = file;
+    recordTypes = null;
+    for (Element statistic : progress.getRootElement().getChildren()) {
+      writeRecord(statistic);
+    }
+    progress = new Document(new Element("Statistics"));
+  }
+
+  public File getProgressFile() {
+    return progressFile;
+  }
+
+  /**
+   * @return The number of steps added to the progress
+   */
+  public synchronized long getProgressCount() {
+    return progressCount;
+  }
+
+  /**
+   * Flushes and closes the progress file, if any. The progress can still be read from the file
+   * afterwards, but no more steps are written to it.
+   */
+  public synchronized void close() {
+    if (progressWriter == null) {
+      return;
+    }
+    try {
+      progressWriter.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not close '" + progressFile + "'", e);
+    }
+    progressWriter = null;
+  }
+
+  private void writeRecord() {
+    try {
+      if (recordTypes == null) {
+        recordTypes = counters.keySet().toArray(new String[0]);
+        writeHeader();
+      }
+      for (int i = 0; i < recordTypes.length; i++) {
+        int[] stats = getStatistic(recordTypes[i]);
+        if (i > 0) {
+          progressWriter.write('\t');
+        }
+        progressWriter.write(stats[0] + "/" + stats[1]);
+      }
+      progressWriter.newLine();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write to '" + progressFile + "'", e);
+    }
+  }
+
+  private void writeRecord(Element statistic) {
+    try {
+      String[] types = new String[statistic.getChildren().size()];
+      StringBuilder record = new StringBuilder();
+      for (int i = 0; i < types.length; i++) {
+        Element data = statistic.getChildren().get(i);
+        types[i] = data.getAttributeValue("type");
+        record.append(i > 0 ? "\t" : "").append(data.getAttributeValue("value")).append('/').append(data.getAttributeValue("max"));
+      }
+      if (recordTypes == null || !Arrays.equals(recordTypes, types)) {
+        recordTypes = types;
+        writeHeader();
+      }
+      progressWriter.write(record.toString());
+      progressWriter.newLine();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write to '" + progressFile + "'", e);
+    }
+  }
+
+  private void writeHeader() throws IOException {
+    progressWriter.write('#');
+    for (int i = 0; i < recordTypes.length; i++) {
+      progressWriter.write((i > 0 ? "\t" : "") + recordTypes[i]);
+    }
+    progressWriter.newLine();
+  }
+
+  /**
+   * Reads a progress file written in streaming mode.
+   * 
+   * @param file The progress file
+   * @return The progress document, the same as the one kept in memory when not streaming.
+   */
+  public static Document readProgress(File file) {
+    Document doc = new Document(new Element("Statistics"));
+    BufferedReader in = null;
+    try {
+      in = new BufferedReader(new FileReader(file));
+      String[] types = new String[0];
+      String line;
+      while ((line = in.readLine()) != null) {
+        if (line.startsWith("#")) {
+          types = line.substring(1).split("\t");
+          continue;
+        }
+        String[] values = line.split("\t");
+        Util.AbortIf(values.length != types.length, "Malformed record in '" + file + "': " + line);
+        Element statistic = new Element("Statistic");
+        for (int i = 0; i < types.length; i++) {
+          int separator = values[i].indexOf('/');
+          Element data = new Element("Data");
+          data.setAttribute("type", types[i]);
+          data.setAttribute("value", values[i].substring(0, separator));
+          data.setAttribute("max", values[i].substring(separator + 1));
+          statistic.addContent(data);
+        }
+        doc.getRootElement().addContent(statistic);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read '" + file + "'", e);
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          log.warn("Could not close '" + file + "'", e);
+        }
+      }
+    }
+    return doc;
+  }
+
+  /**
+   * @return A copy of the full progress. When streaming, it is read from the progress file.
+   */
+  public synchronized Document getFullProgress() {
+    if (progressFile == null) {
+      return (Document) this.progress.clone();
+    }
+    if (progressWriter != null) {
+      try {
+        progressWriter.flush();
+      } catch (IOException e) {
+        throw new RuntimeException("Could not write to '" + progressFile + "'", e);
+      }
+    }
+    return readProgress(progressFile);
   }
 
   private int[] getStatistic(String key) {
@@ -85,17 +285,17 @@ public class StatisticsManager {
     return new int[] {stats.getCurrent(), stats.getMax()};
   }
 
-  public String getCurrentStatisticXml() {
+  public synchronized String getCurrentStatisticXml() {
     XMLOutputter outputter = new XMLOutputter();
     return outputter.outputString(getCurrentStatistic());
   }
 
   public String getFullProgressXml() {
     XMLOutputter outputter = new XMLOutputter();
-    return outputter.outputString(this.progress);
+    return outputter.outputString(getFullProgress());
   }
 
-  public Document getCurrentStatistic() {
+  public synchronized Document getCurrentStatistic() {
     Element root = new Element("Statistic");
     Document doc = new Document(root);
     for (Enumeration<String> e = counters.keys(); e.hasMoreElements();) {
@@ -132,8 +332,31 @@ public class StatisticsManager {
 
   public void writeFullReport(PrintStream out) {
     log.info("Writing full report");
+    writeReport(getFullProgress(), out);
+  }
+
+  /**
+   * Writes the report for the periodic updates during a run. When streaming, the report is made
+   * from the current statistics only, as if the progress was a single step, so that its cost does
+   * not grow with the length of the run. Otherwise it is the same as the full report.
+   */
+  public void writeIntermediateReport(PrintStream out) {
+    log.info("Writing intermediate report");
+    writeReport(getIntermediateProgress(), out);
+  }
+
+  private synchronized Document getIntermediateProgress() {
+    if (progressFile == null) {
+      return getFullProgress();
+    }
+    Document doc = new Document(new Element("Statistics"));
+    doc.getRootElement().addContent(getCurrentStatistic().detachRootElement());
+    return doc;
+  }
+
+  private void writeReport(Document progress, PrintStream out) {
     try {
-      styleTemplate.transform(new JDOMSource((Document) this.progress.clone()), new StreamResult(out));
+      styleTemplate.transform(new JDOMSource(progress), new StreamResult(out));
       // out.close();
     } catch (TransformerException e) {
       throw new RuntimeException("Could not create report", e);
@@ -0,0 +1,216 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+
+package org.graphwalker;
+
+import java.util.Vector;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.conditions.AlternativeCondition;
+import org.graphwalker.conditions.CombinationalCondition;
+import org.graphwalker.conditions.NSwitchCoverage;
+import org.graphwalker.conditions.StopCondition;
+import org.graphwalker.generators.A_StarPathGenerator;
+import org.graphwalker.generators.LeastVisitedPathGenerator;
+import org.graphwalker.generators.PathGenerator;
+import org.graphwalker.generators.RandomPathGenerator;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
+import org.graphwalker.machines.FiniteStateMachine;
+
+/**
+ * Generates the steps of a path ahead of their execution. The generator walks a copy of the
+ * machine in a background thread, and the steps are kept in a bounded buffer until they are taken.
+ * A step that is taken is walked on the real machine, so the real machine is always at the step
+ * being executed.<br>
+ * If the real machine is changed by anything else, the pipeline has to be closed, and a new one
+ * started from the current state. The new pipeline synchronizes the copy of the closed one with the
+ * machine, instead of copying the model again, as long as the model is not changed.
+ */
+class StepPipeline {
+  private static Logger logger = Util.setupLogger(StepPipeline.class);
+
+  private static final Step END = new Step(-1, null, null);
+  private static final Step CLOSED = new Step(-1, null, null);
+
+  private final FiniteStateMachine machine;
+  private final PathGenerator generator;
+  private final CompiledGraph source;
+  private final FiniteStateMachine copy;
+  private final BlockingQueue<Step> buffer;
+  private final Thread producer;
+  private volatile boolean closed = false;
+  private Step next = null;
+
+  /**
+   * @param previous A closed pipeline, whose copy of the machine is reused if the model is the same,
+   *          or null
+   */
+  StepPipeline(FiniteStateMachine machine, PathGenerator generator, int capacity, StepPipeline previous) {
+    this.machine = machine;
+    this.generator = generator;
+    source = machine.getModel().getCompiledGraph();
+    if (previous != null && previous.closed && previous.source == source) {
+      copy = previous.copy;
+      copy.synchronize(machine);
+    } else {
+      copy = new FiniteStateMachine(machine);
+    }
+    buffer = new ArrayBlockingQueue<Step>(capacity);
+    generator.setMachine(copy);
+    producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        produce();
+      }
+    }, "Step pipeline " + generator);
+    producer.setDaemon(true);
+    producer.start();
+  }
+
+  /**
+   * The steps can only be generated ahead if they do not depend on the execution, that is for a
+   * plain FSM, and for generators and stop conditions that only depend on the state of the machine.
+   * None of them read the requirement verdicts, so passing a requirement keeps the pipeline.
+   */
+  static boolean isSupported(FiniteStateMachine machine, PathGenerator generator) {
+    if (machine instanceof ExtendedFiniteStateMachine) {
+      return false;
+    }
+    if (!(generator instanceof RandomPathGenerator || generator instanceof A_StarPathGenerator || generator instanceof LeastVisitedPathGenerator)) {
+      return false;
+    }
+    return generator.getStopCondition() != null && !hasWalkHistory(generator.getStopCondition());
+  }
+
+  private static boolean hasWalkHistory(StopCondition condition) {
+    if (condition instanceof NSwitchCoverage) {
+      return true;
+    }
+    Vector<StopCondition> conditions = null;
+    if (condition instanceof AlternativeCondition) {
+      conditions = ((AlternativeCondition) condition).getConditions();
+    } else if (condition instanceof CombinationalCondition) {
+      conditions = ((CombinationalCondition) condition).getConditions();
+    }
+    if (conditions != null) {
+      for (StopCondition subCondition : conditions) {
+        if (hasWalkHistory(subCondition)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private void produce() {
+    CompiledGraph compiledGraph = copy.getModel().getCompiledGraph();
+    try {
+      while (generator.hasNext()) {
+        String[] stepPair = generator.getNext();
+        buffer.put(new Step(compiledGraph.getEdgeId(copy.getLastEdge()), stepPair, null));
+      }
+      buffer.put(END);
+    } catch (InterruptedException e) {
+      // The pipeline has been closed
+    } catch (RuntimeException e) {
+      if (!Thread.currentThread().isInterrupted()) {
+        buffer.offer(new Step(-1, null, e));
+      }
+    }
+  }
+
+  /**
+   * Waits until the next step has been generated, or the pipeline is closed.
+   *
+   * @return true if there is a next step, false if the stop condition is fulfilled or the pipeline
+   *         is closed.
+   */
+  boolean hasNext() throws InterruptedException {
+    if (next == null) {
+      next = buffer.take();
+    }
+    if (next == CLOSED) {
+      return false;
+    }
+    if (next.error != null) {
+      logger.fatal(next.error.toString());
+      throw new RuntimeException("ERROR: " + next.error.getMessage(), next.error);
+    }
+    return next != END;
+  }
+
+  /**
+   * Takes the next step, and walks it on the machine.
+   */
+  String[] getNext() throws InterruptedException {
+    Util.AbortIf(!hasNext(), "Finished");
+    Step step = next;
+    next = null;
+    machine.walkEdge(machine.getModel().getCompiledGraph().getEdge(step.edgeId));
+    return step.stepPair;
+  }
+
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Stops the generation, discards the steps not yet taken, and binds the generator to the machine
+   * again. A thread waiting for the next step is woken up.
+   */
+  void close() {
+    boolean interrupted = false;
+    while (producer.isAlive()) {
+      producer.interrupt();
+      try {
+        producer.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    buffer.clear();
+    closed = true;
+    buffer.offer(CLOSED);
+    generator.setMachine(machine);
+    generator.reset();
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static class Step {
+    private final int edgeId;
+    private final String[] stepPair;
+    private final RuntimeException error;
+
+    Step(int edgeId, String[] stepPair, RuntimeException error) {
+      this.edgeId = edgeId;
+      this.stepPair = stepPair;
+      this.error = error;
+    }
+  }
+}
@@ -67,16 +67,21 @@ import org.graphwalker.generators.A_StarPathGenerator;
 import org.graphwalker.generators.AllPathPermutationsGenerator;
 import org.graphwalker.generators.CodeGenerator;
 import org.graphwalker.generators.CombinedPathGenerator;
+import org.graphwalker.generators.LeastVisitedPathGenerator;
 import org.graphwalker.generators.ListGenerator;
 import org.graphwalker.generators.NonOptimizedShortestPath;
 import org.graphwalker.generators.PathGenerator;
+import org.graphwalker.generators.PlanCache;
 import org.graphwalker.generators.RandomPathGenerator;
+import org.graphwalker.generators.ReplayGenerator;
+import org.graphwalker.generators.RequirementPlannerGenerator;
 import org.graphwalker.generators.RequirementsGenerator;
 import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
 import org.graphwalker.io.PrintHTMLTestSequence;
+import org.graphwalker.io.TraceWriter;
 import org.graphwalker.machines.FiniteStateMachine;
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -308,6 +313,18 @@ public class Util {
         generator = new NonOptimizedShortestPath();
         break;
 
+      case Keywords.GENERATOR_LEAST_VISITED:
+        generator = new LeastVisitedPathGenerator();
+        break;
+
+      case Keywords.GENERATOR_REQUIREMENT_PLANNER:
+        generator = new RequirementPlannerGenerator();
+        break;
+
+      case Keywords.GENERATOR_REPLAY:
+        generator = new ReplayGenerator();
+        break;
+
       default:
         throw new GeneratorException("Unsupported generator selected.");
     }
@@ -476,6 +493,11 @@ public class Util {
       mbt.setWeighted(false);
     }
 
+    if (root.getAttributeValue("PIPELINE") != null) {
+      Util.logger.debug("Will generate up to " + root.getAttributeValue("PIPELINE") + " steps ahead of the execution");
+      mbt.setPipelineCapacity(Integer.parseInt(root.getAttributeValue("PIPELINE")));
+    }
+
     List<Element> generators = root.getChildren("GENERATOR");
 
     if (generators.size() == 0) {
@@ -488,6 +510,10 @@ public class Util {
       for (Element element : generators) {
         ((CombinedPathGenerator) generator).addPathGenerator(getGenerator(mbt.getMachine(), element));
       }
+      if (root.getAttributeValue("PREFETCH") != null && root.getAttributeValue("PREFETCH").equalsIgnoreCase("true")) {
+        Util.logger.debug("Will plan the path of the next generator ahead of the execution");
+        ((CombinedPathGenerator) generator).setPrefetch(true);
+      }
     } else {
       generator = getGenerator(mbt.getMachine(), generators.get(0));
     }
@@ -504,6 +530,17 @@ public class Util {
       mbt.getStatisticsManager().setReportTemplate(new FileInputStream(new File(reportTemplate)));
     }
 
+    if (root.getAttributeValue("STATISTICS-FILE") != null) {
+      Util.logger.debug("Will stream the statistics progress to: " + root.getAttributeValue("STATISTICS-FILE"));
+      mbt.setUseStatisticsManager(true);
+      mbt.getStatisticsManager().setProgressFile(new File(root.getAttributeValue("STATISTICS-FILE")));
+    }
+
+    if (root.getAttributeValue("TRACE") != null) {
+      Util.logger.debug("Will write the execution trace to: " + root.getAttributeValue("TRACE"));
+      mbt.setTraceWriter(new TraceWriter(new File(root.getAttributeValue("TRACE"))));
+    }
+
     String logInterval = root.getAttributeValue("LOG-INTERVAL");
 
     if (logInterval != null) {
@@ -514,7 +551,7 @@ public class Util {
           @Override
           public void run() {
             try {
-              mbt.getStatisticsManager().writeFullReport(new PrintStream(reportName));
+              mbt.getStatisticsManager().writeIntermediateReport(new PrintStream(reportName));
             } catch (FileNotFoundException e) {
               throw new RuntimeException("Could not open or write report file '" + reportName + "'", e);
             }
@@ -598,6 +635,10 @@ public class Util {
         if (reportName != null && reportTemplate != null) {
           mbt.getStatisticsManager().writeFullReport(reportName);
         }
+        mbt.getStatisticsManager().close();
+        if (mbt.getTraceWriter() != null) {
+          mbt.getTraceWriter().close();
+        }
       }
     }
     return mbt;
@@ -661,6 +702,11 @@ public class Util {
       mbt.setWeighted(false);
     }
 
+    if (root.getAttributeValue("PIPELINE") != null) {
+      Util.logger.debug("Will generate up to " + root.getAttributeValue("PIPELINE") + " steps ahead of the execution");
+      mbt.setPipelineCapacity(Integer.parseInt(root.getAttributeValue("PIPELINE")));
+    }
+
     List<Element> generators = root.getChildren("GENERATOR");
 
     if (generators.size() == 0) {
@@ -673,6 +719,10 @@ public class Util {
       for (Element element : generators) {
         ((CombinedPathGenerator) generator).addPathGenerator(getGenerator(mbt.getMachine(), element));
       }
+      if (root.getAttributeValue("PREFETCH") != null && root.getAttributeValue("PREFETCH").equalsIgnoreCase("true")) {
+        Util.logger.debug("Will plan the path of the next generator ahead of the execution");
+        ((CombinedPathGenerator) generator).setPrefetch(true);
+      }
     } else {
       generator = getGenerator(mbt.getMachine(), generators.get(0));
     }
@@ -689,6 +739,17 @@ public class Util {
       mbt.getStatisticsManager().setReportTemplate(new FileInputStream(new File(reportTemplate)));
     }
 
+    if (root.getAttributeValue("STATISTICS-FILE") != null) {
+      Util.logger.debug("Will stream the statistics progress to: " + root.getAttributeValue("STATISTICS-FILE"));
+      mbt.setUseStatisticsManager(true);
+      mbt.getStatisticsManager().setProgressFile(new File(root.getAttributeValue("STATISTICS-FILE")));
+    }
+
+    if (root.getAttributeValue("TRACE") != null) {
+      Util.logger.debug("Will write the execution trace to: " + root.getAttributeValue("TRACE"));
+      mbt.setTraceWriter(new TraceWriter(new File(root.getAttributeValue("TRACE"))));
+    }
+
     String logInterval = root.getAttributeValue("LOG-INTERVAL");
 
     if (logInterval != null) {
@@ -699,7 +760,7 @@ public class Util {
           @Override
           public void run() {
             try {
-              mbt.getStatisticsManager().writeFullReport(new PrintStream(reportName));
+              mbt.getStatisticsManager().writeIntermediateReport(new PrintStream(reportName));
             } catch (FileNotFoundException e) {
               throw new RuntimeException("Could not open or write report file '" + reportName + "'", e);
             }
@@ -784,6 +845,10 @@ public class Util {
         if (reportName != null && reportTemplate != null) {
           mbt.getStatisticsManager().writeFullReport(reportName);
         }
+        mbt.getStatisticsManager().close();
+        if (mbt.getTraceWriter() != null) {
+          mbt.getTraceWriter().close();
+        }
       }
     }
     return mbt;
@@ -831,6 +896,28 @@ public class Util {
       if (stopCondition != null) {
         generatorObject.setStopCondition(stopCondition);
       }
+      if (generatorObject instanceof A_StarPathGenerator) {
+        A_StarPathGenerator a_star = (A_StarPathGenerator) generatorObject;
+        String planCache = generator.getAttributeValue("PLAN_CACHE");
+        if (planCache != null) {
+          a_star.setPlanCache(new PlanCache(new File(planCache.trim())));
+        }
+        String maxExpandedPaths = generator.getAttributeValue("MAX_EXPANDED_PATHS");
+        if (maxExpandedPaths != null) {
+          a_star.setMaxExpandedPaths(Integer.parseInt(maxExpandedPaths.trim()));
+        }
+        String maxSearchTime = generator.getAttributeValue("MAX_SEARCH_TIME");
+        if (maxSearchTime != null) {
+          a_star.setMaxSearchTime(Long.parseLong(maxSearchTime.trim()));
+        }
+      }
+      if (generatorObject instanceof ReplayGenerator) {
+        String trace = generator.getAttributeValue("VALUE");
+        if (trace == null) {
+          throw new RuntimeException("No trace is specified for the replay generator.");
+        }
+        ((ReplayGenerator) generatorObject).setTrace(new File(trace.trim()));
+      }
     }
     return generatorObject;
   }
@@ -980,6 +1067,34 @@ public class Util {
     return port;
   }
 
+  /**
+   * @return The folder of the model cache, set by graphwalker.cache.folder in
+   *         graphwalker.properties, or null if models are not cached
+   */
+  public static String readModelCacheFolder() {
+    PropertiesConfiguration conf = null;
+    if (new File("graphwalker.properties").canRead()) {
+      try {
+        conf = new PropertiesConfiguration("graphwalker.properties");
+      } catch (ConfigurationException e) {
+        Util.logger.error(e.getMessage());
+      }
+    } else {
+      conf = new PropertiesConfiguration();
+      try {
+        conf.load(Util.class.getResourceAsStream("/org/graphwalker/resources/graphwalker.properties"));
+      } catch (ConfigurationException e) {
+        Util.logger.error(e.getMessage());
+      }
+    }
+    String folder = conf.getString("graphwalker.cache.folder");
+    Util.logger.debug("Read graphwalker.cache.folder from graphwalker.properties: " + folder);
+    if (folder != null && folder.trim().isEmpty()) {
+      folder = null;
+    }
+    return folder;
+  }
+
   public static void logStackTraceToError(final Exception e) {
     StringWriter sw = new StringWriter();
     PrintWriter pw = new PrintWriter(sw);
@@ -0,0 +1,293 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.exceptions.GeneratorException;
+import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.generators.PathGenerator;
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
+import org.graphwalker.machines.FiniteStateMachine;
+
+/**
+ * Generates a number of independent offline walks through the same model in parallel, and selects
+ * one of them according to a {@link MergePolicy}. This is useful for stochastic generators, for
+ * example to pick the shortest out of 64 random walks reaching full edge coverage.<br>
+ * Since the visited counters are stored in the vertices and edges, every walk runs on its own copy
+ * of the model, with its own machine and generator. The walks are distributed over a fixed pool of
+ * threads.
+ */
+public class WalkerFarm {
+
+  private static Logger logger = Util.setupLogger(WalkerFarm.class);
+
+  /**
+   * Decides which of the walks that is selected.
+   */
+  public enum MergePolicy {
+    /**
+     * The first walk to finish is selected, and the remaining walks are cancelled.
+     */
+    FIRST,
+    /**
+     * The walk with the fewest steps is selected. Ties are resolved by the best coverage.
+     */
+    SHORTEST,
+    /**
+     * The walk with the best edge coverage is selected. Ties are resolved by the fewest steps.
+     */
+    BEST_COVERAGE
+  }
+
+  /**
+   * Creates a new generator, with its stop condition, for every walk.
+   */
+  public interface GeneratorFactory {
+    PathGenerator createGenerator() throws StopConditionException, GeneratorException;
+  }
+
+  /**
+   * The outcome of a single walk.
+   */
+  public static class Walk {
+    private final List<String[]> steps = new ArrayList<String[]>();
+    private final List<Integer> edgeIds = new ArrayList<Integer>();
+    private double edgeCoverage;
+
+    public List<String[]> getSteps() {
+      return steps;
+    }
+
+    /**
+     * @return the ids, in the {@link CompiledGraph} of the model, of the walked edges
+     */
+    public List<Integer> getEdgeIds() {
+      return edgeIds;
+    }
+
+    public double getEdgeCoverage() {
+      return edgeCoverage;
+    }
+
+    public int getLength() {
+      return steps.size();
+    }
+  }
+
+  private final Graph model;
+  private final GeneratorFactory generatorFactory;
+  private boolean extended = false;
+  private boolean useJsScriptEngine = false;
+  private boolean weighted = false;
+  private int numberOfWalks = 1;
+  private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+  private MergePolicy mergePolicy = MergePolicy.SHORTEST;
+
+  public WalkerFarm(Graph model, GeneratorFactory generatorFactory) {
+    this.model = model;
+    this.generatorFactory = generatorFactory;
+  }
+
+  public void setExtended(boolean extended, boolean useJsScriptEngine) {
+    this.extended = extended;
+    this.useJsScriptEngine = useJsScriptEngine;
+  }
+
+  public void setWeighted(boolean weighted) {
+    this.weighted = weighted;
+  }
+
+  public void setNumberOfWalks(int numberOfWalks) {
+    Util.AbortIf(numberOfWalks < 1, "The number of walks must be at least 1");
+    this.numberOfWalks = numberOfWalks;
+  }
+
+  public void setNumberOfThreads(int numberOfThreads) {
+    Util.AbortIf(numberOfThreads < 1, "The number of threads must be at least 1");
+    this.numberOfThreads = numberOfThreads;
+  }
+
+  public void setMergePolicy(MergePolicy mergePolicy) {
+    this.mergePolicy = mergePolicy;
+  }
+
+  public MergePolicy getMergePolicy() {
+    return mergePolicy;
+  }
+
+  /**
+   * Runs all walks, and returns the one selected by the merge policy.
+   * 
+   * @return the selected walk
+   * @throws InterruptedException
+   */
+  public Walk run() throws InterruptedException {
+    // The EFSM redirects System.out while evaluating actions, which does not play well with several
+    // machines running at the same time. Make sure it is restored when all walks are done.
+    PrintStream out = System.out;
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, numberOfWalks));
+    try {
+      CompletionService<Walk> completionService = new ExecutorCompletionService<Walk>(executor);
+      List<Future<Walk>> futures = new ArrayList<Future<Walk>>();
+      for (int i = 0; i < numberOfWalks; i++) {
+        futures.add(completionService.submit(new Callable<Walk>() {
+          @Override
+          public Walk call() throws Exception {
+            return walk();
+          }
+        }));
+      }
+
+      Walk selected = null;
+      for (int i = 0; i < numberOfWalks; i++) {
+        Walk walk = getWalk(completionService.take());
+        logger.debug("Walk finished with " + walk.getLength() + " steps, and edge coverage: " + walk.getEdgeCoverage());
+        if (selected == null || isBetter(walk, selected)) {
+          selected = walk;
+        }
+        if (mergePolicy == MergePolicy.FIRST) {
+          break;
+        }
+      }
+      for (Future<Walk> future : futures) {
+        future.cancel(true);
+      }
+      return selected;
+    } finally {
+      executor.shutdownNow();
+      System.setOut(out);
+    }
+  }
+
+  /**
+   * Walks the selected walk on the machine, so that the machine reflects the coverage of the walk.
+   * The machine must hold the model given to the farm.
+   */
+  public void replay(Walk walk, FiniteStateMachine machine) {
+    replay(walk, machine, null);
+  }
+
+  /**
+   * Walks the selected walk on the machine, and adds every step to the statistics manager, if it is
+   * not null.
+   */
+  public void replay(Walk walk, FiniteStateMachine machine, StatisticsManager statisticsManager) {
+    CompiledGraph compiledGraph = model.getCompiledGraph();
+    for (Integer edgeId : walk.getEdgeIds()) {
+      machine.walkEdge(compiledGraph.getEdge(edgeId));
+      if (statisticsManager != null) {
+        statisticsManager.addProgress(machine.getLastEdge());
+        statisticsManager.addProgress(machine.getCurrentVertex());
+      }
+    }
+  }
+
+  /**
+   * Writes the steps of the walk to the stream, in the same format as
+   * {@link ModelBasedTesting#writePath(PrintStream)}.
+   */
+  public void write(Walk walk, PrintStream out) {
+    for (String[] stepPair : walk.getSteps()) {
+      if (stepPair[0].trim() != "") {
+        out.println(stepPair[0]);
+      }
+      if (stepPair[1].trim() != "") {
+        out.println(stepPair[1]);
+      }
+    }
+  }
+
+  private boolean isBetter(Walk walk, Walk selected) {
+    switch (mergePolicy) {
+      case SHORTEST:
+        if (walk.getLength() != selected.getLength()) {
+          return walk.getLength() < selected.getLength();
+        }
+        return walk.getEdgeCoverage() > selected.getEdgeCoverage();
+      case BEST_COVERAGE:
+        if (walk.getEdgeCoverage() != selected.getEdgeCoverage()) {
+          return walk.getEdgeCoverage() > selected.getEdgeCoverage();
+        }
+        return walk.getLength() < selected.getLength();
+      default:
+        return false;
+    }
+  }
+
+  private Walk getWalk(Future<Walk> future) throws InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException("The walk failed: " + e.getCause().getMessage(), e.getCause());
+    }
+  }
+
+  private Walk walk() throws InterruptedException, StopConditionException, GeneratorException {
+    Graph graph = new Graph(model);
+    for (AbstractElement element : graph.getVertices()) {
+      element.setVisitedKey(0);
+    }
+    for (AbstractElement element : graph.getEdges()) {
+      element.setVisitedKey(0);
+    }
+
+    FiniteStateMachine machine = (extended ? new ExtendedFiniteStateMachine(useJsScriptEngine) : new FiniteStateMachine());
+    machine.setModel(graph);
+    machine.setWeighted(weighted);
+
+    PathGenerator generator = generatorFactory.createGenerator();
+    generator.setMachine(machine);
+
+    CompiledGraph compiledGraph = graph.getCompiledGraph();
+    Walk walk = new Walk();
+    while (generator.hasNext()) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      walk.getSteps().add(generator.getNext());
+      Edge edge = machine.getLastEdge();
+      walk.getEdgeIds().add(compiledGraph.getEdgeId(edge));
+    }
+    walk.edgeCoverage = (double) machine.getNumOfCoveredEdges() / compiledGraph.getEdgeCount();
+    return walk;
+  }
+}
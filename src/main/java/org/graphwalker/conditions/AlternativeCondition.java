@@ -48,6 +48,10 @@ public class AlternativeCondition extends StopCondition {
     this.conditions.add(condition);
   }
 
+  public Vector<StopCondition> getConditions() {
+    return conditions;
+  }
+
   @Override
   public void setMachine(FiniteStateMachine machine) {
     super.setMachine(machine);
@@ -50,6 +50,10 @@ public class CombinationalCondition extends StopCondition {
     this.conditions.add(condition);
   }
 
+  public Vector<StopCondition> getConditions() {
+    return conditions;
+  }
+
   @Override
   public void setMachine(FiniteStateMachine machine) {
     super.setMachine(machine);
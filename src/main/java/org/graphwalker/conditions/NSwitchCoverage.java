@@ -23,13 +23,14 @@
 
 package org.graphwalker.conditions;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Set;
 
+import org.graphwalker.Keywords;
 import org.graphwalker.exceptions.FoundNoEdgeException;
+import org.graphwalker.graph.CompiledGraph;
 import org.graphwalker.graph.Edge;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
 
 
 /**
@@ -37,15 +38,28 @@ import org.graphwalker.graph.Edge;
  * @author petjoh
  * 
  *         This stop condition realizes the N-Switch-Coverage criterion. It terminates when all
- *         combinations of N consecutive edges have been traversed.
+ *         combinations of N consecutive edges have been traversed.<br>
+ *         For a FSM, all sequences of N + 1 edges are enumerated from the structure of the model
+ *         up front. Sequences containing an out edge from the Start vertex are left out, since they
+ *         can only be walked once. For an EFSM, the guards decide which sequences are feasible, so
+ *         the sequences are instead registered as they become available during the walk.<br>
+ *         The sequences are identified by the ids of the edges in the {@link CompiledGraph}, and the
+ *         number of sequences not yet traversed is kept up to date, so each step costs O(N).
  * 
  */
 public class NSwitchCoverage extends StopCondition {
 
-  private final HashMap<Integer, Integer> pathsFound = new HashMap<Integer, Integer>();
-  private final List<Edge> currentPath = new ArrayList<Edge>();
+  /* All registered sequences, mapped to true if traversed */
+  private final HashMap<Object, Boolean> pathsFound = new HashMap<Object, Boolean>();
   private final int depth;
-  private boolean inCycle = false;
+  private final int[] window;
+  private final int[] sequence;
+  private int windowSize = 0;
+  private int windowStart = 0;
+  private int outstanding = 0;
+  private int lastNumberOfEdgesTraversed = -1;
+  private boolean enumerateOnTheFly = false;
+  private CompiledGraph compiledGraph = null;
 
   public NSwitchCoverage() {
     this(0);
@@ -53,70 +67,158 @@ public class NSwitchCoverage extends StopCondition {
 
   public NSwitchCoverage(int depth) {
     this.depth = depth;
+    this.window = new int[depth + 1];
+    this.sequence = new int[depth + 1];
   }
 
   @Override
   public boolean isFulfilled() {
-    if (inCycle) {
-      currentPath.add(machine.getLastEdge());
-      // Set current path as traversed
-      if (currentPath.size() == depth + 1) {
-        pathsFound.put(currentPath.hashCode(), 1);
-        currentPath.remove(0);
+    update();
+    if (pathsFound.size() == 0) {
+      // Special case for when no sequence of the length exists, straight model
+      return machine.getNumOfCoveredEdges() == compiledGraph.getEdgeCount();
+    }
+    return outstanding == 0;
+  }
+
+  @Override
+  public double getFulfilment() {
+    update();
+    if (pathsFound.size() == 0) {
+      return (machine.getNumOfCoveredEdges() == compiledGraph.getEdgeCount() ? 1 : 0);
+    }
+    return (double) (pathsFound.size() - outstanding) / pathsFound.size();
+  }
+
+  /**
+   * Brings the index up to date with the last walked edge of the machine.
+   */
+  private void update() {
+    CompiledGraph currentGraph = machine.getModel().getCompiledGraph();
+    if (currentGraph != compiledGraph) {
+      compiledGraph = currentGraph;
+      pathsFound.clear();
+      outstanding = 0;
+      windowSize = 0;
+      windowStart = 0;
+      lastNumberOfEdgesTraversed = -1;
+      enumerateOnTheFly = machine instanceof ExtendedFiniteStateMachine;
+      if (!enumerateOnTheFly) {
+        enumerateSequences();
       }
-      if (currentPath.size() == depth) {
-        Set<Edge> availableEdges;
-        try {
-          availableEdges = getMachine().getCurrentOutEdges();
-        } catch (FoundNoEdgeException e) {
-          if (!(pathsFound.size() == 0 || pathsFound.containsValue(0))) {
-            return true;
-          }
-          throw new RuntimeException("No possible edges available for path", e);
-        }
+    }
+
+    // Hypothetical walks, made while a generator is calculating a path, are not recorded
+    if (machine.isCalculatingPath() || machine.getLastEdge() == null
+        || machine.getNumberOfEdgesTravesed() == lastNumberOfEdgesTraversed) {
+      return;
+    }
+    lastNumberOfEdgesTraversed = machine.getNumberOfEdgesTravesed();
+
+    int edgeId = compiledGraph.getEdgeId(machine.getLastEdge());
+    if (edgeId < 0 || isStartEdge(edgeId)) {
+      windowSize = 0;
+      return;
+    }
+    // The current vertex may have been changed manually, so the window is only kept if the walked
+    // edges are connected
+    if (windowSize > 0 && compiledGraph.getDest(window[(windowStart + windowSize - 1) % window.length]) != compiledGraph.getSource(edgeId)) {
+      windowSize = 0;
+    }
+    if (windowSize == window.length) {
+      window[windowStart] = edgeId;
+      windowStart = (windowStart + 1) % window.length;
+    } else {
+      window[(windowStart + windowSize++) % window.length] = edgeId;
+    }
 
-        // For every available edge add the resulting path if not already added as un-traversed
-        for (Edge edge : availableEdges) {
-          currentPath.add(edge);
-          if (pathsFound.get(currentPath.hashCode()) == null) {
-            pathsFound.put(currentPath.hashCode(), 0);
-          }
-          currentPath.remove(edge);
+    // Set current path as traversed
+    if (windowSize == window.length) {
+      for (int i = 0; i < window.length; i++) {
+        sequence[i] = window[(windowStart + i) % window.length];
+      }
+      Object key = compiledGraph.getEdgeSequenceKey(sequence, window.length);
+      Boolean traversed = pathsFound.get(key);
+      if (traversed == null) {
+        if (enumerateOnTheFly) {
+          pathsFound.put(key, Boolean.TRUE);
         }
+      } else if (!traversed) {
+        pathsFound.put(key, Boolean.TRUE);
+        outstanding--;
       }
     }
-    // Simple check to make sure we have cleared the initialization vertexes. If we don't require a
-    // cycle in the model the coverage will never be met.
-    if (machine.getCurrentInEdges().size() > 1) {
-      inCycle = true;
-    }
 
-    // Special case for when we don't ever find a cycle, straight model
-    if (!inCycle && machine.getUncoveredEdges().size() == 0) {
-      return true;
+    // For every available edge add the resulting path if not already added as un-traversed
+    if (enumerateOnTheFly && windowSize >= depth) {
+      Set<Edge> availableEdges;
+      try {
+        availableEdges = machine.getCurrentOutEdges();
+      } catch (FoundNoEdgeException e) {
+        return;
+      }
+      int offset = windowSize - depth;
+      for (int i = 0; i < depth; i++) {
+        sequence[i] = window[(windowStart + offset + i) % window.length];
+      }
+      for (Edge edge : availableEdges) {
+        sequence[depth] = compiledGraph.getEdgeId(edge);
+        Object key = compiledGraph.getEdgeSequenceKey(sequence, sequence.length);
+        if (!pathsFound.containsKey(key)) {
+          pathsFound.put(key, Boolean.FALSE);
+          outstanding++;
+        }
+      }
     }
-    return !(pathsFound.size() == 0 || pathsFound.containsValue(0));
   }
 
-  @Override
-  public double getFulfilment() {
-    double visited = 0, unvisited = 0;
-    if (!inCycle && machine.getUncoveredEdges().size() == 0) {
-      return 1;
+  /**
+   * Registers every sequence of depth + 1 edges, that starts in a vertex reachable from the Start
+   * vertex, and does not contain an out edge from the Start vertex.
+   */
+  private void enumerateSequences() {
+    boolean[] reachable = new boolean[compiledGraph.getVertexCount()];
+    int[] queue = new int[compiledGraph.getVertexCount()];
+    int head = 0, tail = 0;
+    int start = compiledGraph.getVertexId(machine.getStartVertex());
+    if (start >= 0) {
+      reachable[start] = true;
+      queue[tail++] = start;
+    }
+    while (head < tail) {
+      for (int edgeId : compiledGraph.getOutEdges(queue[head++])) {
+        int dest = compiledGraph.getDest(edgeId);
+        if (!reachable[dest]) {
+          reachable[dest] = true;
+          queue[tail++] = dest;
+        }
+      }
     }
 
-    if (pathsFound.size() == 0) {
-      return 0;
+    for (int edgeId = 0; edgeId < compiledGraph.getEdgeCount(); edgeId++) {
+      if (reachable[compiledGraph.getSource(edgeId)] && !isStartEdge(edgeId)) {
+        sequence[0] = edgeId;
+        enumerateSequences(1);
+      }
     }
+  }
 
-    for (Integer value : pathsFound.values()) {
-      if (value == 0) {
-        unvisited++;
-      } else {
-        visited++;
+  private void enumerateSequences(int length) {
+    if (length == sequence.length) {
+      pathsFound.put(compiledGraph.getEdgeSequenceKey(sequence, length), Boolean.FALSE);
+      outstanding++;
+      return;
+    }
+    for (int edgeId : compiledGraph.getOutEdges(compiledGraph.getDest(sequence[length - 1]))) {
+      if (!isStartEdge(edgeId)) {
+        sequence[length] = edgeId;
+        enumerateSequences(length + 1);
       }
     }
-    return visited / (visited + unvisited);
+  }
+
+  private boolean isStartEdge(int edgeId) {
+    return compiledGraph.getVertex(compiledGraph.getSource(edgeId)).getLabelKey().equals(Keywords.START_NODE);
   }
 
   @Override
@@ -44,7 +44,7 @@ public class ReachedEdge extends StopCondition {
   @Override
   public void setMachine(FiniteStateMachine machine) {
     super.setMachine(machine);
-    if (this.endEdge == null) {
+    if (this.endEdge == null || !machine.getModel().containsEdge(this.endEdge)) {
       this.endEdge = machine.findEdge(edgeName);
     }
     if (this.endEdge == null) {
@@ -113,6 +113,13 @@ public class ReachedEdge extends StopCondition {
     throw new RuntimeException("edge no longer in Graph!");
   }
 
+  /**
+   * @return the edge to reach, or null if no machine has been set yet
+   */
+  public Edge getEndEdge() {
+    return endEdge;
+  }
+
   @Override
   public String toString() {
     return "EDGE='" + endEdge + "'";
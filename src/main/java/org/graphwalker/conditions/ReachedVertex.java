@@ -51,7 +51,7 @@ public class ReachedVertex extends StopCondition {
   @Override
   public void setMachine(FiniteStateMachine machine) {
     super.setMachine(machine);
-    if (this.endVertex == null) {
+    if (this.endVertex == null || !machine.getModel().containsVertex(this.endVertex)) {
       this.endVertex = machine.getModel().findVertex(vertexName);
     }
     if (this.endVertex == null) {
@@ -135,6 +135,13 @@ public class ReachedVertex extends StopCondition {
     throw new RuntimeException("vertex no longer in Graph!");
   }
 
+  /**
+   * @return the vertex to reach, or null if no machine has been set yet
+   */
+  public Vertex getEndVertex() {
+    return endVertex;
+  }
+
   @Override
   public String toString() {
     return "VERTEX='" + endVertex + "'";
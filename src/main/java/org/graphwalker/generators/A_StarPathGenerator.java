@@ -23,27 +23,47 @@
 
 package org.graphwalker.generators;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Stack;
-import java.util.Vector;
 
+import org.apache.log4j.Logger;
 import org.graphwalker.Util;
+import org.graphwalker.conditions.AlternativeCondition;
+import org.graphwalker.conditions.CombinationalCondition;
+import org.graphwalker.conditions.ReachedEdge;
+import org.graphwalker.conditions.ReachedVertex;
 import org.graphwalker.conditions.StopCondition;
 import org.graphwalker.exceptions.FoundNoEdgeException;
+import org.graphwalker.graph.CompiledGraph;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
 import org.graphwalker.machines.FiniteStateMachine;
+import org.graphwalker.statistics.MetricsRegistry;
 
 public class A_StarPathGenerator extends PathGenerator {
 
+  private static Logger logger = Util.setupLogger(A_StarPathGenerator.class);
+
   public A_StarPathGenerator(StopCondition stopCondition) {
     super(stopCondition);
   }
 
   private Stack<Edge> preCalculatedPath = null;
   private Vertex lastVertex;
+  private PlanCache planCache = null;
+  private boolean servingCachedPlan = false;
+  private int maxExpandedPaths = 0;
+  private long maxSearchTime = 0;
+  private boolean lastSearchComplete = true;
+  private String prefetchedKey = null;
+  private int[] prefetchedPath = null;
 
   @Override
   public void setMachine(FiniteStateMachine machine) {
@@ -54,39 +74,256 @@ public class A_StarPathGenerator extends PathGenerator {
     super();
   }
 
+  /**
+   * Sets a cache of planned paths. Before searching for a path, the cache is asked for a path
+   * planned earlier from the same state, with the same model and stop condition. A cached path is
+   * followed as long as its edges are available, otherwise a new path is searched for.
+   * 
+   * @param planCache the cache, or null to always search
+   */
+  public void setPlanCache(PlanCache planCache) {
+    this.planCache = planCache;
+  }
+
+  public PlanCache getPlanCache() {
+    return planCache;
+  }
+
+  /**
+   * Limits the number of paths expanded by one search. When the limit is reached, the best path
+   * found so far is walked, and the search continues from where that path ends.
+   * 
+   * @param maxExpandedPaths the limit, or 0 for no limit
+   */
+  public void setMaxExpandedPaths(int maxExpandedPaths) {
+    Util.AbortIf(maxExpandedPaths < 0, "The maximum number of expanded paths cannot be negative");
+    this.maxExpandedPaths = maxExpandedPaths;
+  }
+
+  public int getMaxExpandedPaths() {
+    return maxExpandedPaths;
+  }
+
+  /**
+   * Limits the time of one search. When the time is up, the best path found so far is walked, and
+   * the search continues from where that path ends.
+   * 
+   * @param maxSearchTime the limit in milliseconds, or 0 for no limit
+   */
+  public void setMaxSearchTime(long maxSearchTime) {
+    Util.AbortIf(maxSearchTime < 0, "The maximum search time cannot be negative");
+    this.maxSearchTime = maxSearchTime;
+  }
+
+  public long getMaxSearchTime() {
+    return maxSearchTime;
+  }
+
   @Override
   public String[] getNext() throws InterruptedException {
     Util.AbortIf(!hasNext(), "Finished");
     if (lastVertex == null || lastVertex != getMachine().getCurrentVertex() || preCalculatedPath == null || preCalculatedPath.size() == 0) {
-      boolean oldCalculatingPathValue = getMachine().isCalculatingPath();
-      getMachine().setCalculatingPath(true);
-
-      preCalculatedPath = a_star();
-
-      getMachine().setCalculatingPath(oldCalculatingPathValue);
-
-      if (preCalculatedPath == null) {
-        throw new RuntimeException("No path found to " + this.getStopCondition());
+      String planKey = null;
+      preCalculatedPath = null;
+      if (planCache != null || prefetchedPath != null) {
+        planKey = PlanCache.getKey(getMachine(), getStopCondition());
       }
-
-      // reverse path
-      Stack<Edge> temp = new Stack<Edge>();
-      while (preCalculatedPath.size() > 0) {
-        temp.push(preCalculatedPath.pop());
+      if (prefetchedPath != null) {
+        if (planKey.equals(prefetchedKey)) {
+          preCalculatedPath = toPath(prefetchedPath);
+        }
+        prefetchedPath = null;
+      }
+      if (preCalculatedPath == null && planCache != null) {
+        preCalculatedPath = getCachedPath(planKey);
+      }
+      servingCachedPlan = (preCalculatedPath != null);
+      if (preCalculatedPath == null) {
+        preCalculatedPath = calculatePath();
+        if (planCache != null && lastSearchComplete) {
+          planCache.put(planKey, getEdgeIds(preCalculatedPath));
+        }
       }
-      preCalculatedPath = temp;
     }
 
     Edge edge = preCalculatedPath.pop();
+    if (servingCachedPlan && !isEdgeAvailable(edge)) {
+      logger.debug("The cached path is not possible to walk at: " + edge + ", searching for a new path");
+      servingCachedPlan = false;
+      preCalculatedPath = calculatePath();
+      edge = preCalculatedPath.pop();
+    }
     getMachine().walkEdge(edge);
     lastVertex = getMachine().getCurrentVertex();
     String[] retur = {getMachine().getEdgeName(edge), getMachine().getCurrentVertexName()};
     return retur;
   }
 
+  /**
+   * @return the path fulfilling the stop condition, with the first edge on top of the stack
+   */
+  private Stack<Edge> calculatePath() throws InterruptedException {
+    Stack<Edge> reachPath = getReachPath();
+    if (reachPath != null) {
+      return reachPath;
+    }
+
+    boolean oldCalculatingPathValue = getMachine().isCalculatingPath();
+    getMachine().setCalculatingPath(true);
+
+    long start = System.nanoTime();
+    Stack<Edge> path = a_star();
+    if (getMachine().getMetrics() != null) {
+      getMachine().getMetrics().add(MetricsRegistry.PLANNING_TIME, System.nanoTime() - start);
+    }
+
+    getMachine().setCalculatingPath(oldCalculatingPathValue);
+
+    if (path == null) {
+      throw new RuntimeException("No path found to " + this.getStopCondition());
+    }
+
+    // reverse path
+    Stack<Edge> temp = new Stack<Edge>();
+    while (path.size() > 0) {
+      temp.push(path.pop());
+    }
+    return temp;
+  }
+
+  /**
+   * When the stop condition is to reach a single vertex or edge, and the machine has no guards or
+   * data to take into account, the shortest path is found with a bidirectional breadth first search
+   * instead.
+   * 
+   * @return the path, with the first edge on top of the stack, or null if the search does not apply
+   */
+  private Stack<Edge> getReachPath() {
+    if (getMachine() instanceof ExtendedFiniteStateMachine) {
+      return null;
+    }
+    CompiledGraph compiledGraph = getMachine().getModel().getCompiledGraph();
+    int fromVertexId = compiledGraph.getVertexId(getMachine().getCurrentVertex());
+    int toVertexId = -1;
+    Edge endEdge = null;
+    StopCondition stopCondition = getReachCondition(getStopCondition());
+    if (stopCondition instanceof ReachedVertex) {
+      toVertexId = compiledGraph.getVertexId(((ReachedVertex) stopCondition).getEndVertex());
+    } else if (stopCondition instanceof ReachedEdge) {
+      endEdge = ((ReachedEdge) stopCondition).getEndEdge();
+      int edgeId = compiledGraph.getEdgeId(endEdge);
+      toVertexId = (edgeId < 0 ? -1 : compiledGraph.getSource(edgeId));
+    }
+    if (fromVertexId < 0 || toVertexId < 0) {
+      return null;
+    }
+
+    int[] edgeIds = compiledGraph.getDistanceService().getShortestPath(fromVertexId, toVertexId);
+    if (edgeIds == null) {
+      throw new RuntimeException("No path found to " + this.getStopCondition());
+    }
+    Stack<Edge> path = new Stack<Edge>();
+    if (endEdge != null) {
+      path.push(endEdge);
+    }
+    for (int i = edgeIds.length - 1; i >= 0; i--) {
+      path.push(compiledGraph.getEdge(edgeIds[i]));
+    }
+    if (path.isEmpty()) {
+      return null;
+    }
+    lastSearchComplete = true;
+    return path;
+  }
+
+  /**
+   * Unwraps alternative and combinational conditions of a single condition, as created for the
+   * stop condition of the command line.
+   */
+  private StopCondition getReachCondition(StopCondition stopCondition) {
+    if (stopCondition instanceof AlternativeCondition && ((AlternativeCondition) stopCondition).getConditions().size() == 1) {
+      return getReachCondition(((AlternativeCondition) stopCondition).getConditions().get(0));
+    }
+    if (stopCondition instanceof CombinationalCondition && ((CombinationalCondition) stopCondition).getConditions().size() == 1) {
+      return getReachCondition(((CombinationalCondition) stopCondition).getConditions().get(0));
+    }
+    return stopCondition;
+  }
+
+  private Stack<Edge> getCachedPath(String planKey) {
+    return toPath(planCache.get(planKey));
+  }
+
+  /**
+   * @return the path of the edge ids, with the first edge on top of the stack, or null if there is
+   *         no such path in the model
+   */
+  private Stack<Edge> toPath(int[] edgeIds) {
+    if (edgeIds == null || edgeIds.length == 0) {
+      return null;
+    }
+    CompiledGraph compiledGraph = getMachine().getModel().getCompiledGraph();
+    Stack<Edge> path = new Stack<Edge>();
+    for (int i = edgeIds.length - 1; i >= 0; i--) {
+      if (edgeIds[i] < 0 || edgeIds[i] >= compiledGraph.getEdgeCount()) {
+        return null;
+      }
+      path.push(compiledGraph.getEdge(edgeIds[i]));
+    }
+    logger.debug("Using a cached path of " + path.size() + " edges");
+    return path;
+  }
+
+  /**
+   * @return the edges left to walk of the current path, in order, or null if there is no complete
+   *         path planned
+   */
+  public List<Edge> getPlannedPath() {
+    if (preCalculatedPath == null || !lastSearchComplete) {
+      return null;
+    }
+    List<Edge> path = new ArrayList<Edge>(preCalculatedPath);
+    Collections.reverse(path);
+    return path;
+  }
+
+  /**
+   * Plans a path on a copy of the machine, in the state where this generator is expected to start.
+   * If the machine is in that state when this generator starts, the path is used without searching.
+   * The stop condition is bound to the copy during the search, so it must not be used by anyone else
+   * meanwhile.
+   */
+  void planAhead(FiniteStateMachine machineCopy) throws InterruptedException {
+    FiniteStateMachine machine = getMachine();
+    super.setMachine(machineCopy);
+    try {
+      String key = PlanCache.getKey(machineCopy, getStopCondition());
+      Stack<Edge> path = calculatePath();
+      if (lastSearchComplete) {
+        prefetchedPath = getEdgeIds(path);
+        prefetchedKey = key;
+      }
+    } finally {
+      super.setMachine(machine);
+    }
+  }
+
+  private int[] getEdgeIds(Stack<Edge> path) {
+    CompiledGraph compiledGraph = getMachine().getModel().getCompiledGraph();
+    int[] edgeIds = new int[path.size()];
+    for (int i = 0; i < edgeIds.length; i++) {
+      edgeIds[i] = compiledGraph.getEdgeId(path.get(edgeIds.length - 1 - i));
+    }
+    return edgeIds;
+  }
+
   @SuppressWarnings("unchecked")
   private Stack<Edge> a_star() throws InterruptedException {
-    Vector<String> closed = new Vector<String>();
+    HashSet<String> closed = new HashSet<String>();
+    long deadline = (maxSearchTime > 0 ? System.currentTimeMillis() + maxSearchTime : Long.MAX_VALUE);
+    int expandedPaths = 0;
+    WeightedPath bestPath = null;
+    lastSearchComplete = true;
 
     PriorityQueue<WeightedPath> a_starPath = new PriorityQueue<WeightedPath>(10, new Comparator<WeightedPath>() {
       @Override
@@ -106,7 +343,9 @@ public class A_StarPathGenerator extends PathGenerator {
     for (Edge edge : availableOutEdges) {
       Stack<Edge> path = new Stack<Edge>();
       path.push(edge);
-      a_starPath.add(getWeightedPath(path));
+      WeightedPath weightedPath = getWeightedPath(path);
+      a_starPath.add(weightedPath);
+      bestPath = getBetterPath(weightedPath, bestPath);
     }
     double maxWeight = 0;
     while (a_starPath.size() > 0) {
@@ -119,6 +358,13 @@ public class A_StarPathGenerator extends PathGenerator {
       if (path.getWeight() > 0.99999) // are we done yet?
         return path.getPath();
 
+      if ((maxExpandedPaths > 0 && expandedPaths >= maxExpandedPaths) || System.currentTimeMillis() > deadline) {
+        logger.debug("The search was stopped after expanding " + expandedPaths + " paths, the best path found satisfies "
+            + (int) (bestPath.getWeight() * 100) + "% of condition.");
+        lastSearchComplete = false;
+        return bestPath.getPath();
+      }
+
       Edge possibleDuplicate = path.getPath().peek();
 
       // have we been here before?
@@ -132,13 +378,16 @@ public class A_StarPathGenerator extends PathGenerator {
       // the fastest, and if we come here again we have used more
       // steps to get here than we used this time.
       closed.add(possibleDuplicate.hashCode() + "." + path.getSubState().hashCode() + "." + path.getWeight());
+      expandedPaths++;
 
       availableOutEdges = getPathOutEdges(path.getPath());
       if (availableOutEdges != null && availableOutEdges.size() > 0) {
         for (Edge edge : availableOutEdges) {
           Stack<Edge> newStack = (Stack<Edge>) path.getPath().clone();
           newStack.push(edge);
-          a_starPath.add(getWeightedPath(newStack));
+          WeightedPath weightedPath = getWeightedPath(newStack);
+          a_starPath.add(weightedPath);
+          bestPath = getBetterPath(weightedPath, bestPath);
         }
       }
     }
@@ -146,6 +395,17 @@ public class A_StarPathGenerator extends PathGenerator {
         + (int) (maxWeight * 100) + "% of condition.");
   }
 
+  /**
+   * @return the path with the highest fulfilment, or the shortest of them if they are equal
+   */
+  private static WeightedPath getBetterPath(WeightedPath path, WeightedPath bestPath) {
+    if (bestPath == null || path.getWeight() > bestPath.getWeight()
+        || (path.getWeight() == bestPath.getWeight() && path.getPath().size() < bestPath.getPath().size())) {
+      return path;
+    }
+    return bestPath;
+  }
+
   private WeightedPath getWeightedPath(Stack<Edge> path) {
     double weight = 0;
     String subState = "";
@@ -182,6 +442,8 @@ public class A_StarPathGenerator extends PathGenerator {
   @Override
   public void reset() {
     preCalculatedPath = null;
+    prefetchedPath = null;
+    servingCachedPlan = false;
   }
 
   @Override
@@ -24,6 +24,7 @@
 package org.graphwalker.generators;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -35,6 +36,7 @@ import org.graphwalker.Util;
 import org.graphwalker.conditions.StopCondition;
 import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.graph.Edge;
+import org.graphwalker.machines.FiniteStateMachine;
 
 /**
  * The generator generates paths through the model in a way that makes sure all path permutations of
@@ -48,19 +50,37 @@ import org.graphwalker.graph.Edge;
  * 
  * The algorithm always tries the "path less traveled" where a path is a list of n edges. If several
  * paths are available with the same number of traversals on is chosen by random.
+ * 
+ * A path is identified exactly by the ordinals of its edges. As long as the path fits, the ordinals
+ * are packed into a long, otherwise the path itself is used as key. The number of tracked paths for
+ * one depth is capped by {@link #setMaxTrackedPaths(int)}. When the cap is reached, the depth will
+ * not be increased any further.
  */
 public class AllPathPermutationsGenerator extends PathGenerator {
 
   private static Logger logger = Util.setupLogger(AllPathPermutationsGenerator.class);
 
+  public static final int DEFAULT_MAX_TRACKED_PATHS = 1000000;
+
   private final Random random = new Random();
 
   /* Contains all walked paths for a specific depth */
-  private final HashMap<Integer, Integer> pathWalked = new HashMap<Integer, Integer>();
+  private final HashMap<Object, Integer> pathWalked = new HashMap<Object, Integer>();
 
   /* List of edges comprising the current path */
   private final List<Edge> savedEdges = new ArrayList<Edge>();
 
+  /* Dense ordinals of the edges in the model, starting at 1 */
+  private final HashMap<Edge, Integer> edgeOrdinals = new HashMap<Edge, Integer>();
+  private int bitsPerEdge;
+
+  /* Number of paths in pathWalked, that have been visited exactly once, respectively twice */
+  private int pathsVisitedOnce;
+  private int pathsVisitedTwice;
+
+  private int maxTrackedPaths = DEFAULT_MAX_TRACKED_PATHS;
+  private int maxDepth = Integer.MAX_VALUE;
+
   private int currentDepth;
 
   public AllPathPermutationsGenerator(final StopCondition stopCondition) {
@@ -73,6 +93,12 @@ public class AllPathPermutationsGenerator extends PathGenerator {
     currentDepth = 0;
   }
 
+  @Override
+  public void setMachine(FiniteStateMachine machine) {
+    super.setMachine(machine);
+    edgeOrdinals.clear();
+  }
+
   @Override
   public String[] getNext() throws InterruptedException {
     Set<Edge> availableEdges;
@@ -94,7 +120,7 @@ public class AllPathPermutationsGenerator extends PathGenerator {
       savedEdges.add(edge);
 
       // Has it been traversed before and if so how many times
-      Integer hashValue = pathWalked.get(savedEdges.hashCode());
+      Integer hashValue = pathWalked.get(getPathKey());
 
       // Never walked path
       if (hashValue == null) {
@@ -113,7 +139,7 @@ public class AllPathPermutationsGenerator extends PathGenerator {
       }
 
       // Remove the edge from the current path
-      savedEdges.remove(edge);
+      savedEdges.remove(savedEdges.size() - 1);
     }
     Edge selectedEdge = getRandomEdge(selectedEdges);
 
@@ -121,50 +147,98 @@ public class AllPathPermutationsGenerator extends PathGenerator {
     savedEdges.add(selectedEdge);
 
     // Update number of traversals of this path
-    pathWalked.put(savedEdges.hashCode(), fewestVisits + 1);
+    setVisits(getPathKey(), fewestVisits + 1);
 
     // Check if all paths have been traversed twice or more
     // If so, increase the length of the path by 1 and clear the hash
-    if (checkCompletion()) {
+    if (checkCompletion() && currentDepth < maxDepth) {
       currentDepth++;
       AllPathPermutationsGenerator.logger.debug("All combinations done, changing look back depth to: " + currentDepth);
-      pathWalked.clear();
+      clearPaths();
     } else if (currentDepth == 0 && checkCompletionFirst()) {
       currentDepth++;
       AllPathPermutationsGenerator.logger.debug("Cycle detected, starting algorithm with depth: " + currentDepth);
-      pathWalked.clear();
+      clearPaths();
       savedEdges.remove(0);
 
       // If not, remove the first edge in the path
     } else {
+      if (pathWalked.size() >= maxTrackedPaths) {
+        maxDepth = currentDepth;
+        AllPathPermutationsGenerator.logger.warn("Number of tracked paths reached " + maxTrackedPaths + ", will stay at look back depth: "
+            + currentDepth);
+        clearPaths();
+      }
       savedEdges.remove(0);
     }
 
     getMachine().walkEdge(selectedEdge);
     AllPathPermutationsGenerator.logger.debug(selectedEdge.getFullLabelKey());
     AllPathPermutationsGenerator.logger.debug(selectedEdge);
-    AllPathPermutationsGenerator.logger.trace("Current Path: " + printPath());
     AllPathPermutationsGenerator.logger.debug("Hash size: " + pathWalked.size());
-    AllPathPermutationsGenerator.logger.trace("Hash: " + printHash());
+    if (AllPathPermutationsGenerator.logger.isTraceEnabled()) {
+      AllPathPermutationsGenerator.logger.trace("Current Path: " + printPath());
+      AllPathPermutationsGenerator.logger.trace("Hash: " + printHash());
+    }
     return new String[] {getMachine().getEdgeName(selectedEdge), getMachine().getCurrentVertexName()};
   }
 
-  private boolean checkCompletionFirst() {
-    for (Integer value : pathWalked.values()) {
-      if (value == 2) {
-        return true;
-      }
+  private void setVisits(Object key, int visits) {
+    Integer oldVisits = pathWalked.put(key, visits);
+    if (oldVisits != null) {
+      countVisits(oldVisits, -1);
+    }
+    countVisits(visits, 1);
+  }
+
+  private void countVisits(int visits, int delta) {
+    if (visits == 1) {
+      pathsVisitedOnce += delta;
+    } else if (visits == 2) {
+      pathsVisitedTwice += delta;
     }
-    return false;
+  }
+
+  private void clearPaths() {
+    pathWalked.clear();
+    pathsVisitedOnce = 0;
+    pathsVisitedTwice = 0;
+  }
+
+  private boolean checkCompletionFirst() {
+    return pathsVisitedTwice > 0;
   }
 
   private boolean checkCompletion() {
-    for (Integer value : pathWalked.values()) {
-      if (value == 1) {
-        return false;
+    return pathsVisitedOnce == 0;
+  }
+
+  /**
+   * Returns a key that exactly identifies the current path. If all edge ordinals fits into a long,
+   * they are packed into one, otherwise the ordinals are wrapped as a {@link PathKey}.
+   */
+  private Object getPathKey() {
+    if (edgeOrdinals.isEmpty()) {
+      int ordinal = 0;
+      for (Edge edge : getMachine().getAllEdges()) {
+        edgeOrdinals.put(edge, ++ordinal);
+      }
+      bitsPerEdge = 32 - Integer.numberOfLeadingZeros(ordinal);
+    }
+
+    if (savedEdges.size() * bitsPerEdge < Long.SIZE) {
+      long key = 0;
+      for (Edge edge : savedEdges) {
+        key = (key << bitsPerEdge) | edgeOrdinals.get(edge);
       }
+      return key;
     }
-    return true;
+
+    int[] ordinals = new int[savedEdges.size()];
+    for (int i = 0; i < ordinals.length; i++) {
+      ordinals[i] = edgeOrdinals.get(savedEdges.get(i));
+    }
+    return new PathKey(ordinals);
   }
 
   private String printPath() {
@@ -197,4 +271,52 @@ public class AllPathPermutationsGenerator extends PathGenerator {
   public int getDepth() {
     return currentDepth;
   }
+
+  /**
+   * @return the number of paths tracked at the current depth
+   */
+  public int getNumberOfTrackedPaths() {
+    return pathWalked.size();
+  }
+
+  public int getMaxTrackedPaths() {
+    return maxTrackedPaths;
+  }
+
+  /**
+   * Sets the maximum number of paths that are tracked for one depth. When reached, the generator
+   * stays at the current depth, and starts over tracking the paths.
+   * 
+   * @param maxTrackedPaths the maximum number of tracked paths
+   */
+  public void setMaxTrackedPaths(int maxTrackedPaths) {
+    Util.AbortIf(maxTrackedPaths < 1, "The maximum number of tracked paths must be at least 1");
+    this.maxTrackedPaths = maxTrackedPaths;
+  }
+
+  /**
+   * Holds the edge ordinals of a path too long to be packed into a long.
+   */
+  private static class PathKey {
+    private final int[] ordinals;
+    private final int hash;
+
+    public PathKey(int[] ordinals) {
+      this.ordinals = ordinals;
+      this.hash = Arrays.hashCode(ordinals);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof PathKey)) return false;
+      PathKey other = (PathKey) obj;
+      return hash == other.hash && Arrays.equals(ordinals, other.ordinals);
+    }
+  }
 }
@@ -23,10 +23,17 @@
 
 package org.graphwalker.generators;
 
+import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import org.apache.log4j.Logger;
 import org.graphwalker.conditions.StopCondition;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.machines.ExtendedFiniteStateMachine;
 import org.graphwalker.machines.FiniteStateMachine;
 
 public class CombinedPathGenerator extends PathGenerator {
@@ -35,6 +42,10 @@ public class CombinedPathGenerator extends PathGenerator {
 
   private Vector<PathGenerator> generatorList = new Vector<PathGenerator>();
   private int currentGenerator = 0;
+  private FiniteStateMachine machine;
+  private boolean prefetch = false;
+  private FutureTask<Void> prefetchTask = null;
+  private Thread prefetchThread = null;
 
   public CombinedPathGenerator() {
     super();
@@ -49,13 +60,45 @@ public class CombinedPathGenerator extends PathGenerator {
     generatorList.add(generator);
   }
 
+  /**
+   * When enabled, the next generator plans its path in the background, while the active generator
+   * is still walking. This is done when both are A_STAR generators with their own stop conditions,
+   * and the machine is not extended. The next generator plans on a copy of the machine, walked to
+   * the end of the path of the active generator, and the planned path is used if the machine is in
+   * the same state when the next generator starts.<br>
+   * In xml files, this is enabled with the attribute PREFETCH="true" of MBTINIT.
+   */
+  public void setPrefetch(boolean prefetch) {
+    this.prefetch = prefetch;
+  }
+
+  public boolean isPrefetch() {
+    return prefetch;
+  }
+
+  /**
+   * Waits for the planning ahead to finish first, since the planning generator binds itself back to
+   * the previous machine when it is done.
+   */
   @Override
   public void setMachine(FiniteStateMachine machine) {
+    if (prefetchTask != null) {
+      waitForPrefetch();
+    }
+    this.machine = machine;
     for (PathGenerator aGeneratorList : generatorList) {
       aGeneratorList.setMachine(machine);
     }
   }
 
+  @Override
+  public void reset() {
+    if (prefetchTask != null) {
+      waitForPrefetch();
+    }
+    super.reset();
+  }
+
   @Override
   public void setStopCondition(StopCondition stopCondition) {
     for (PathGenerator aGeneratorList : generatorList) {
@@ -74,6 +117,76 @@ public class CombinedPathGenerator extends PathGenerator {
   private void scrapActivePathGenerator() {
     logger.debug("Removing PathGenerator: " + getActivePathGenerator());
     currentGenerator++;
+    if (prefetchTask != null) {
+      waitForPrefetch();
+    }
+  }
+
+  /**
+   * Waits for the planning of the now active generator to finish. The generator is bound to the copy
+   * of the machine while planning, so it cannot be used before that.
+   */
+  private void waitForPrefetch() {
+    boolean interrupted = false;
+    while (prefetchThread.isAlive()) {
+      try {
+        prefetchThread.join();
+      } catch (InterruptedException e) {
+        interrupted = true;
+        prefetchThread.interrupt();
+      }
+    }
+    try {
+      prefetchTask.get();
+    } catch (ExecutionException e) {
+      logger.warn("Could not plan ahead for: " + getActivePathGenerator() + ", " + e.getCause());
+    } catch (InterruptedException e) {
+      interrupted = true;
+    }
+    prefetchTask = null;
+    prefetchThread = null;
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Starts the planning of the next generator, if it has not been started yet, and it is possible.
+   */
+  private void startPrefetch() {
+    if (prefetchTask != null || currentGenerator + 1 >= generatorList.size() || machine instanceof ExtendedFiniteStateMachine) {
+      return;
+    }
+    PathGenerator active = getActivePathGenerator();
+    PathGenerator next = generatorList.get(currentGenerator + 1);
+    if (!(active instanceof A_StarPathGenerator) || !(next instanceof A_StarPathGenerator) || next.getStopCondition() == null
+        || next.getStopCondition() == active.getStopCondition()) {
+      return;
+    }
+    List<Edge> plannedPath = ((A_StarPathGenerator) active).getPlannedPath();
+    if (plannedPath == null) {
+      return;
+    }
+
+    final FiniteStateMachine machineCopy = new FiniteStateMachine(machine);
+    CompiledGraph original = machine.getModel().getCompiledGraph();
+    CompiledGraph copy = machineCopy.getModel().getCompiledGraph();
+    for (Edge edge : plannedPath) {
+      machineCopy.walkEdge(copy.getEdge(original.getEdgeId(edge)));
+    }
+
+    final A_StarPathGenerator generator = (A_StarPathGenerator) next;
+    logger.debug("Planning ahead for: " + generator);
+    prefetchTask = new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        generator.planAhead(machineCopy);
+        return null;
+      }
+    });
+    prefetchThread = new Thread(prefetchTask, "Prefetch " + generator);
+    prefetchThread.setDaemon(true);
+    prefetchThread.start();
   }
 
   @Override
@@ -96,7 +209,11 @@ public class CombinedPathGenerator extends PathGenerator {
       if (!nextIsAvailable) scrapActivePathGenerator();
     }
     if (!nextIsAvailable) return retur;
-    return getActivePathGenerator().getNext();
+    retur = getActivePathGenerator().getNext();
+    if (prefetch) {
+      startPrefetch();
+    }
+    return retur;
   }
 
   @Override
@@ -0,0 +1,178 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap over the ids 0 to capacity-1, each with an integer priority. Since the
+ * position of every id in the heap is known, the priority of an id can be changed in O(log n).
+ * Ties are resolved by the lowest id.
+ */
+public class IndexedMinHeap {
+
+  private final int[] heap;
+  private final int[] positions;
+  private final int[] priorities;
+  private int size = 0;
+
+  public IndexedMinHeap(int capacity) {
+    heap = new int[capacity];
+    positions = new int[capacity];
+    priorities = new int[capacity];
+    Arrays.fill(positions, -1);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public boolean contains(int id) {
+    return positions[id] >= 0;
+  }
+
+  /**
+   * @return the id with the lowest priority
+   */
+  public int peek() {
+    if (size == 0) {
+      throw new IllegalStateException("The heap is empty");
+    }
+    return heap[0];
+  }
+
+  /**
+   * @return the lowest priority in the heap
+   */
+  public int peekPriority() {
+    return priorities[peek()];
+  }
+
+  public int getPriority(int id) {
+    if (!contains(id)) {
+      throw new IllegalArgumentException("The id " + id + " is not in the heap");
+    }
+    return priorities[id];
+  }
+
+  /**
+   * @return the id at the position in the heap. The id at position 0 has the lowest priority, the
+   *         order of the others is only partial.
+   */
+  public int get(int position) {
+    return heap[position];
+  }
+
+  /**
+   * Adds the id to the heap, or changes its priority if it is already there.
+   */
+  public void put(int id, int priority) {
+    if (!contains(id)) {
+      heap[size] = id;
+      positions[id] = size;
+      priorities[id] = priority;
+      siftUp(size++);
+      return;
+    }
+    int old = priorities[id];
+    priorities[id] = priority;
+    if (priority < old) {
+      siftUp(positions[id]);
+    } else if (priority > old) {
+      siftDown(positions[id]);
+    }
+  }
+
+  public void remove(int id) {
+    if (!contains(id)) {
+      return;
+    }
+    int position = positions[id];
+    positions[id] = -1;
+    size--;
+    if (position == size) {
+      return;
+    }
+    int moved = heap[size];
+    heap[position] = moved;
+    positions[moved] = position;
+    siftUp(position);
+    if (positions[moved] == position) {
+      siftDown(position);
+    }
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      positions[heap[i]] = -1;
+    }
+    size = 0;
+  }
+
+  private boolean less(int i, int j) {
+    int a = heap[i];
+    int b = heap[j];
+    return priorities[a] < priorities[b] || (priorities[a] == priorities[b] && a < b);
+  }
+
+  private void swap(int i, int j) {
+    int id = heap[i];
+    heap[i] = heap[j];
+    heap[j] = id;
+    positions[heap[i]] = i;
+    positions[heap[j]] = j;
+  }
+
+  private void siftUp(int position) {
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (!less(position, parent)) {
+        break;
+      }
+      swap(position, parent);
+      position = parent;
+    }
+  }
+
+  private void siftDown(int position) {
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= size) {
+        break;
+      }
+      if (child + 1 < size && less(child + 1, child)) {
+        child++;
+      }
+      if (!less(child, position)) {
+        break;
+      }
+      swap(position, child);
+      position = child;
+    }
+  }
+}
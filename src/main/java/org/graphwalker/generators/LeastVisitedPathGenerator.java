@@ -0,0 +1,172 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Util;
+import org.graphwalker.conditions.StopCondition;
+import org.graphwalker.exceptions.FoundNoEdgeException;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.graph.DistanceService;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.machines.FiniteStateMachine;
+
+/**
+ * A greedy generator, that always walks the least visited of the available edges. When all
+ * available edges have been visited more than the least visited edge of the model, it heads for
+ * that edge instead, along a shortest path.<br>
+ * The visit counts of the edges are kept in an {@link IndexedMinHeap}, which is updated for every
+ * step, and the shortest paths are looked up in the {@link DistanceService} of the model. This
+ * makes every step cheap, also on large models, which suits long running tests where planning a
+ * full path with A_STAR costs too much. Ties are resolved randomly.
+ */
+public class LeastVisitedPathGenerator extends PathGenerator {
+
+  private static Logger logger = Util.setupLogger(LeastVisitedPathGenerator.class);
+
+  private Random random = new Random();
+  private CompiledGraph compiledGraph;
+  private IndexedMinHeap visits;
+  private int numberOfEdgesTraversed = -1;
+
+  public LeastVisitedPathGenerator(StopCondition stopCondition) {
+    super(stopCondition);
+  }
+
+  public LeastVisitedPathGenerator() {
+    super();
+  }
+
+  @Override
+  public void setMachine(FiniteStateMachine machine) {
+    super.setMachine(machine);
+    compiledGraph = null;
+  }
+
+  @Override
+  public String[] getNext() throws InterruptedException {
+    Set<Edge> availableEdges;
+    try {
+      availableEdges = getMachine().getCurrentOutEdges();
+    } catch (FoundNoEdgeException e) {
+      throw new RuntimeException("No possible edges available for path", e);
+    }
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    updateVisits();
+
+    Edge edge = getLeastVisitedEdge(availableEdges);
+    getMachine().walkEdge(edge);
+    int edgeId = compiledGraph.getEdgeId(edge);
+    if (visits.contains(edgeId)) {
+      visits.put(edgeId, edge.getVisitedKey());
+    }
+    numberOfEdgesTraversed = getMachine().getNumberOfEdgesTravesed();
+
+    logger.debug(edge);
+    return new String[] {getMachine().getEdgeName(edge), getMachine().getCurrentVertexName()};
+  }
+
+  /**
+   * Rebuilds the visit counts when the model has changed, or when the machine has been walked by
+   * someone else since the last step.
+   */
+  private void updateVisits() {
+    CompiledGraph current = getMachine().getModel().getCompiledGraph();
+    if (current == compiledGraph && numberOfEdgesTraversed == getMachine().getNumberOfEdgesTravesed()) {
+      return;
+    }
+    compiledGraph = current;
+    visits = new IndexedMinHeap(compiledGraph.getEdgeCount());
+    for (int i = 0; i < compiledGraph.getEdgeCount(); i++) {
+      visits.put(i, compiledGraph.getEdge(i).getVisitedKey());
+    }
+  }
+
+  private Edge getLeastVisitedEdge(Set<Edge> availableEdges) {
+    List<Edge> leastVisited = new ArrayList<Edge>();
+    int least = Integer.MAX_VALUE;
+    for (Edge edge : availableEdges) {
+      if (edge.getVisitedKey() < least) {
+        least = edge.getVisitedKey();
+        leastVisited.clear();
+      }
+      if (edge.getVisitedKey() == least) {
+        leastVisited.add(edge);
+      }
+    }
+
+    int vertexId = compiledGraph.getVertexId(getMachine().getCurrentVertex());
+    int target = (vertexId < 0 ? -1 : getTarget(vertexId));
+    if (target < 0 || least <= visits.getPriority(target)) {
+      return leastVisited.get(random.nextInt(leastVisited.size()));
+    }
+
+    logger.debug("Heading for the least visited edge: " + compiledGraph.getEdge(target));
+    int[] distances = compiledGraph.getDistanceService().getDistancesTo(compiledGraph.getSource(target));
+    List<Edge> closest = new ArrayList<Edge>();
+    int shortest = Integer.MAX_VALUE;
+    for (Edge edge : availableEdges) {
+      int edgeId = compiledGraph.getEdgeId(edge);
+      int distance = (edgeId == target ? -1 : distances[compiledGraph.getDest(edgeId)]);
+      if (distance < shortest) {
+        shortest = distance;
+        closest.clear();
+      }
+      if (distance == shortest) {
+        closest.add(edge);
+      }
+    }
+    return closest.get(random.nextInt(closest.size()));
+  }
+
+  /**
+   * Returns the least visited edge that can be reached from the vertex. Edges that cannot be
+   * reached are removed from the heap, since they cannot be reached from any later vertex either.
+   * 
+   * @return the id of the edge, or -1 if there is none
+   */
+  private int getTarget(int vertexId) {
+    DistanceService distanceService = compiledGraph.getDistanceService();
+    while (!visits.isEmpty()) {
+      int edgeId = visits.peek();
+      if (distanceService.getDistance(vertexId, compiledGraph.getSource(edgeId)) != DistanceService.UNREACHABLE) {
+        return edgeId;
+      }
+      visits.remove(edgeId);
+    }
+    return -1;
+  }
+
+  @Override
+  public String toString() {
+    return "LEAST_VISITED{" + super.toString() + "}";
+  }
+}
@@ -0,0 +1,233 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Util;
+import org.graphwalker.conditions.StopCondition;
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.machines.FiniteStateMachine;
+
+/**
+ * Keeps planned paths, as sequences of edge ids in the {@link CompiledGraph} of the model, on disk.
+ * A plan is stored under a key made from the content of the model, the state of the machine when
+ * the plan was made, and the stop condition. So a plan found in the cache is the one that would be
+ * calculated again for the same request.<br>
+ * Every plan is written to its own file in the cache folder, as a small header followed by the edge
+ * ids as variable length integers. Plans read or written are also kept in memory.
+ */
+public class PlanCache {
+
+  private static Logger logger = Util.setupLogger(PlanCache.class);
+
+  private static final int MAGIC = 0x47575043;
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".plan";
+
+  private final File folder;
+  private final HashMap<String, int[]> plans = new HashMap<String, int[]>();
+
+  public PlanCache(File folder) {
+    if (!folder.exists()) {
+      folder.mkdirs();
+    }
+    Util.AbortIf(!folder.isDirectory(), "The plan cache folder is not a folder: " + folder.getAbsolutePath());
+    this.folder = folder;
+  }
+
+  public File getFolder() {
+    return folder;
+  }
+
+  /**
+   * Returns the key of a plan, for the current state of the machine, and the stop condition. The
+   * state consists of the current vertex, the data of the machine, and how many times every vertex
+   * and edge has been visited.
+   */
+  public static String getKey(FiniteStateMachine machine, StopCondition stopCondition) {
+    CompiledGraph graph = machine.getModel().getCompiledGraph();
+    MessageDigest digest = getDigest();
+    for (int i = 0; i < graph.getVertexCount(); i++) {
+      update(digest, graph.getVertex(i));
+    }
+    for (int i = 0; i < graph.getEdgeCount(); i++) {
+      Edge edge = graph.getEdge(i);
+      update(digest, edge);
+      update(digest, edge.getGuardKey());
+      update(digest, Float.toString(edge.getWeightKey()));
+      update(digest, graph.getSource(i) + ">" + graph.getDest(i));
+    }
+
+    update(digest, "state");
+    update(digest, Integer.toString(graph.getVertexId(machine.getCurrentVertex())));
+    update(digest, machine.getCurrentDataString());
+    for (int i = 0; i < graph.getVertexCount(); i++) {
+      update(digest, graph.getVertex(i).getVisitedKey().toString());
+    }
+    for (int i = 0; i < graph.getEdgeCount(); i++) {
+      update(digest, graph.getEdge(i).getVisitedKey().toString());
+    }
+
+    update(digest, "condition");
+    update(digest, String.valueOf(stopCondition));
+
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  /**
+   * @return the edge ids of the plan, or null if there is no plan stored for the key
+   */
+  public synchronized int[] get(String key) {
+    int[] plan = plans.get(key);
+    if (plan != null) {
+      return plan;
+    }
+    File file = new File(folder, key + SUFFIX);
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      plan = read(file);
+    } catch (IOException e) {
+      logger.warn("Could not read the cached plan: " + file.getAbsolutePath() + ", " + e.getMessage());
+      return null;
+    }
+    plans.put(key, plan);
+    return plan;
+  }
+
+  /**
+   * Stores the plan, in memory and on disk.
+   */
+  public synchronized void put(String key, int[] plan) {
+    plans.put(key, plan);
+    File file = new File(folder, key + SUFFIX);
+    File temp = new File(folder, key + SUFFIX + ".tmp");
+    try {
+      write(temp, plan);
+      if (file.exists()) {
+        file.delete();
+      }
+      if (!temp.renameTo(file)) {
+        throw new IOException("Could not rename " + temp.getName() + " to " + file.getName());
+      }
+    } catch (IOException e) {
+      logger.warn("Could not write the plan to cache: " + file.getAbsolutePath() + ", " + e.getMessage());
+      temp.delete();
+    }
+  }
+
+  private static int[] read(File file) throws IOException {
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+    try {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("Not a plan file of version " + VERSION);
+      }
+      int[] plan = new int[in.readInt()];
+      for (int i = 0; i < plan.length; i++) {
+        plan[i] = readVarInt(in);
+      }
+      return plan;
+    } finally {
+      in.close();
+    }
+  }
+
+  private static void write(File file, int[] plan) throws IOException {
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(plan.length);
+      for (int edgeId : plan) {
+        writeVarInt(out, edgeId);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  private static int readVarInt(DataInputStream in) throws IOException {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.readUnsignedByte();
+      value |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed variable length integer");
+  }
+
+  private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.writeByte((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  private static MessageDigest getDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-1 is not available", e);
+    }
+  }
+
+  private static void update(MessageDigest digest, AbstractElement element) {
+    update(digest, element.getIndexKey().toString());
+    update(digest, element.getFullLabelKey());
+    update(digest, element.getActionsKey());
+    update(digest, element.getReqTagKey());
+  }
+
+  private static void update(MessageDigest digest, String value) {
+    try {
+      digest.update(String.valueOf(value).getBytes("UTF-8"));
+      digest.update((byte) 0);
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.io.File;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Util;
+import org.graphwalker.conditions.NeverCondition;
+import org.graphwalker.conditions.StopCondition;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.io.TraceReader;
+import org.graphwalker.io.TraceReader.TraceRecord;
+import org.graphwalker.io.TraceWriter;
+
+/**
+ * Walks the edges recorded in an execution trace, written by {@link TraceWriter}, in the same
+ * order. Used to reproduce an earlier execution of the same model. The generator stops at the end
+ * of the trace, or when its stop condition is fulfilled, whichever comes first. If the model can not
+ * follow the trace, because an edge is not available or the walk ends up in another vertex than the
+ * recorded one, the replay is aborted.
+ */
+public class ReplayGenerator extends PathGenerator {
+
+  private static Logger logger = Util.setupLogger(ReplayGenerator.class);
+
+  private File trace;
+  private TraceReader reader = null;
+  private TraceRecord nextEdge = null;
+  private boolean endOfTrace = false;
+
+  public ReplayGenerator(File trace, StopCondition stopCondition) {
+    super(stopCondition);
+    this.trace = trace;
+  }
+
+  public ReplayGenerator(File trace) {
+    this(trace, new NeverCondition());
+  }
+
+  public ReplayGenerator() {
+    this(null);
+  }
+
+  public File getTrace() {
+    return trace;
+  }
+
+  public void setTrace(File trace) {
+    close();
+    this.trace = trace;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (getStopCondition() != null && getStopCondition().isFulfilled()) {
+      return false;
+    }
+    return peekEdge() != null;
+  }
+
+  @Override
+  public String[] getNext() throws InterruptedException {
+    TraceRecord record = peekEdge();
+    Util.AbortIf(record == null, "The end of the trace '" + trace + "' is reached");
+    nextEdge = null;
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    CompiledGraph compiledGraph = getMachine().getModel().getCompiledGraph();
+    Util.AbortIf(record.id >= compiledGraph.getEdgeCount(), "The trace '" + trace + "' does not belong to the model, it has no edge with id "
+        + record.id);
+    Edge edge = compiledGraph.getEdge(record.id);
+    Util.AbortIf(!isEdgeAvailable(edge), "The trace '" + trace + "' can not be replayed, the edge " + edge + " is not available from "
+        + getMachine().getCurrentVertex());
+    getMachine().walkEdge(edge);
+    logger.debug(edge);
+    return new String[] {getMachine().getEdgeName(edge), getMachine().getCurrentVertexName()};
+  }
+
+  /**
+   * Reads the trace until the next edge, checking the vertices on the way.
+   * 
+   * @return The next edge of the trace, or null if the end of the trace is reached
+   */
+  private TraceRecord peekEdge() {
+    Util.AbortIf(trace == null, "No trace is given to replay");
+    if (endOfTrace) {
+      return null;
+    }
+    if (reader == null) {
+      reader = new TraceReader(trace);
+    }
+    while (nextEdge == null) {
+      TraceRecord record = reader.next();
+      if (record == null) {
+        close();
+        endOfTrace = true;
+        return null;
+      }
+      if (record.kind == TraceWriter.EDGE) {
+        nextEdge = record;
+      } else if (record.kind == TraceWriter.VERTEX) {
+        checkVertex(record);
+      }
+    }
+    return nextEdge;
+  }
+
+  private void checkVertex(TraceRecord record) {
+    CompiledGraph compiledGraph = getMachine().getModel().getCompiledGraph();
+    Vertex vertex = (record.id < compiledGraph.getVertexCount() ? compiledGraph.getVertex(record.id) : null);
+    Util.AbortIf(vertex != getMachine().getCurrentVertex(), "The trace '" + trace + "' can not be replayed, it is in vertex " + vertex
+        + ", but the model is in " + getMachine().getCurrentVertex());
+    if (record.data != null && getMachine().hasInternalVariables() && !record.data.equals(getMachine().getCurrentDataString())) {
+      logger.warn("The data of the model differs from the trace at " + vertex + ". Trace: " + record.data + ", model: "
+          + getMachine().getCurrentDataString());
+    }
+  }
+
+  private void close() {
+    if (reader != null) {
+      reader.close();
+      reader = null;
+    }
+    nextEdge = null;
+    endOfTrace = false;
+  }
+
+  /**
+   * Starts reading the trace from the beginning again.
+   */
+  @Override
+  public void reset() {
+    close();
+  }
+
+  @Override
+  public String toString() {
+    return "REPLAY{" + super.toString() + "}";
+  }
+}
@@ -0,0 +1,390 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Util;
+import org.graphwalker.conditions.AlternativeCondition;
+import org.graphwalker.conditions.CombinationalCondition;
+import org.graphwalker.conditions.ReachedRequirement;
+import org.graphwalker.conditions.StopCondition;
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.CompiledGraph;
+import org.graphwalker.graph.DistanceService;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.machines.FiniteStateMachine;
+
+/**
+ * Plans a short walk that covers a set of requirements, and then walks it step by step.<br>
+ * The requirements are taken from {@link #setRequirements(Collection)}, or else from the
+ * {@link ReachedRequirement} stop conditions of the generator, or else all requirements of the
+ * model are used. Requirements given as variables, ${...}, are not planned for.<br>
+ * Every vertex or edge tagged with a wanted requirement is a possible target. The targets are
+ * chosen greedily, as the one covering the most requirements per step from the current position,
+ * which is a nearest neighbour tour solving the set cover at the same time. The order of the tour
+ * is then improved with 2-opt, using a distance matrix between the targets, unless the tour is
+ * longer than {@value #MAX_2OPT_TARGETS} targets, before it is expanded into edges along shortest
+ * paths from the {@link DistanceService}.<br>
+ * The plan is based on the structure of the model. If a planned edge is not available when it is
+ * to be walked, for example because of a guard, the rest of the walk is planned again from the
+ * current vertex.
+ */
+public class RequirementPlannerGenerator extends PathGenerator {
+
+  private static Logger logger = Util.setupLogger(RequirementPlannerGenerator.class);
+
+  private static final int MAX_2OPT_ROUNDS = 100;
+  private static final int MAX_2OPT_TARGETS = 500;
+
+  private Collection<String> requirements = null;
+  private LinkedList<Edge> plan = null;
+
+  public RequirementPlannerGenerator(StopCondition stopCondition) {
+    super(stopCondition);
+  }
+
+  public RequirementPlannerGenerator() {
+    super();
+  }
+
+  /**
+   * @param requirements the requirements to cover. If null, the requirements are taken from the
+   *          stop condition, or from the model.
+   */
+  public void setRequirements(Collection<String> requirements) {
+    this.requirements = requirements;
+    this.plan = null;
+  }
+
+  @Override
+  public void setMachine(FiniteStateMachine machine) {
+    super.setMachine(machine);
+    this.plan = null;
+  }
+
+  @Override
+  public void reset() {
+    this.plan = null;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (getStopCondition() != null && getStopCondition().isFulfilled()) {
+      return false;
+    }
+    if (plan == null) {
+      plan();
+    }
+    return !plan.isEmpty();
+  }
+
+  @Override
+  public String[] getNext() throws InterruptedException {
+    Util.AbortIf(!hasNext(), "Finished");
+
+    if (Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+    Edge edge = plan.removeFirst();
+    if (!isEdgeAvailable(edge)) {
+      logger.debug("The planned edge: " + edge + ", is not available, planning again from: " + getMachine().getCurrentVertex());
+      plan();
+      Util.AbortIf(plan.isEmpty(), "No requirements can be reached from: " + getMachine().getCurrentVertex());
+      edge = plan.removeFirst();
+      if (!isEdgeAvailable(edge)) {
+        throw new RuntimeException("The planned edge: " + edge + ", is not available from: " + getMachine().getCurrentVertex());
+      }
+    }
+
+    getMachine().walkEdge(edge);
+    return new String[] {getMachine().getEdgeName(edge), getMachine().getCurrentVertexName()};
+  }
+
+  /**
+   * @return the number of edges left to walk in the current plan
+   */
+  public int getPlannedLength() {
+    if (plan == null) {
+      plan();
+    }
+    return plan.size();
+  }
+
+  private void plan() {
+    plan = new LinkedList<Edge>();
+    CompiledGraph graph = getMachine().getModel().getCompiledGraph();
+    DistanceService distanceService = graph.getDistanceService();
+    int start = graph.getVertexId(getMachine().getCurrentVertex());
+    Util.AbortIf(start < 0, "The current vertex is not part of the model: " + getMachine().getCurrentVertex());
+
+    Set<String> wanted = getWantedRequirements();
+    for (String covered : getMachine().getCoveredRequirements()) {
+      wanted.remove(covered.trim());
+    }
+    if (wanted.isEmpty()) {
+      return;
+    }
+
+    List<Target> targets = getTargets(graph, wanted);
+    List<Target> tour = getGreedyTour(targets, wanted, start, distanceService);
+    improveTour(tour, start, distanceService);
+    logger.debug("Planned a tour over " + tour.size() + " targets, covering the requirements: " + wanted);
+
+    Set<String> covered = new HashSet<String>();
+    int position = start;
+    for (Target target : tour) {
+      if (covered.containsAll(target.requirements)) {
+        continue;
+      }
+      while (position != target.entry) {
+        int edgeId = distanceService.getNextEdge(position, target.entry);
+        Util.AbortIf(edgeId < 0, "There is no way to reach: " + graph.getVertex(target.entry) + ", from: " + graph.getVertex(position));
+        covered.addAll(getRequirements(graph.getEdge(edgeId)));
+        plan.add(graph.getEdge(edgeId));
+        position = graph.getDest(edgeId);
+        covered.addAll(getRequirements(graph.getVertex(position)));
+      }
+      if (target.edgeId >= 0) {
+        plan.add(graph.getEdge(target.edgeId));
+        position = target.exit;
+      }
+      covered.addAll(target.requirements);
+    }
+  }
+
+  /**
+   * Chooses targets until all wanted requirements are covered, always the one with the fewest
+   * steps per new requirement from the end of the previous one. The distances to all targets are
+   * read from one breadth first search from the end of the previous target.
+   */
+  private List<Target> getGreedyTour(List<Target> targets, Set<String> wanted, int start, DistanceService distanceService) {
+    List<Target> tour = new ArrayList<Target>();
+    Set<String> uncovered = new HashSet<String>(wanted);
+    int position = start;
+    while (!uncovered.isEmpty()) {
+      int[] distances = distanceService.getDistancesFrom(position);
+      Target best = null;
+      double bestScore = Double.MAX_VALUE;
+      for (Target target : targets) {
+        int gain = 0;
+        for (String requirement : target.requirements) {
+          if (uncovered.contains(requirement)) {
+            gain++;
+          }
+        }
+        if (gain == 0) {
+          continue;
+        }
+        int distance = distances[target.entry];
+        if (distance == DistanceService.UNREACHABLE) {
+          continue;
+        }
+        double score = (double) (distance + (target.edgeId >= 0 ? 1 : 0)) / gain;
+        if (score < bestScore) {
+          bestScore = score;
+          best = target;
+        }
+      }
+      if (best == null) {
+        logger.warn("The requirements: " + uncovered + ", cannot be reached from: " + getMachine().getCurrentVertex());
+        break;
+      }
+      tour.add(best);
+      uncovered.removeAll(best.requirements);
+      position = best.exit;
+    }
+    return tour;
+  }
+
+  /**
+   * Improves the order of the tour with 2-opt, by reversing parts of it as long as that makes it
+   * shorter. The change of the cost of a reversal is evaluated incrementally, so a round takes
+   * O(n^2).
+   */
+  private void improveTour(List<Target> tour, int start, DistanceService distanceService) {
+    int size = tour.size();
+    if (size < 3) {
+      return;
+    }
+    if (size > MAX_2OPT_TARGETS) {
+      logger.debug("Not improving the tour, since it has more than " + MAX_2OPT_TARGETS + " targets");
+      return;
+    }
+
+    // The distances from the start, and between the end of every target and the beginning of
+    // every other target
+    long[] fromStart = new long[size];
+    long[][] between = new long[size][size];
+    for (int j = 0; j < size; j++) {
+      int[] distances = distanceService.getDistancesTo(tour.get(j).entry);
+      fromStart[j] = toCost(distances[start]);
+      for (int i = 0; i < size; i++) {
+        between[i][j] = toCost(distances[tour.get(i).exit]);
+      }
+    }
+
+    int[] order = new int[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    boolean improved = true;
+    for (int round = 0; improved && round < MAX_2OPT_ROUNDS; round++) {
+      improved = false;
+      for (int i = 0; i < size - 1; i++) {
+        // The costs inside order[i..j], walked forwards and backwards, as j grows
+        long forwards = 0;
+        long backwards = 0;
+        for (int j = i + 1; j < size; j++) {
+          forwards += between[order[j - 1]][order[j]];
+          backwards += between[order[j]][order[j - 1]];
+          long before = (i == 0 ? fromStart[order[i]] : between[order[i - 1]][order[i]]) + forwards
+              + (j + 1 < size ? between[order[j]][order[j + 1]] : 0);
+          long after = (i == 0 ? fromStart[order[j]] : between[order[i - 1]][order[j]]) + backwards
+              + (j + 1 < size ? between[order[i]][order[j + 1]] : 0);
+          if (after < before) {
+            reverse(order, i, j);
+            improved = true;
+            break;
+          }
+        }
+      }
+    }
+
+    List<Target> improvedTour = new ArrayList<Target>(size);
+    for (int i : order) {
+      improvedTour.add(tour.get(i));
+    }
+    Collections.copy(tour, improvedTour);
+  }
+
+  private static long toCost(int distance) {
+    return (distance == DistanceService.UNREACHABLE ? Integer.MAX_VALUE : distance);
+  }
+
+  private static void reverse(int[] order, int i, int j) {
+    while (i < j) {
+      int tmp = order[i];
+      order[i++] = order[j];
+      order[j--] = tmp;
+    }
+  }
+
+  private List<Target> getTargets(CompiledGraph graph, Set<String> wanted) {
+    List<Target> targets = new ArrayList<Target>();
+    for (int i = 0; i < graph.getVertexCount(); i++) {
+      Set<String> tagged = getRequirements(graph.getVertex(i));
+      tagged.retainAll(wanted);
+      if (!tagged.isEmpty()) {
+        targets.add(new Target(i, i, -1, tagged));
+      }
+    }
+    for (int i = 0; i < graph.getEdgeCount(); i++) {
+      Set<String> tagged = getRequirements(graph.getEdge(i));
+      tagged.retainAll(wanted);
+      if (!tagged.isEmpty()) {
+        targets.add(new Target(graph.getSource(i), graph.getDest(i), i, tagged));
+      }
+    }
+    return targets;
+  }
+
+  private Set<String> getWantedRequirements() {
+    Set<String> wanted = new HashSet<String>();
+    if (requirements != null) {
+      for (String requirement : requirements) {
+        wanted.add(requirement.trim());
+      }
+      return wanted;
+    }
+    addReachedRequirements(getStopCondition(), wanted);
+    if (wanted.isEmpty()) {
+      for (AbstractElement element : getMachine().getAllVertices()) {
+        wanted.addAll(getRequirements(element));
+      }
+      for (AbstractElement element : getMachine().getAllEdges()) {
+        wanted.addAll(getRequirements(element));
+      }
+    }
+    return wanted;
+  }
+
+  private static void addReachedRequirements(StopCondition condition, Set<String> wanted) {
+    if (condition instanceof ReachedRequirement) {
+      wanted.addAll(((ReachedRequirement) condition).getRequirements());
+    } else if (condition instanceof AlternativeCondition) {
+      for (StopCondition subCondition : ((AlternativeCondition) condition).getConditions()) {
+        addReachedRequirements(subCondition, wanted);
+      }
+    } else if (condition instanceof CombinationalCondition) {
+      for (StopCondition subCondition : ((CombinationalCondition) condition).getConditions()) {
+        addReachedRequirements(subCondition, wanted);
+      }
+    }
+  }
+
+  private static Set<String> getRequirements(AbstractElement element) {
+    Set<String> tagged = new HashSet<String>();
+    if (element.getReqTagKey().isEmpty()) {
+      return tagged;
+    }
+    for (String tag : element.getReqTagKey().split(",")) {
+      tag = tag.trim();
+      if (!tag.isEmpty() && !tag.matches("[$][{].*[}]")) {
+        tagged.add(tag);
+      }
+    }
+    return tagged;
+  }
+
+  @Override
+  public String toString() {
+    return "REQUIREMENT_PLANNER{" + super.toString() + "}";
+  }
+
+  /**
+   * A vertex, or an edge, to walk in order to cover some requirements. For a vertex, the entry and
+   * the exit are the vertex itself.
+   */
+  private static class Target {
+    private final int entry;
+    private final int exit;
+    private final int edgeId;
+    private final Set<String> requirements;
+
+    public Target(int entry, int exit, int edgeId, Set<String> requirements) {
+      this.entry = entry;
+      this.exit = exit;
+      this.edgeId = edgeId;
+      this.requirements = requirements;
+    }
+  }
+}
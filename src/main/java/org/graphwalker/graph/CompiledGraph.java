@@ -0,0 +1,225 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An immutable, array based snapshot of the structure of a {@link Graph}. Every vertex and edge is
+ * given a dense id, starting at 0, in the order of their index keys. The adjacency of the graph is
+ * kept as arrays of ids, so that algorithms walking the structure of the graph don't need to go
+ * through the collections of the graph.<br>
+ * The snapshot is obtained from {@link Graph#getCompiledGraph()}, which builds a new one whenever
+ * the structure of the graph has changed.
+ */
+public class CompiledGraph {
+
+  private final Vertex[] vertices;
+  private final Edge[] edges;
+  private final HashMap<Vertex, Integer> vertexIds;
+  private final HashMap<Edge, Integer> edgeIds;
+  private final int[] edgeSource;
+  private final int[] edgeDest;
+  private final int[][] outEdges;
+  private final int[][] inEdges;
+  private final int bitsPerEdge;
+  private DistanceService distanceService;
+
+  public CompiledGraph(Graph graph) {
+    Comparator<AbstractElement> byIndex = new Comparator<AbstractElement>() {
+      @Override
+      public int compare(AbstractElement arg0, AbstractElement arg1) {
+        return arg0.getIndexKey().compareTo(arg1.getIndexKey());
+      }
+    };
+
+    List<Vertex> vertexList = new ArrayList<Vertex>(graph.getVertices());
+    Collections.sort(vertexList, byIndex);
+    vertices = vertexList.toArray(new Vertex[vertexList.size()]);
+    vertexIds = new HashMap<Vertex, Integer>(vertices.length * 2);
+    for (int i = 0; i < vertices.length; i++) {
+      vertexIds.put(vertices[i], i);
+    }
+
+    List<Edge> edgeList = new ArrayList<Edge>(graph.getEdges());
+    Collections.sort(edgeList, byIndex);
+    edges = edgeList.toArray(new Edge[edgeList.size()]);
+    edgeIds = new HashMap<Edge, Integer>(edges.length * 2);
+    edgeSource = new int[edges.length];
+    edgeDest = new int[edges.length];
+    int[] outDegree = new int[vertices.length];
+    int[] inDegree = new int[vertices.length];
+    for (int i = 0; i < edges.length; i++) {
+      edgeIds.put(edges[i], i);
+      edgeSource[i] = vertexIds.get(graph.getSource(edges[i]));
+      edgeDest[i] = vertexIds.get(graph.getDest(edges[i]));
+      outDegree[edgeSource[i]]++;
+      inDegree[edgeDest[i]]++;
+    }
+
+    bitsPerEdge = 32 - Integer.numberOfLeadingZeros(edges.length);
+
+    outEdges = new int[vertices.length][];
+    inEdges = new int[vertices.length][];
+    for (int i = 0; i < vertices.length; i++) {
+      outEdges[i] = new int[outDegree[i]];
+      inEdges[i] = new int[inDegree[i]];
+    }
+    for (int i = 0; i < edges.length; i++) {
+      outEdges[edgeSource[i]][--outDegree[edgeSource[i]]] = i;
+      inEdges[edgeDest[i]][--inDegree[edgeDest[i]]] = i;
+    }
+  }
+
+  public int getVertexCount() {
+    return vertices.length;
+  }
+
+  public int getEdgeCount() {
+    return edges.length;
+  }
+
+  public Vertex getVertex(int id) {
+    return vertices[id];
+  }
+
+  public Edge getEdge(int id) {
+    return edges[id];
+  }
+
+  /**
+   * @return the id of the vertex, or -1 if the vertex is not part of the graph
+   */
+  public int getVertexId(Vertex vertex) {
+    Integer id = vertexIds.get(vertex);
+    return (id == null ? -1 : id);
+  }
+
+  /**
+   * @return the id of the edge, or -1 if the edge is not part of the graph
+   */
+  public int getEdgeId(Edge edge) {
+    Integer id = edgeIds.get(edge);
+    return (id == null ? -1 : id);
+  }
+
+  public int getSource(int edgeId) {
+    return edgeSource[edgeId];
+  }
+
+  public int getDest(int edgeId) {
+    return edgeDest[edgeId];
+  }
+
+  /**
+   * @return the ids of the out edges of the vertex. The array must not be modified.
+   */
+  public int[] getOutEdges(int vertexId) {
+    return outEdges[vertexId];
+  }
+
+  /**
+   * @return the ids of the in edges of the vertex. The array must not be modified.
+   */
+  public int[] getInEdges(int vertexId) {
+    return inEdges[vertexId];
+  }
+
+  /**
+   * @return the distance service of the graph, created the first time it is asked for
+   */
+  public synchronized DistanceService getDistanceService() {
+    if (distanceService == null) {
+      distanceService = new DistanceService(this);
+    }
+    return distanceService;
+  }
+
+  /**
+   * Returns a key that exactly identifies a sequence of edges. Sequences that fit are packed into a
+   * Long, longer ones are wrapped in an object comparing the ids of the edges. Keys of sequences with
+   * different lengths never equal each other.
+   * 
+   * @param edgeIds the ids of the edges of the sequence, in order
+   * @param length the number of ids to use from edgeIds
+   * @return the key of the sequence
+   */
+  public Object getEdgeSequenceKey(int[] edgeIds, int length) {
+    if (isPackable(length)) {
+      return packEdgeSequence(edgeIds, length);
+    }
+    return new EdgeSequenceKey(Arrays.copyOf(edgeIds, length));
+  }
+
+  /**
+   * @return true if sequences of the length fit in a long, see {@link #packEdgeSequence(int[], int)}
+   */
+  public boolean isPackable(int length) {
+    return length * bitsPerEdge < Long.SIZE;
+  }
+
+  /**
+   * Packs a sequence of edges into a long, that is never 0 and never equals the packed key of
+   * another sequence. The sequence must be packable, see {@link #isPackable(int)}.
+   * 
+   * @param edgeIds the ids of the edges of the sequence, in order
+   * @param length the number of ids to use from edgeIds
+   * @return the packed key of the sequence
+   */
+  public long packEdgeSequence(int[] edgeIds, int length) {
+    long key = 0;
+    for (int i = 0; i < length; i++) {
+      key = (key << bitsPerEdge) | (edgeIds[i] + 1);
+    }
+    return key;
+  }
+
+  private static class EdgeSequenceKey {
+    private final int[] edgeIds;
+    private final int hash;
+
+    public EdgeSequenceKey(int[] edgeIds) {
+      this.edgeIds = edgeIds;
+      this.hash = Arrays.hashCode(edgeIds);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) return true;
+      if (!(obj instanceof EdgeSequenceKey)) return false;
+      EdgeSequenceKey other = (EdgeSequenceKey) obj;
+      return hash == other.hash && Arrays.equals(edgeIds, other.edgeIds);
+    }
+  }
+}
@@ -0,0 +1,239 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Answers shortest distance questions, counted in number of edges, over a {@link CompiledGraph}.
+ * The distances to a vertex are computed with a reversed breadth first search the first time they
+ * are asked for, and are then cached. The cache holds a bounded number of vertices, and evicts the
+ * least recently used ones.<br>
+ * The service is obtained from {@link CompiledGraph#getDistanceService()}, so it is discarded
+ * together with the compiled graph when the structure of the graph changes. Guards are not taken
+ * into account.
+ */
+public class DistanceService {
+
+  /**
+   * The distance between two vertices with no path between them.
+   */
+  public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+  public static final int DEFAULT_CACHE_SIZE = 1024;
+
+  private final CompiledGraph graph;
+  private final Map<Integer, int[]> distancesTo;
+
+  public DistanceService(CompiledGraph graph) {
+    this(graph, DEFAULT_CACHE_SIZE);
+  }
+
+  public DistanceService(CompiledGraph graph, final int cacheSize) {
+    this.graph = graph;
+    this.distancesTo = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Integer, int[]> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  public CompiledGraph getCompiledGraph() {
+    return graph;
+  }
+
+  /**
+   * Returns the distances from all vertices to a vertex. The array is indexed by vertex id, and
+   * holds {@link #UNREACHABLE} for vertices that cannot reach the vertex. The array must not be
+   * modified.
+   * 
+   * @param vertexId the id of the destination vertex
+   * @return the distances to the vertex
+   */
+  public synchronized int[] getDistancesTo(int vertexId) {
+    int[] distances = distancesTo.get(vertexId);
+    if (distances == null) {
+      distances = computeDistancesTo(vertexId);
+      distancesTo.put(vertexId, distances);
+    }
+    return distances;
+  }
+
+  /**
+   * Returns the distances from a vertex to all vertices, with a breadth first search. The array is
+   * indexed by vertex id, and holds {@link #UNREACHABLE} for vertices that cannot be reached. The
+   * result is not cached, so this is the cheaper way to get the distances to many vertices from one
+   * vertex.
+   * 
+   * @param vertexId the id of the source vertex
+   * @return the distances from the vertex
+   */
+  public int[] getDistancesFrom(int vertexId) {
+    return computeDistances(vertexId, true);
+  }
+
+  /**
+   * @return the number of edges on the shortest path between the vertices, or
+   *         {@link #UNREACHABLE}
+   */
+  public int getDistance(int fromVertexId, int toVertexId) {
+    return getDistancesTo(toVertexId)[fromVertexId];
+  }
+
+  /**
+   * Returns the first edge on a shortest path between two vertices.
+   * 
+   * @return the id of the edge, or -1 if the vertices are the same, or if there is no path
+   */
+  public int getNextEdge(int fromVertexId, int toVertexId) {
+    int[] distances = getDistancesTo(toVertexId);
+    if (fromVertexId == toVertexId || distances[fromVertexId] == UNREACHABLE) {
+      return -1;
+    }
+    for (int edgeId : graph.getOutEdges(fromVertexId)) {
+      if (distances[graph.getDest(edgeId)] == distances[fromVertexId] - 1) {
+        return edgeId;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Searches for a shortest path between two vertices, with a breadth first search from both ends
+   * at the same time. Each round expands the smaller of the two frontiers by one level, so far
+   * fewer vertices are visited than by a search from one end only. The result is not cached.
+   * 
+   * @return the ids of the edges of the path, in order, or null if there is no path
+   */
+  public int[] getShortestPath(int fromVertexId, int toVertexId) {
+    if (fromVertexId == toVertexId) {
+      return new int[0];
+    }
+    int vertexCount = graph.getVertexCount();
+    // The edge used to reach a vertex from the start, or to leave it towards the end, or -1
+    int[] forwardEdge = new int[vertexCount];
+    int[] backwardEdge = new int[vertexCount];
+    int[] forwardDistance = new int[vertexCount];
+    int[] backwardDistance = new int[vertexCount];
+    Arrays.fill(forwardDistance, UNREACHABLE);
+    Arrays.fill(backwardDistance, UNREACHABLE);
+    forwardDistance[fromVertexId] = 0;
+    backwardDistance[toVertexId] = 0;
+    forwardEdge[fromVertexId] = -1;
+    backwardEdge[toVertexId] = -1;
+
+    int[] forwardFrontier = {fromVertexId};
+    int[] backwardFrontier = {toVertexId};
+    int meeting = -1;
+    while (meeting < 0 && forwardFrontier.length > 0 && backwardFrontier.length > 0) {
+      int[] reached;
+      if (forwardFrontier.length <= backwardFrontier.length) {
+        forwardFrontier = expand(forwardFrontier, true, forwardDistance, forwardEdge);
+        reached = forwardFrontier;
+      } else {
+        backwardFrontier = expand(backwardFrontier, false, backwardDistance, backwardEdge);
+        reached = backwardFrontier;
+      }
+      // Among the vertices just reached, that have been reached from the other end as well, pick
+      // the one on the shortest path
+      int shortest = UNREACHABLE;
+      for (int vertex : reached) {
+        if (forwardDistance[vertex] != UNREACHABLE && backwardDistance[vertex] != UNREACHABLE
+            && forwardDistance[vertex] + backwardDistance[vertex] < shortest) {
+          shortest = forwardDistance[vertex] + backwardDistance[vertex];
+          meeting = vertex;
+        }
+      }
+    }
+    if (meeting < 0) {
+      return null;
+    }
+
+    int[] path = new int[forwardDistance[meeting] + backwardDistance[meeting]];
+    int vertex = meeting;
+    for (int i = forwardDistance[meeting] - 1; i >= 0; i--) {
+      path[i] = forwardEdge[vertex];
+      vertex = graph.getSource(path[i]);
+    }
+    vertex = meeting;
+    for (int i = forwardDistance[meeting]; i < path.length; i++) {
+      path[i] = backwardEdge[vertex];
+      vertex = graph.getDest(path[i]);
+    }
+    return path;
+  }
+
+  private int[] expand(int[] frontier, boolean forward, int[] distances, int[] edges) {
+    int capacity = 0;
+    for (int vertex : frontier) {
+      capacity += (forward ? graph.getOutEdges(vertex) : graph.getInEdges(vertex)).length;
+    }
+    int[] next = new int[capacity];
+    int size = 0;
+    for (int vertex : frontier) {
+      for (int edgeId : (forward ? graph.getOutEdges(vertex) : graph.getInEdges(vertex))) {
+        int neighbour = (forward ? graph.getDest(edgeId) : graph.getSource(edgeId));
+        if (distances[neighbour] == UNREACHABLE) {
+          distances[neighbour] = distances[vertex] + 1;
+          edges[neighbour] = edgeId;
+          next[size++] = neighbour;
+        }
+      }
+    }
+    return Arrays.copyOf(next, size);
+  }
+
+  private int[] computeDistancesTo(int vertexId) {
+    return computeDistances(vertexId, false);
+  }
+
+  /**
+   * @param forward true for the distances from the vertex, false for the distances to it
+   */
+  private int[] computeDistances(int vertexId, boolean forward) {
+    int[] distances = new int[graph.getVertexCount()];
+    Arrays.fill(distances, UNREACHABLE);
+    int[] queue = new int[graph.getVertexCount()];
+    int head = 0;
+    int tail = 0;
+    distances[vertexId] = 0;
+    queue[tail++] = vertexId;
+    while (head < tail) {
+      int vertex = queue[head++];
+      for (int edgeId : (forward ? graph.getOutEdges(vertex) : graph.getInEdges(vertex))) {
+        int neighbour = (forward ? graph.getDest(edgeId) : graph.getSource(edgeId));
+        if (distances[neighbour] == UNREACHABLE) {
+          distances[neighbour] = distances[vertex] + 1;
+          queue[tail++] = neighbour;
+        }
+      }
+    }
+    return distances;
+  }
+}
@@ -23,11 +23,17 @@
 
 package org.graphwalker.graph;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
 import org.apache.log4j.Logger;
 import org.graphwalker.Util;
 
 import edu.uci.ics.jung.graph.SparseMultigraph;
 import edu.uci.ics.jung.graph.util.EdgeType;
+import edu.uci.ics.jung.graph.util.Pair;
 
 public class Graph extends SparseMultigraph<Vertex, Edge> {
 
@@ -37,6 +43,40 @@ public class Graph extends SparseMultigraph<Vertex, Edge> {
   private String fileKey = "";
   private String labelKey = "";
   private String descriptionKey = "";
+  private transient CompiledGraph compiledGraph = null;
+
+  /**
+   * Creates an empty graph. The vertices and edges are kept in the order they were added, so a
+   * model loaded from the same files is always iterated, merged and saved the same way.
+   */
+  public Graph() {
+    super();
+    vertices = new LinkedHashMap<Vertex, Pair<Set<Edge>>>();
+    edges = new LinkedHashMap<Edge, Pair<Vertex>>();
+    directedEdges = new LinkedHashSet<Edge>();
+  }
+
+  /**
+   * Creates a deep copy of a graph. All vertices and edges are copied, including their visited
+   * counters, so the copy can be walked independently of the original.
+   * 
+   * @param graph the graph to copy
+   */
+  public Graph(Graph graph) {
+    this();
+    this.fileKey = graph.fileKey;
+    this.labelKey = graph.labelKey;
+    this.descriptionKey = graph.descriptionKey;
+    HashMap<Vertex, Vertex> copies = new HashMap<Vertex, Vertex>();
+    for (Vertex vertex : graph.getVertices()) {
+      Vertex copy = new Vertex(vertex);
+      copies.put(vertex, copy);
+      addVertex(copy);
+    }
+    for (Edge edge : graph.getEdges()) {
+      addEdge(new Edge(edge), copies.get(graph.getSource(edge)), copies.get(graph.getDest(edge)));
+    }
+  }
 
   public String getDescriptionKey() {
     return descriptionKey;
@@ -77,6 +117,52 @@ public class Graph extends SparseMultigraph<Vertex, Edge> {
     return super.addEdge(e, source, dest, EdgeType.DIRECTED);
   }
 
+  @Override
+  public boolean addEdge(Edge edge, Pair<? extends Vertex> endpoints, EdgeType edgeType) {
+    compiledGraph = null;
+    return super.addEdge(edge, endpoints, edgeType);
+  }
+
+  @Override
+  public boolean addVertex(Vertex vertex) {
+    compiledGraph = null;
+    if (vertex == null) {
+      throw new IllegalArgumentException("vertex may not be null");
+    }
+    if (vertices.containsKey(vertex)) {
+      return false;
+    }
+    vertices.put(vertex, new Pair<Set<Edge>>(new LinkedHashSet<Edge>(), new LinkedHashSet<Edge>()));
+    return true;
+  }
+
+  @Override
+  public boolean removeEdge(Edge edge) {
+    compiledGraph = null;
+    return super.removeEdge(edge);
+  }
+
+  @Override
+  public boolean removeVertex(Vertex vertex) {
+    compiledGraph = null;
+    return super.removeVertex(vertex);
+  }
+
+  /**
+   * Returns an array based snapshot of the structure of the graph. The snapshot is built on first
+   * request, and rebuilt after vertices or edges have been added or removed.
+   * 
+   * @return the compiled graph
+   */
+  public CompiledGraph getCompiledGraph() {
+    CompiledGraph compiled = compiledGraph;
+    if (compiled == null) {
+      compiled = new CompiledGraph(this);
+      compiledGraph = compiled;
+    }
+    return compiled;
+  }
+
   public Vertex findVertex(String vertexName) {
     logger.debug("Looking for vertex: " + vertexName + ", in model: " + this.toString());
     for (Vertex vertex : getVertices()) {
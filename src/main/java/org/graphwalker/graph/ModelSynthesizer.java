@@ -0,0 +1,383 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Keywords;
+import org.graphwalker.Util;
+import org.graphwalker.io.GraphMLWriter;
+
+/**
+ * Creates models of any size, for load testing and benchmarking. The model is built from the
+ * settings and the seed only, so the same settings always create the same model.<br>
+ * <br>
+ * The vertices are split into depth + 1 levels. Level 0 is the mother graph, and every other level
+ * is a subgraph, entered through the vertex Sub&lt;level&gt; of the level above it. The vertices
+ * of level 0 are split into components, each one a strongly connected ring, where the last vertex of
+ * a component has an edge to the first vertex of the next one. Every subgraph is a ring of its own.
+ * The remaining edges are added as chords within the components, from sources selected by the
+ * out-degree distribution.<br>
+ * A chord is guarded by the variable x with the probability of the guard density, and a vertex is
+ * tagged with a requirement with the probability of the requirement density. If there are guards,
+ * every edge of the rings counts x from 0 to 9, so whether a guard is fulfilled depends on the way
+ * the vertex was reached.
+ */
+public class ModelSynthesizer {
+
+  public enum OutDegree {
+    /** The sources of the chords are chosen uniformly */
+    UNIFORM,
+    /** The sources of the chords are chosen by a Zipf distribution, creating a few hub vertices */
+    POWER_LAW
+  }
+
+  private static Logger logger = Util.setupLogger(ModelSynthesizer.class);
+
+  private int vertices = 100;
+  private int edges = 300;
+  private OutDegree outDegree = OutDegree.UNIFORM;
+  private int components = 1;
+  private double guardDensity = 0;
+  private double requirementDensity = 0;
+  private int depth = 0;
+  private long seed = 0;
+
+  /** The labels of the vertices, the entry vertices of the subgraphs are labeled Sub<level> */
+  private String[] labels;
+  private int[] levels;
+  private String[] reqTags;
+  /** The first vertex of each level, which is the entry vertex of the subgraphs */
+  private int[] entries;
+  private int[] edgeSources;
+  private int[] edgeTargets;
+  private int[] edgeLevels;
+  /** 1 for guarded chords, 2 for the counting edges of the rings, 0 otherwise */
+  private int[] edgeScripts;
+
+  public int getVertices() {
+    return vertices;
+  }
+
+  /**
+   * @param vertices The number of vertices, not counting the Start vertex
+   */
+  public void setVertices(int vertices) {
+    this.vertices = vertices;
+  }
+
+  public int getEdges() {
+    return edges;
+  }
+
+  /**
+   * @param edges The number of edges, not counting the edge from the Start vertex. At least
+   *        vertices + depth + components - 1 edges are needed to connect the model.
+   */
+  public void setEdges(int edges) {
+    this.edges = edges;
+  }
+
+  public OutDegree getOutDegree() {
+    return outDegree;
+  }
+
+  public void setOutDegree(OutDegree outDegree) {
+    this.outDegree = outDegree;
+  }
+
+  public int getComponents() {
+    return components;
+  }
+
+  /**
+   * @param components The number of strongly connected components of the mother graph
+   */
+  public void setComponents(int components) {
+    this.components = components;
+  }
+
+  public double getGuardDensity() {
+    return guardDensity;
+  }
+
+  /**
+   * @param guardDensity The share of the chords having a guard and an action, from 0 to 1
+   */
+  public void setGuardDensity(double guardDensity) {
+    this.guardDensity = guardDensity;
+  }
+
+  public double getRequirementDensity() {
+    return requirementDensity;
+  }
+
+  /**
+   * @param requirementDensity The share of the vertices having a requirement tag, from 0 to 1
+   */
+  public void setRequirementDensity(double requirementDensity) {
+    this.requirementDensity = requirementDensity;
+  }
+
+  public int getDepth() {
+    return depth;
+  }
+
+  /**
+   * @param depth The nesting depth of the subgraphs. 0 creates a single graph.
+   */
+  public void setDepth(int depth) {
+    this.depth = depth;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public void setSeed(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @return The model as a single graph, as it is after merging the graphs of
+   *         {@link #createGraphs()}
+   */
+  public Graph createGraph() {
+    synthesize();
+    Graph graph = new Graph();
+    Vertex[] created = new Vertex[labels.length];
+    Vertex start = addStartVertex(graph);
+    for (int i = 0; i < labels.length; i++) {
+      created[i] = addVertex(graph, i);
+    }
+    addStartEdge(graph, start, created[entries[0]], 0);
+    for (int i = 0; i < edgeSources.length; i++) {
+      addEdge(graph, created[edgeSources[i]], created[edgeTargets[i]], i);
+    }
+    graph.setLabelKey("Synthesized");
+    return graph;
+  }
+
+  /**
+   * @return One graph per level, the mother graph first, followed by the subgraphs in order of
+   *         depth. Each subgraph is entered through its own Start vertex.
+   */
+  public Vector<Graph> createGraphs() {
+    synthesize();
+    Vector<Graph> graphs = new Vector<Graph>();
+    for (int level = 0; level <= depth; level++) {
+      Graph graph = new Graph();
+      Vertex[] created = new Vertex[labels.length];
+      Vertex start = addStartVertex(graph);
+      for (int i = 0; i < labels.length; i++) {
+        if (levels[i] == level || (level < depth && i == entries[level + 1])) {
+          created[i] = addVertex(graph, i);
+        }
+      }
+      addStartEdge(graph, start, created[entries[level]], level);
+      for (int i = 0; i < edgeSources.length; i++) {
+        if (edgeLevels[i] == level) {
+          addEdge(graph, created[edgeSources[i]], created[edgeTargets[i]], i);
+        }
+      }
+      graph.setLabelKey(level == 0 ? "Synthesized" : "Sub" + level);
+      graphs.add(graph);
+    }
+    return graphs;
+  }
+
+  /**
+   * Writes the graphs of {@link #createGraphs()} as GraphML files to a folder, which is created if
+   * needed. The mother graph is written to model.graphml, and the subgraphs to
+   * subgraph&lt;level&gt;.graphml. The folder can then be loaded like any other model folder.
+   * 
+   * @return The files written
+   */
+  public List<File> write(File folder) throws IOException {
+    if (!folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Could not create the folder: " + folder);
+    }
+    List<File> files = new ArrayList<File>();
+    Vector<Graph> graphs = createGraphs();
+    GraphMLWriter writer = new GraphMLWriter(false);
+    for (int level = 0; level < graphs.size(); level++) {
+      File file = new File(folder, level == 0 ? "model.graphml" : "subgraph" + level + ".graphml");
+      writer.write(graphs.get(level), file);
+      files.add(file);
+    }
+    return files;
+  }
+
+  /**
+   * Builds the structure of the model from the settings.
+   */
+  private void synthesize() {
+    Util.AbortIf(vertices < 1, "The number of vertices must be at least 1");
+    Util.AbortIf(depth < 0, "The depth cannot be negative");
+    Util.AbortIf(vertices < depth + 1, "Every level of subgraphs needs at least 1 vertex, use at least " + (depth + 1) + " vertices");
+    int levelSize = vertices / (depth + 1);
+    int firstLevelSize = levelSize + vertices % (depth + 1);
+    Util.AbortIf(components < 1 || components > firstLevelSize, "The number of components must be between 1 and " + firstLevelSize);
+    int minimumEdges = vertices + depth + components - 1;
+    Util.AbortIf(edges < minimumEdges, "The model needs at least " + minimumEdges + " edges to be connected");
+    Util.AbortIf(guardDensity < 0 || guardDensity > 1, "The guard density must be between 0 and 1");
+    Util.AbortIf(requirementDensity < 0 || requirementDensity > 1, "The requirement density must be between 0 and 1");
+
+    Random random = new Random(seed);
+    labels = new String[vertices];
+    levels = new int[vertices];
+    reqTags = new String[vertices];
+    entries = new int[depth + 1];
+
+    // The groups of vertices forming a ring each, the components of level 0 followed by the subgraphs
+    List<List<Integer>> groups = new ArrayList<List<Integer>>();
+    List<Integer> groupLevels = new ArrayList<Integer>();
+    int next = 0;
+    for (int level = 0; level <= depth; level++) {
+      int size = (level == 0 ? firstLevelSize : levelSize);
+      int groupCount = (level == 0 ? components : 1);
+      entries[level] = next;
+      for (int group = 0; group < groupCount; group++) {
+        List<Integer> members = new ArrayList<Integer>();
+        int groupSize = size / groupCount + (group < size % groupCount ? 1 : 0);
+        for (int i = 0; i < groupSize; i++) {
+          labels[next] = (level > 0 && i == 0 ? "Sub" + level : "V" + next);
+          levels[next] = level;
+          if (random.nextDouble() < requirementDensity) {
+            reqTags[next] = "R" + next;
+          }
+          members.add(next++);
+        }
+        groups.add(members);
+        groupLevels.add(level);
+      }
+    }
+    // The entry of each subgraph is part of the first group of the level above it as well
+    for (int level = 1; level <= depth; level++) {
+      groups.get(level == 1 ? 0 : components + level - 2).add(entries[level]);
+    }
+
+    // Each edge is {source, target, script, level}
+    int counting = (guardDensity > 0 ? 2 : 0);
+    List<int[]> created = new ArrayList<int[]>();
+    for (int group = 0; group < groups.size(); group++) {
+      List<Integer> members = groups.get(group);
+      for (int i = 0; i < members.size(); i++) {
+        created.add(new int[] {members.get(i), members.get((i + 1) % members.size()), counting, groupLevels.get(group)});
+      }
+      if (group + 1 < components) {
+        created.add(new int[] {members.get(members.size() - 1), groups.get(group + 1).get(0), 0, 0});
+      }
+    }
+
+    // The memberships the chords start from, in a random order so the hubs are spread in the model
+    List<int[]> memberships = new ArrayList<int[]>();
+    for (int group = 0; group < groups.size(); group++) {
+      for (int i = 0; i < groups.get(group).size(); i++) {
+        memberships.add(new int[] {group, i});
+      }
+    }
+    for (int i = memberships.size() - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int[] swap = memberships.get(i);
+      memberships.set(i, memberships.get(j));
+      memberships.set(j, swap);
+    }
+    double[] cumulative = new double[memberships.size()];
+    double sum = 0;
+    for (int i = 0; i < cumulative.length; i++) {
+      sum += (outDegree == OutDegree.POWER_LAW ? 1.0 / (i + 1) : 1.0);
+      cumulative[i] = sum;
+    }
+    while (created.size() < edges) {
+      int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+      int[] membership = memberships.get(Math.min(index < 0 ? -index - 1 : index, cumulative.length - 1));
+      List<Integer> members = groups.get(membership[0]);
+      int target = members.get(random.nextInt(members.size()));
+      created.add(new int[] {members.get(membership[1]), target, random.nextDouble() < guardDensity ? 1 : 0, groupLevels.get(membership[0])});
+    }
+
+    edgeSources = new int[created.size()];
+    edgeTargets = new int[created.size()];
+    edgeScripts = new int[created.size()];
+    edgeLevels = new int[created.size()];
+    for (int i = 0; i < created.size(); i++) {
+      edgeSources[i] = created.get(i)[0];
+      edgeTargets[i] = created.get(i)[1];
+      edgeScripts[i] = created.get(i)[2];
+      edgeLevels[i] = created.get(i)[3];
+    }
+    logger.debug("Synthesized a model with " + vertices + " vertices, " + edgeSources.length + " edges and " + (depth + 1) + " levels");
+  }
+
+  private Vertex addStartVertex(Graph graph) {
+    Vertex start = Util.addVertexToGraph(graph, Keywords.START_NODE);
+    start.setFullLabelKey(Keywords.START_NODE);
+    return start;
+  }
+
+  private Vertex addVertex(Graph graph, int index) {
+    Vertex vertex = Util.addVertexToGraph(graph, labels[index]);
+    if (reqTags[index] != null) {
+      vertex.setReqTagKey(reqTags[index]);
+      vertex.setFullLabelKey(labels[index] + "\nREQTAG=" + reqTags[index]);
+    } else {
+      vertex.setFullLabelKey(labels[index]);
+    }
+    return vertex;
+  }
+
+  /**
+   * Adds the edge from the Start vertex. The edge of the mother graph is labeled, and initializes x
+   * if there are guards. The edges of the subgraphs are not labeled, as required for subgraphs.
+   */
+  private void addStartEdge(Graph graph, Vertex start, Vertex entry, int level) {
+    if (level > 0) {
+      Util.addEdgeToGraph(graph, start, entry, null, null, null, null);
+      return;
+    }
+    Edge edge = Util.addEdgeToGraph(graph, start, entry, "e_Init", null, null, guardDensity > 0 ? "x=0;" : null);
+    edge.setFullLabelKey(guardDensity > 0 ? "e_Init / x=0;" : "e_Init");
+  }
+
+  private void addEdge(Graph graph, Vertex source, Vertex target, int index) {
+    String label = "e" + index;
+    if (edgeScripts[index] == 1) {
+      String guard = "x!=" + (index % 10);
+      Util.addEdgeToGraph(graph, source, target, label, null, guard, null).setFullLabelKey(label + " [" + guard + "]");
+    } else if (edgeScripts[index] == 2) {
+      String action = "x=(x+1)%10;";
+      Util.addEdgeToGraph(graph, source, target, label, null, null, action).setFullLabelKey(label + " / " + action);
+    } else {
+      Util.addEdgeToGraph(graph, source, target, label, null, null, null).setFullLabelKey(label);
+    }
+  }
+}
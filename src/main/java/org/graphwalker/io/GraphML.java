@@ -29,6 +29,7 @@ import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Vector;
@@ -78,6 +79,11 @@ public class GraphML extends AbstractModelHandler {
    */
   private int vertexAndEdgeIndex;
 
+  /**
+   * The cache of merged models, or null if not used
+   */
+  private ModelCache modelCache;
+
   /**
    * The logger
    */
@@ -103,9 +109,9 @@ public class GraphML extends AbstractModelHandler {
   public void load(String fileOrfolder) {
     if (!"".equals(fileOrfolder)) {
       File file = Util.getFile(fileOrfolder);
+      File[] files;
       if (file.isFile()) {
-        parsedGraphList.add(parseFile(fileOrfolder));
-        setMerged(false);
+        files = new File[] {file};
       } else if (file.isDirectory()) {
         // Only accepts files which suffix is .graphml
         FilenameFilter graphmlFilter = new FilenameFilter() {
@@ -115,21 +121,91 @@ public class GraphML extends AbstractModelHandler {
           }
         };
 
-        File[] allChildren = file.listFiles(graphmlFilter);
-        for (File anAllChildren : allChildren) {
-          parsedGraphList.add(parseFile(anAllChildren.getAbsolutePath()));
-          setMerged(false);
-        }
+        files = file.listFiles(graphmlFilter);
+        // Sorted, so the merged model does not depend on the order of the file system
+        Arrays.sort(files);
       } else {
         throw new RuntimeException("'" + fileOrfolder
             + "' is not a file or a directory. Please specify a valid .graphml file or a directory containing .graphml files");
       }
+
+      // Only a model loaded from scratch can be cached, since a model can be loaded in several steps
+      String hash = null;
+      if (modelCache != null && parsedGraphList.isEmpty()) {
+        hash = getHash(files);
+        if (hash != null && loadFromCache(hash)) {
+          return;
+        }
+      }
+
+      if (file.isFile()) {
+        parsedGraphList.add(parseFile(fileOrfolder));
+        setMerged(false);
+      } else {
+        for (File anAllChildren : files) {
+          parsedGraphList.add(parseFile(anAllChildren.getAbsolutePath()));
+          setMerged(false);
+        }
+      }
+      mergeAllGraphs();
+
+      if (hash != null) {
+        try {
+          modelCache.write(hash, graph);
+        } catch (IOException e) {
+          logger.warn("Could not write the model to the cache: " + e.getMessage());
+        }
+      }
+      return;
     }
     mergeAllGraphs();
   }
 
   public void load(File fileOrfolder) {
-    load(fileOrfolder);
+    load(fileOrfolder.getPath());
+  }
+
+  public ModelCache getModelCache() {
+    return modelCache;
+  }
+
+  /**
+   * @param modelCache The cache of merged models, or null to always parse and merge the files.
+   */
+  public void setModelCache(ModelCache modelCache) {
+    this.modelCache = modelCache;
+  }
+
+  private String getHash(File[] files) {
+    try {
+      return ModelCache.hash(files);
+    } catch (IOException e) {
+      logger.warn("Could not calculate the hash of the model: " + e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Uses the cached model, as if it had been parsed and merged.
+   * 
+   * @return false if the model is not cached
+   */
+  private boolean loadFromCache(String hash) {
+    Graph cached = modelCache.read(hash);
+    if (cached == null) {
+      return false;
+    }
+    for (AbstractElement element : cached.getVertices()) {
+      vertexAndEdgeIndex = Math.max(vertexAndEdgeIndex, element.getIndexKey());
+    }
+    for (AbstractElement element : cached.getEdges()) {
+      vertexAndEdgeIndex = Math.max(vertexAndEdgeIndex, element.getIndexKey());
+    }
+    parsedGraphList.add(cached);
+    graph = cached;
+    setMerged(true);
+    mergeAllGraphs();
+    return true;
   }
 
   /**
@@ -1022,100 +1098,14 @@ public class GraphML extends AbstractModelHandler {
   }
 
   /**
-   * Writes the graph to a PrintStream, using GraphML format.
+   * Writes the graph to a PrintStream, using GraphML format. See {@link GraphMLWriter}.
    */
   @Override
   public void save(PrintStream ps, boolean printIndex) {
-    Graph g = getModel();
-
-    ps.println("<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?>");
-    ps.println("<graphml xmlns=\"http://graphml.graphdrawing.org/xmlns/graphml\"  " + "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" "
-        + "xsi:schemaLocation=\"http://graphml.graphdrawing.org/xmlns/graphml " + "http://www.yworks.com/xml/schema/graphml/1.0/ygraphml.xsd\" "
-        + "xmlns:y=\"http://www.yworks.com/xml/graphml\">");
-    ps.println("  <key id=\"d0\" for=\"node\" yfiles.type=\"nodegraphics\"/>");
-    ps.println("  <key id=\"d1\" for=\"edge\" yfiles.type=\"edgegraphics\"/>");
-    ps.println("  <graph id=\"G\" edgedefault=\"directed\">");
-
-    for (Vertex v : g.getVertices()) {
-      ps.println("    <node id=\"n" + v.getIndexKey() + "\">");
-      ps.println("      <data key=\"d0\" >");
-
-      if (!v.getImageKey().isEmpty()) {
-        ps.println("        <y:ImageNode >");
-        ps.println("          <y:Geometry  x=\"241.875\" y=\"158.701171875\" width=\"" + v.getWidth() + "\" height=\"" + v.getHeight() + "\"/>");
-      } else {
-        ps.println("        <y:ShapeNode >");
-        ps.println("          <y:Geometry  x=\"241.875\" y=\"158.701171875\" width=\"95.0\" height=\"30.0\"/>");
-      }
-
-      ps.println("          <y:Fill color=\"#CCCCFF\"  transparent=\"false\"/>");
-      ps.println("          <y:BorderStyle type=\"line\" width=\"1.0\" color=\"#000000\" />");
-      ps.print("          <y:NodeLabel x=\"1.5\" y=\"5.6494140625\" width=\"92.0\" height=\"18.701171875\" "
-          + "visible=\"true\" alignment=\"center\" fontFamily=\"Dialog\" fontSize=\"12\" "
-          + "fontStyle=\"plain\" textColor=\"#000000\" modelName=\"internal\" modelPosition=\"c\" " + "autoSizePolicy=\"content\">"
-          + v.getFullLabelKey());
-      if (printIndex) {
-        ps.print("&#xA;INDEX=" + v.getIndexKey());
-      }
-
-      ps.println("</y:NodeLabel>");
-
-      if (!v.getImageKey().isEmpty()) {
-        ps.println("          <y:Image href=\"" + v.getImageKey() + "\"/>");
-        ps.println("        </y:ImageNode>");
-      } else {
-        ps.println("          <y:Shape type=\"rectangle\"/>");
-        ps.println("        </y:ShapeNode>");
-      }
-
-      ps.println("      </data>");
-      ps.println("    </node>");
-    }
-
-    for (Edge e : g.getEdges()) {
-      Pair<Vertex> p = graph.getEndpoints(e);
-      Vertex src = p.getFirst();
-      Vertex dest = p.getSecond();
-
-      ps.println("    <edge id=\"" + e.getIndexKey() + "\" source=\"n" + src.getIndexKey() + "\" target=\"n" + dest.getIndexKey() + "\">");
-      ps.println("      <data key=\"d1\" >");
-      ps.println("        <y:PolyLineEdge >");
-      ps.println("          <y:Path sx=\"-23.75\" sy=\"15.0\" tx=\"-23.75\" ty=\"-15.0\">");
-      ps.println("            <y:Point x=\"273.3125\" y=\"95.0\"/>");
-      ps.println("            <y:Point x=\"209.5625\" y=\"95.0\"/>");
-      ps.println("            <y:Point x=\"209.5625\" y=\"143.701171875\"/>");
-      ps.println("            <y:Point x=\"265.625\" y=\"143.701171875\"/>");
-      ps.println("          </y:Path>");
-      ps.println("          <y:LineStyle type=\"line\" width=\"1.0\" color=\"#000000\" />");
-      ps.println("          <y:Arrows source=\"none\" target=\"standard\"/>");
-
-      if (!e.getFullLabelKey().isEmpty()) {
-        String label = e.getFullLabelKey();
-        label = label.replaceAll("&", "&amp;");
-        label = label.replaceAll("<", "&lt;");
-        label = label.replaceAll(">", "&gt;");
-        label = label.replaceAll("'", "&apos;");
-        label = label.replaceAll("\"", "&quot;");
-
-        ps.println("          <y:EdgeLabel x=\"-148.25\" y=\"30.000000000000014\" width=\"169.0\" height=\"18.701171875\" "
-            + "visible=\"true\" alignment=\"center\" fontFamily=\"Dialog\" fontSize=\"12\" "
-            + "fontStyle=\"plain\" textColor=\"#000000\" modelName=\"free\" modelPosition=\"anywhere\" "
-            + "preferredPlacement=\"on_edge\" distance=\"2.0\" ratio=\"0.5\">" + label);
-        if (printIndex) {
-          ps.print("&#xA;INDEX=" + e.getIndexKey());
-        }
-        ps.println("</y:EdgeLabel>");
-      }
-
-      ps.println("          <y:BendStyle smoothed=\"false\"/>");
-      ps.println("        </y:PolyLineEdge>");
-      ps.println("      </data>");
-      ps.println("    </edge>");
-
+    try {
+      new GraphMLWriter(printIndex).write(getModel(), ps);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write the graph: " + e.getMessage(), e);
     }
-
-    ps.println("  </graph>");
-    ps.println("</graphml>");
-
   }
 }
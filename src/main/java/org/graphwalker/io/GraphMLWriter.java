@@ -0,0 +1,336 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+
+/**
+ * Writes a graph as GraphML, streaming the vertices and edges in one pass, without building the
+ * document in memory. The vertices and edges are written in order of their index, so the same graph
+ * is always written as the same bytes, and merged models can be diffed and cached.
+ */
+public class GraphMLWriter {
+
+  private static final String GRAPHML_NS = "http://graphml.graphdrawing.org/xmlns/graphml";
+  private static final String YWORKS_NS = "http://www.yworks.com/xml/graphml";
+  private static final String XSI_NS = "http://www.w3.org/2001/XMLSchema-instance";
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final Comparator<AbstractElement> BY_INDEX = new Comparator<AbstractElement>() {
+    @Override
+    public int compare(AbstractElement e1, AbstractElement e2) {
+      int order = e1.getIndexKey().compareTo(e2.getIndexKey());
+      if (order == 0) {
+        order = e1.getFullLabelKey().compareTo(e2.getFullLabelKey());
+      }
+      return order;
+    }
+  };
+
+  private final boolean printIndex;
+  private boolean gzip = false;
+
+  /**
+   * @param printIndex If true, the INDEX of every vertex and labeled edge is added to its label.
+   */
+  public GraphMLWriter(boolean printIndex) {
+    this.printIndex = printIndex;
+  }
+
+  public boolean isGzip() {
+    return gzip;
+  }
+
+  /**
+   * @param gzip If true, the output is compressed with gzip.
+   */
+  public void setGzip(boolean gzip) {
+    this.gzip = gzip;
+  }
+
+  /**
+   * Writes the graph to a file, which is overwritten.
+   */
+  public void write(Graph graph, File file) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      write(graph, out.getChannel());
+    } finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Writes the graph to a channel, through a buffer. The channel is not closed.
+   */
+  public void write(Graph graph, WritableByteChannel channel) throws IOException {
+    write(graph, Channels.newOutputStream(channel));
+  }
+
+  /**
+   * Writes the graph to a stream, through a buffer. The stream is flushed, but not closed.
+   */
+  public void write(Graph graph, OutputStream out) throws IOException {
+    GZIPOutputStream gzipStream = null;
+    OutputStream stream = out;
+    if (gzip) {
+      gzipStream = new GZIPOutputStream(stream, BUFFER_SIZE);
+      stream = gzipStream;
+    }
+    stream = new BufferedOutputStream(stream, BUFFER_SIZE);
+    try {
+      XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(stream, "UTF-8");
+      writeGraph(writer, graph);
+      writer.close();
+    } catch (XMLStreamException e) {
+      throw new IOException("Could not write the graph: " + e.getMessage(), e);
+    }
+    stream.flush();
+    if (gzipStream != null) {
+      gzipStream.finish();
+    }
+    out.flush();
+  }
+
+  private void writeGraph(XMLStreamWriter writer, Graph graph) throws XMLStreamException {
+    writer.writeStartDocument("UTF-8", "1.0");
+    writer.writeCharacters("\n");
+    writer.writeStartElement("graphml");
+    writer.writeDefaultNamespace(GRAPHML_NS);
+    writer.writeNamespace("xsi", XSI_NS);
+    writer.writeAttribute(XSI_NS, "schemaLocation", GRAPHML_NS + " http://www.yworks.com/xml/schema/graphml/1.0/ygraphml.xsd");
+    writer.writeNamespace("y", YWORKS_NS);
+    writeKey(writer, "d0", "node", "nodegraphics");
+    writeKey(writer, "d1", "edge", "edgegraphics");
+    newLine(writer, 1);
+    writer.writeStartElement("graph");
+    writer.writeAttribute("id", "G");
+    writer.writeAttribute("edgedefault", "directed");
+
+    // The ids are the positions of the elements in the file, and not their indices, since the
+    // indices are assigned again when the file is loaded.
+    List<Vertex> vertices = new ArrayList<Vertex>(graph.getVertices());
+    Collections.sort(vertices, BY_INDEX);
+    Map<Vertex, String> ids = new HashMap<Vertex, String>();
+    for (Vertex vertex : vertices) {
+      String id = "n" + ids.size();
+      ids.put(vertex, id);
+      writeVertex(writer, vertex, id);
+    }
+    List<Edge> edges = new ArrayList<Edge>(graph.getEdges());
+    Collections.sort(edges, BY_INDEX);
+    for (int i = 0; i < edges.size(); i++) {
+      Edge edge = edges.get(i);
+      writeEdge(writer, edge, String.valueOf(i), ids.get(graph.getSource(edge)), ids.get(graph.getDest(edge)));
+    }
+
+    newLine(writer, 1);
+    writer.writeEndElement();
+    newLine(writer, 0);
+    writer.writeEndElement();
+    writer.writeCharacters("\n");
+    writer.writeEndDocument();
+  }
+
+  private void writeKey(XMLStreamWriter writer, String id, String element, String type) throws XMLStreamException {
+    newLine(writer, 1);
+    writer.writeEmptyElement("key");
+    writer.writeAttribute("id", id);
+    writer.writeAttribute("for", element);
+    writer.writeAttribute("yfiles.type", type);
+  }
+
+  private void writeVertex(XMLStreamWriter writer, Vertex vertex, String id) throws XMLStreamException {
+    boolean image = !vertex.getImageKey().isEmpty();
+    newLine(writer, 2);
+    writer.writeStartElement("node");
+    writer.writeAttribute("id", id);
+    newLine(writer, 3);
+    writer.writeStartElement("data");
+    writer.writeAttribute("key", "d0");
+    newLine(writer, 4);
+    writer.writeStartElement(YWORKS_NS, image ? "ImageNode" : "ShapeNode");
+    newLine(writer, 5);
+    writer.writeEmptyElement(YWORKS_NS, "Geometry");
+    writer.writeAttribute("x", "241.875");
+    writer.writeAttribute("y", "158.701171875");
+    writer.writeAttribute("width", image ? String.valueOf(vertex.getWidth()) : "95.0");
+    writer.writeAttribute("height", image ? String.valueOf(vertex.getHeight()) : "30.0");
+    newLine(writer, 5);
+    writer.writeEmptyElement(YWORKS_NS, "Fill");
+    writer.writeAttribute("color", "#CCCCFF");
+    writer.writeAttribute("transparent", "false");
+    newLine(writer, 5);
+    writer.writeEmptyElement(YWORKS_NS, "BorderStyle");
+    writer.writeAttribute("type", "line");
+    writer.writeAttribute("width", "1.0");
+    writer.writeAttribute("color", "#000000");
+    newLine(writer, 5);
+    writer.writeStartElement(YWORKS_NS, "NodeLabel");
+    writer.writeAttribute("x", "1.5");
+    writer.writeAttribute("y", "5.6494140625");
+    writer.writeAttribute("width", "92.0");
+    writer.writeAttribute("height", "18.701171875");
+    writeLabelAttributes(writer);
+    writer.writeAttribute("modelName", "internal");
+    writer.writeAttribute("modelPosition", "c");
+    writer.writeAttribute("autoSizePolicy", "content");
+    writeLabel(writer, vertex);
+    writer.writeEndElement();
+    newLine(writer, 5);
+    if (image) {
+      writer.writeEmptyElement(YWORKS_NS, "Image");
+      writer.writeAttribute("href", vertex.getImageKey());
+    } else {
+      writer.writeEmptyElement(YWORKS_NS, "Shape");
+      writer.writeAttribute("type", "rectangle");
+    }
+    newLine(writer, 4);
+    writer.writeEndElement();
+    newLine(writer, 3);
+    writer.writeEndElement();
+    newLine(writer, 2);
+    writer.writeEndElement();
+  }
+
+  private void writeEdge(XMLStreamWriter writer, Edge edge, String id, String source, String target) throws XMLStreamException {
+    newLine(writer, 2);
+    writer.writeStartElement("edge");
+    writer.writeAttribute("id", id);
+    writer.writeAttribute("source", source);
+    writer.writeAttribute("target", target);
+    newLine(writer, 3);
+    writer.writeStartElement("data");
+    writer.writeAttribute("key", "d1");
+    newLine(writer, 4);
+    writer.writeStartElement(YWORKS_NS, "PolyLineEdge");
+    newLine(writer, 5);
+    writer.writeStartElement(YWORKS_NS, "Path");
+    writer.writeAttribute("sx", "-23.75");
+    writer.writeAttribute("sy", "15.0");
+    writer.writeAttribute("tx", "-23.75");
+    writer.writeAttribute("ty", "-15.0");
+    writePoint(writer, "273.3125", "95.0");
+    writePoint(writer, "209.5625", "95.0");
+    writePoint(writer, "209.5625", "143.701171875");
+    writePoint(writer, "265.625", "143.701171875");
+    newLine(writer, 5);
+    writer.writeEndElement();
+    newLine(writer, 5);
+    writer.writeEmptyElement(YWORKS_NS, "LineStyle");
+    writer.writeAttribute("type", "line");
+    writer.writeAttribute("width", "1.0");
+    writer.writeAttribute("color", "#000000");
+    newLine(writer, 5);
+    writer.writeEmptyElement(YWORKS_NS, "Arrows");
+    writer.writeAttribute("source", "none");
+    writer.writeAttribute("target", "standard");
+    if (!edge.getFullLabelKey().isEmpty()) {
+      newLine(writer, 5);
+      writer.writeStartElement(YWORKS_NS, "EdgeLabel");
+      writer.writeAttribute("x", "-148.25");
+      writer.writeAttribute("y", "30.000000000000014");
+      writer.writeAttribute("width", "169.0");
+      writer.writeAttribute("height", "18.701171875");
+      writeLabelAttributes(writer);
+      writer.writeAttribute("modelName", "free");
+      writer.writeAttribute("modelPosition", "anywhere");
+      writer.writeAttribute("preferredPlacement", "on_edge");
+      writer.writeAttribute("distance", "2.0");
+      writer.writeAttribute("ratio", "0.5");
+      writeLabel(writer, edge);
+      writer.writeEndElement();
+    }
+    newLine(writer, 5);
+    writer.writeEmptyElement(YWORKS_NS, "BendStyle");
+    writer.writeAttribute("smoothed", "false");
+    newLine(writer, 4);
+    writer.writeEndElement();
+    newLine(writer, 3);
+    writer.writeEndElement();
+    newLine(writer, 2);
+    writer.writeEndElement();
+  }
+
+  private void writeLabelAttributes(XMLStreamWriter writer) throws XMLStreamException {
+    writer.writeAttribute("visible", "true");
+    writer.writeAttribute("alignment", "center");
+    writer.writeAttribute("fontFamily", "Dialog");
+    writer.writeAttribute("fontSize", "12");
+    writer.writeAttribute("fontStyle", "plain");
+    writer.writeAttribute("textColor", "#000000");
+  }
+
+  private void writeLabel(XMLStreamWriter writer, AbstractElement element) throws XMLStreamException {
+    writer.writeCharacters(element.getFullLabelKey());
+    if (printIndex) {
+      writer.writeCharacters("\nINDEX=" + element.getIndexKey());
+    }
+  }
+
+  private void writePoint(XMLStreamWriter writer, String x, String y) throws XMLStreamException {
+    newLine(writer, 6);
+    writer.writeEmptyElement(YWORKS_NS, "Point");
+    writer.writeAttribute("x", x);
+    writer.writeAttribute("y", y);
+  }
+
+  private void newLine(XMLStreamWriter writer, int depth) throws XMLStreamException {
+    writer.writeCharacters(INDENTS[depth]);
+  }
+
+  private static final String[] INDENTS = new String[7];
+
+  static {
+    for (int i = 0; i < INDENTS.length; i++) {
+      StringBuilder indent = new StringBuilder("\n");
+      for (int j = 0; j < i; j++) {
+        indent.append("  ");
+      }
+      INDENTS[i] = indent.toString();
+    }
+  }
+}
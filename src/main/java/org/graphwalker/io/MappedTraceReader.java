@@ -0,0 +1,310 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.graphwalker.Util;
+import org.graphwalker.io.TraceReader.TraceRecord;
+
+/**
+ * A random access reader of an execution trace, written by {@link TraceWriter}. The file is memory
+ * mapped, so traces much larger than the heap can be read. When the reader is created, the trace is
+ * scanned once to build a sparse index, holding the file position and the time and data state of
+ * every {@link #INDEX_INTERVAL}th record. Any record can then be found by decoding at most that many
+ * records from the closest index entry, and the trace can be split into ranges that are scanned in
+ * parallel, see {@link #scan(RangeScanner, int)}.<br>
+ * Records are numbered from 0, in the same order as they are returned by {@link TraceReader}.
+ */
+public class MappedTraceReader {
+
+  public static final int INDEX_INTERVAL = 64 * 1024;
+
+  private static final int SEGMENT_BITS = 30;
+  private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+  /**
+   * Scans one range of the trace.
+   * 
+   * @param <T> The result of the scan of a range
+   */
+  public interface RangeScanner<T> {
+    /**
+     * Called once per range, possibly from several threads at the same time.
+     * 
+     * @param cursor The records of the range
+     * @return The result of the range
+     */
+    T scan(Cursor cursor) throws Exception;
+  }
+
+  /**
+   * Reads the records of a range of the trace, in order. To keep scans of huge traces cheap, the
+   * same {@link TraceRecord} object is returned for every record of the cursor.
+   */
+  public class Cursor extends TraceDecoder {
+    private long position;
+    private long index;
+    private final long endIndex;
+    private final TraceRecord record = new TraceRecord();
+
+    private Cursor(int entry, long endIndex) {
+      super(file, indexTimes[entry], indexData[entry]);
+      this.position = indexPositions[entry];
+      this.index = (long) entry * indexInterval;
+      this.endIndex = endIndex;
+    }
+
+    /**
+     * @return The next record, or null if the end of the range is reached. The record is reused by
+     *         the following call.
+     */
+    public TraceRecord next() {
+      if (index >= endIndex || !decode(record)) {
+        return null;
+      }
+      index++;
+      return record;
+    }
+
+    /**
+     * @return The number of the record that will be returned by the next call to {@link #next()}
+     */
+    public long getIndex() {
+      return index;
+    }
+
+    @Override
+    protected boolean hasMore() {
+      return position < length;
+    }
+
+    @Override
+    protected byte nextByte() {
+      return get(position++);
+    }
+
+    @Override
+    protected void nextBytes(byte[] bytes, int offset, int length) {
+      Util.AbortIf(position + length > MappedTraceReader.this.length, "Unexpected end of the execution trace '" + file + "'");
+      for (int i = 0; i < length; i++) {
+        bytes[offset + i] = get(position++);
+      }
+    }
+  }
+
+  private final File file;
+  private final RandomAccessFile randomAccessFile;
+  private final MappedByteBuffer[] segments;
+  private final long length;
+  private final long startTime;
+  private final int indexInterval;
+  private long[] indexPositions = new long[16];
+  private long[] indexTimes = new long[16];
+  private String[] indexData = new String[16];
+  private int indexSize = 0;
+  private long recordCount = 0;
+
+  public MappedTraceReader(File file) {
+    this(file, INDEX_INTERVAL);
+  }
+
+  /**
+   * @param file The trace
+   * @param indexInterval The number of records between the entries of the index
+   */
+  public MappedTraceReader(File file, int indexInterval) {
+    Util.AbortIf(indexInterval < 1, "The index interval must be at least 1");
+    this.file = file;
+    this.indexInterval = indexInterval;
+    try {
+      randomAccessFile = new RandomAccessFile(file, "r");
+      FileChannel channel = randomAccessFile.getChannel();
+      length = channel.size();
+      segments = new MappedByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i << SEGMENT_BITS;
+        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, length - start));
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not open '" + file + "'", e);
+    }
+
+    byte[] header = new byte[(int) Math.min(TraceDecoder.HEADER_SIZE, length)];
+    for (int i = 0; i < header.length; i++) {
+      header[i] = get(i);
+    }
+    startTime = TraceDecoder.readHeader(file, header);
+    buildIndex();
+  }
+
+  private void buildIndex() {
+    addIndexEntry(TraceDecoder.HEADER_SIZE, startTime, null);
+    Cursor cursor = new Cursor(0, Long.MAX_VALUE);
+    while (true) {
+      if (recordCount > 0 && recordCount % indexInterval == 0) {
+        addIndexEntry(cursor.position, cursor.getTime(), cursor.getData());
+      }
+      if (cursor.next() == null) {
+        break;
+      }
+      recordCount++;
+    }
+    if (recordCount > 0 && recordCount % indexInterval == 0) {
+      // The entry added for the record following the last one is not needed
+      indexSize--;
+    }
+  }
+
+  private void addIndexEntry(long position, long time, String data) {
+    if (indexSize == indexPositions.length) {
+      indexPositions = Arrays.copyOf(indexPositions, indexSize * 2);
+      indexTimes = Arrays.copyOf(indexTimes, indexSize * 2);
+      indexData = Arrays.copyOf(indexData, indexSize * 2);
+    }
+    indexPositions[indexSize] = position;
+    indexTimes[indexSize] = time;
+    indexData[indexSize] = data;
+    indexSize++;
+  }
+
+  private byte get(long position) {
+    return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1)));
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  public long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * @param fromIndex The number of the first record to read
+   * @return A cursor reading from the record to the end of the trace
+   */
+  public Cursor getCursor(long fromIndex) {
+    return getCursor(fromIndex, recordCount);
+  }
+
+  /**
+   * @param fromIndex The number of the first record to read
+   * @param toIndex The number of the record following the last record to read
+   * @return A cursor reading the records of the range
+   */
+  public Cursor getCursor(long fromIndex, long toIndex) {
+    Util.AbortIf(fromIndex < 0 || fromIndex > toIndex || toIndex > recordCount, "Invalid range of records: " + fromIndex + " - " + toIndex);
+    Cursor cursor = new Cursor((int) Math.min(fromIndex / indexInterval, indexSize - 1), toIndex);
+    while (cursor.getIndex() < fromIndex) {
+      cursor.next();
+    }
+    return cursor;
+  }
+
+  /**
+   * @param index The number of the record
+   * @return A new record
+   */
+  public TraceRecord getRecord(long index) {
+    Util.AbortIf(index < 0 || index >= recordCount, "There is no record " + index + " in '" + file + "'");
+    TraceRecord cursorRecord = getCursor(index, index + 1).next();
+    TraceRecord record = new TraceRecord();
+    record.kind = cursorRecord.kind;
+    record.id = cursorRecord.id;
+    record.time = cursorRecord.time;
+    record.data = cursorRecord.data;
+    record.requirement = cursorRecord.requirement;
+    record.passed = cursorRecord.passed;
+    return record;
+  }
+
+  /**
+   * Splits the trace into ranges, starting at entries of the index, and scans them in parallel.
+   * 
+   * @param scanner Scans each range
+   * @param numberOfThreads The number of threads to use
+   * @return The results of the ranges, in the order of the ranges in the trace
+   * @throws InterruptedException
+   */
+  public <T> List<T> scan(final RangeScanner<T> scanner, int numberOfThreads) throws InterruptedException {
+    Util.AbortIf(numberOfThreads < 1, "The number of threads must be at least 1");
+    int numberOfRanges = Math.max(1, Math.min(indexSize, numberOfThreads * 4));
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(numberOfThreads, numberOfRanges));
+    try {
+      List<Future<T>> futures = new ArrayList<Future<T>>();
+      for (int i = 0; i < numberOfRanges; i++) {
+        final long fromIndex = Math.min(recordCount, indexSize * (long) i / numberOfRanges * indexInterval);
+        final long toIndex = Math.min(recordCount, indexSize * (long) (i + 1) / numberOfRanges * indexInterval);
+        futures.add(executor.submit(new Callable<T>() {
+          @Override
+          public T call() throws Exception {
+            return scanner.scan(getCursor(fromIndex, toIndex));
+          }
+        }));
+      }
+      List<T> results = new ArrayList<T>();
+      for (Future<T> future : futures) {
+        try {
+          results.add(future.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+          }
+          throw new RuntimeException("The scan of '" + file + "' failed: " + e.getCause().getMessage(), e.getCause());
+        }
+      }
+      return results;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Closes the file. The mapped memory is released when the reader is garbage collected.
+   */
+  public void close() {
+    try {
+      randomAccessFile.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not close '" + file + "'", e);
+    }
+  }
+}
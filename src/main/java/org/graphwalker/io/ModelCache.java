@@ -0,0 +1,418 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.graphwalker.Util;
+import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+
+/**
+ * A folder of merged models, stored in a compact binary format, so a model does not have to be
+ * parsed and merged again when it is loaded from the same files.<br>
+ * A model is keyed by a hash of the paths and contents of its source files, see
+ * {@link #hash(File[])}, and is read by memory mapping its file. A cached model holds everything
+ * the GraphML parser sets: the keys, guards, actions, requirement tags and indices of all the
+ * vertices and edges, and their layout.
+ */
+public class ModelCache {
+
+  private static Logger logger = Util.setupLogger(ModelCache.class);
+
+  private static final int MAGIC = 0x47574d43; // "GWMC"
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".gwm";
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private static final int MERGE = 1;
+  private static final int NO_MERGE = 2;
+  private static final int BLOCKED = 4;
+  private static final int MERGED_MBT = 8;
+  private static final int SWITCH_MODEL = 16;
+  private static final int GRAPH_VERTEX = 32;
+
+  private final File folder;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * @param folder The folder holding the cached models. It is created when the first model is
+   *          written.
+   */
+  public ModelCache(File folder) {
+    this.folder = folder;
+  }
+
+  public File getFolder() {
+    return folder;
+  }
+
+  /**
+   * @return The number of models read from the cache
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return The number of models not found in the cache
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Calculates the key of a model, from the absolute paths and the contents of its source files.
+   * The paths are part of the key, since the elements of a model refer to the files they were read
+   * from.
+   * 
+   * @param files The source files, in the order they are loaded
+   * @return A SHA-1 hash, as a hex string
+   */
+  public static String hash(File[] files) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("SHA-1 is not available", e);
+    }
+    for (File file : files) {
+      digest.update(file.getAbsolutePath().getBytes(UTF8));
+      FileInputStream in = new FileInputStream(file);
+      try {
+        FileChannel channel = in.getChannel();
+        digest.update(ByteBuffer.allocate(8).putLong(channel.size()).array());
+        digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+      } finally {
+        in.close();
+      }
+    }
+    StringBuilder hex = new StringBuilder();
+    for (byte b : digest.digest()) {
+      hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return hex.toString();
+  }
+
+  private File getFile(String hash) {
+    return new File(folder, hash + SUFFIX);
+  }
+
+  /**
+   * Reads a model from the cache.
+   * 
+   * @return The model, or null if there is no valid model cached for the hash
+   */
+  public Graph read(String hash) {
+    File file = getFile(hash);
+    if (!file.isFile()) {
+      misses.incrementAndGet();
+      return null;
+    }
+    try {
+      FileInputStream in = new FileInputStream(file);
+      try {
+        FileChannel channel = in.getChannel();
+        Graph graph = decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), hash);
+        if (graph != null) {
+          logger.debug("Read the model " + hash + " from the cache: " + file);
+          hits.incrementAndGet();
+          return graph;
+        }
+        logger.warn("Ignoring the cached model, since it has another format or hash: " + file);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      logger.warn("Could not read the cached model: " + file + ", " + e.getMessage());
+    } catch (BufferUnderflowException e) {
+      logger.warn("Ignoring the cached model, since it is truncated: " + file);
+    } catch (RuntimeException e) {
+      logger.warn("Ignoring the cached model, since it is corrupt: " + file + ", " + e);
+    }
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Writes a model to the cache. The file is first written under a temporary name and then
+   * renamed, so other processes never read a partly written model.
+   */
+  public void write(String hash, Graph graph) throws IOException {
+    if (!folder.isDirectory() && !folder.mkdirs()) {
+      throw new IOException("Could not create the folder: " + folder);
+    }
+    File tmp = File.createTempFile(hash, ".tmp", folder);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+      try {
+        encode(out, graph, hash);
+      } finally {
+        out.close();
+      }
+      File file = getFile(hash);
+      if (!tmp.renameTo(file) && !(file.delete() && tmp.renameTo(file))) {
+        throw new IOException("Could not rename: " + tmp + " to: " + file);
+      }
+      logger.debug("Wrote the model " + hash + " to the cache: " + file);
+    } finally {
+      tmp.delete();
+    }
+  }
+
+  private void encode(DataOutputStream out, Graph graph, String hash) throws IOException {
+    List<Vertex> vertices = new ArrayList<Vertex>(graph.getVertices());
+    List<Edge> edges = new ArrayList<Edge>(graph.getEdges());
+
+    // All strings are written once, in a table, since the merged subgraphs repeat the same labels.
+    // Some keys, like the ids and images, may be null.
+    Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    addString(strings, hash);
+    addString(strings, graph.getFileKey());
+    addString(strings, graph.getLabelKey());
+    addString(strings, graph.getDescriptionKey());
+    for (Vertex vertex : vertices) {
+      addStrings(strings, vertex);
+      addString(strings, vertex.getMotherStartVertexKey());
+      addString(strings, vertex.getSubGraphStartVertexKey());
+    }
+    for (Edge edge : edges) {
+      addStrings(strings, edge);
+      addString(strings, edge.getGuardKey());
+    }
+
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(strings.size());
+    for (String string : strings.keySet()) {
+      if (string == null) {
+        out.writeInt(-1);
+      } else {
+        byte[] bytes = string.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+      }
+    }
+    out.writeInt(strings.get(hash));
+    out.writeInt(strings.get(graph.getFileKey()));
+    out.writeInt(strings.get(graph.getLabelKey()));
+    out.writeInt(strings.get(graph.getDescriptionKey()));
+
+    out.writeInt(vertices.size());
+    Map<Vertex, Integer> positions = new HashMap<Vertex, Integer>();
+    for (Vertex vertex : vertices) {
+      positions.put(vertex, positions.size());
+      writeElement(out, strings, vertex, (vertex.isSwitchModelKey() ? SWITCH_MODEL : 0) | (vertex.isGraphVertex() ? GRAPH_VERTEX : 0));
+      out.writeInt(strings.get(vertex.getMotherStartVertexKey()));
+      out.writeInt(strings.get(vertex.getSubGraphStartVertexKey()));
+      out.writeInt(vertex.getFillColor().getRGB());
+      writePoint(out, vertex.getLocation());
+      out.writeFloat(vertex.getWidth());
+      out.writeFloat(vertex.getHeight());
+    }
+
+    out.writeInt(edges.size());
+    for (Edge edge : edges) {
+      out.writeInt(positions.get(graph.getSource(edge)));
+      out.writeInt(positions.get(graph.getDest(edge)));
+      writeElement(out, strings, edge, 0);
+      out.writeInt(strings.get(edge.getGuardKey()));
+      out.writeFloat(edge.getWeightKey());
+      writePoint(out, edge.getLabelLocation());
+      out.writeFloat(edge.getLabelWidth());
+      out.writeFloat(edge.getLabelHeight());
+      writePoint(out, edge.getPathSourceLocation());
+      writePoint(out, edge.getPathTargetLocation());
+      out.writeInt(edge.getPathPoints().size());
+      for (Point2D point : edge.getPathPoints()) {
+        writePoint(out, point);
+      }
+    }
+  }
+
+  private Graph decode(MappedByteBuffer in, String hash) {
+    if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+      return null;
+    }
+    String[] strings = new String[count(in)];
+    for (int i = 0; i < strings.length; i++) {
+      int length = in.getInt();
+      if (length >= 0) {
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        strings[i] = new String(bytes, UTF8);
+      }
+    }
+    if (!hash.equals(strings[in.getInt()])) {
+      return null;
+    }
+    Graph graph = new Graph();
+    graph.setFileKey(strings[in.getInt()]);
+    graph.setLabelKey(strings[in.getInt()]);
+    graph.setDescriptionKey(strings[in.getInt()]);
+
+    Vertex[] vertices = new Vertex[count(in)];
+    for (int i = 0; i < vertices.length; i++) {
+      Vertex vertex = new Vertex();
+      int flags = readElement(in, strings, vertex);
+      vertex.setSwitchModelKey((flags & SWITCH_MODEL) != 0);
+      vertex.setGraphVertex((flags & GRAPH_VERTEX) != 0);
+      vertex.setMotherStartVertexKey(strings[in.getInt()]);
+      vertex.setSubGraphStartVertexKey(strings[in.getInt()]);
+      vertex.setFillColor(new Color(in.getInt(), true));
+      vertex.setLocation(readPoint(in));
+      vertex.setWidth(in.getFloat());
+      vertex.setHeight(in.getFloat());
+      vertices[i] = vertex;
+      graph.addVertex(vertex);
+    }
+
+    int edges = in.getInt();
+    for (int i = 0; i < edges; i++) {
+      Vertex source = vertices[in.getInt()];
+      Vertex dest = vertices[in.getInt()];
+      Edge edge = new Edge();
+      readElement(in, strings, edge);
+      edge.setGuardKey(strings[in.getInt()]);
+      edge.setWeightKey(in.getFloat());
+      edge.setLabelLocation(readPoint(in));
+      edge.setLabelWidth(in.getFloat());
+      edge.setLabelHeight(in.getFloat());
+      edge.setPathSourceLocation(readPoint(in));
+      edge.setPathTargetLocation(readPoint(in));
+      for (int points = in.getInt(); points > 0; points--) {
+        edge.setPathPoints(readPoint(in));
+      }
+      graph.addEdge(edge, source, dest);
+    }
+    return graph;
+  }
+
+  /**
+   * Reads a number of entries, each of which takes at least 4 bytes, so a corrupt file does not
+   * allocate huge arrays.
+   */
+  private int count(ByteBuffer in) {
+    int count = in.getInt();
+    if (count < 0 || count > in.remaining() / 4) {
+      throw new IllegalStateException("Invalid number of entries: " + count);
+    }
+    return count;
+  }
+
+  private void addString(Map<String, Integer> strings, String string) {
+    if (!strings.containsKey(string)) {
+      strings.put(string, strings.size());
+    }
+  }
+
+  private void addStrings(Map<String, Integer> strings, AbstractElement element) {
+    addString(strings, element.getLabelKey());
+    addString(strings, element.getFullLabelKey());
+    addString(strings, element.getReqTagKey());
+    addString(strings, element.getParameterKey());
+    addString(strings, element.getActionsKey());
+    addString(strings, element.getIdKey());
+    addString(strings, element.getFileKey());
+    addString(strings, element.getImageKey());
+    addString(strings, element.getManualInstructions());
+    addString(strings, element.getDescriptionKey());
+  }
+
+  private void writeElement(DataOutputStream out, Map<String, Integer> strings, AbstractElement element, int flags) throws IOException {
+    out.writeInt(strings.get(element.getLabelKey()));
+    out.writeInt(strings.get(element.getFullLabelKey()));
+    out.writeInt(strings.get(element.getReqTagKey()));
+    out.writeInt(strings.get(element.getParameterKey()));
+    out.writeInt(strings.get(element.getActionsKey()));
+    out.writeInt(strings.get(element.getIdKey()));
+    out.writeInt(strings.get(element.getFileKey()));
+    out.writeInt(strings.get(element.getImageKey()));
+    out.writeInt(strings.get(element.getManualInstructions()));
+    out.writeInt(strings.get(element.getDescriptionKey()));
+    out.writeInt(element.getIndexKey());
+    out.writeInt(element.getVisitedKey());
+    out.writeInt(element.getReqTagResult());
+    out.writeByte(flags | (element.isMergeKey() ? MERGE : 0) | (element.isNoMergeKey() ? NO_MERGE : 0) | (element.isBlockedKey() ? BLOCKED : 0)
+        | (element.isMergedMbtKey() ? MERGED_MBT : 0));
+  }
+
+  /**
+   * @return The flags of the element, including the ones of the vertex or edge
+   */
+  private int readElement(ByteBuffer in, String[] strings, AbstractElement element) {
+    element.setLabelKey(strings[in.getInt()]);
+    element.setFullLabelKey(strings[in.getInt()]);
+    element.setReqTagKey(strings[in.getInt()]);
+    element.setParameterKey(strings[in.getInt()]);
+    element.setActionsKey(strings[in.getInt()]);
+    element.setIdKey(strings[in.getInt()]);
+    element.setFileKey(strings[in.getInt()]);
+    element.setImageKey(strings[in.getInt()]);
+    element.setManualInstructions(strings[in.getInt()]);
+    element.setDesctiptionKey(strings[in.getInt()]);
+    element.setIndexKey(in.getInt());
+    element.setVisitedKey(in.getInt());
+    element.setReqTagResult(in.getInt());
+    int flags = in.get();
+    element.setMergeKey((flags & MERGE) != 0);
+    element.setNoMergeKey((flags & NO_MERGE) != 0);
+    element.setBlockedKey((flags & BLOCKED) != 0);
+    element.setMergedMbtKey((flags & MERGED_MBT) != 0);
+    return flags;
+  }
+
+  private void writePoint(DataOutputStream out, Point2D point) throws IOException {
+    out.writeFloat((float) point.getX());
+    out.writeFloat((float) point.getY());
+  }
+
+  private Point2D readPoint(ByteBuffer in) {
+    return new Point2D.Float(in.getFloat(), in.getFloat());
+  }
+}
@@ -0,0 +1,154 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.graphwalker.Util;
+import org.graphwalker.io.TraceReader.TraceRecord;
+
+/**
+ * Decodes the records of an execution trace, written by {@link TraceWriter}, from a source of bytes
+ * given by the subclass. Keeps the time and data state of the trace between the records.
+ */
+abstract class TraceDecoder {
+
+  /** The number of bytes of the header of a trace */
+  static final int HEADER_SIZE = TraceWriter.MAGIC.length + 9;
+
+  private final File file;
+  private long time;
+  private String data;
+
+  TraceDecoder(File file, long time, String data) {
+    this.file = file;
+    this.time = time;
+    this.data = data;
+  }
+
+  /**
+   * @return true if there are more bytes to decode
+   */
+  protected abstract boolean hasMore();
+
+  protected abstract byte nextByte();
+
+  protected abstract void nextBytes(byte[] bytes, int offset, int length);
+
+  long getTime() {
+    return time;
+  }
+
+  String getData() {
+    return data;
+  }
+
+  File getFile() {
+    return file;
+  }
+
+  /**
+   * Checks the header of the trace.
+   * 
+   * @return The start time of the trace
+   */
+  static long readHeader(File file, byte[] header) {
+    Util.AbortIf(header.length < HEADER_SIZE, "'" + file + "' is not an execution trace");
+    for (int i = 0; i < TraceWriter.MAGIC.length; i++) {
+      Util.AbortIf(header[i] != TraceWriter.MAGIC[i], "'" + file + "' is not an execution trace");
+    }
+    Util.AbortIf(header[TraceWriter.MAGIC.length] != TraceWriter.VERSION, "Unsupported version of the execution trace '" + file + "'");
+    long startTime = 0;
+    for (int i = TraceWriter.MAGIC.length + 1; i < HEADER_SIZE; i++) {
+      startTime = (startTime << 8) | (header[i] & 0xFF);
+    }
+    return startTime;
+  }
+
+  /**
+   * Decodes the next record. Data records are not returned, their data is set on the vertex record
+   * following them.
+   * 
+   * @param record The record to decode into
+   * @return false if the end of the trace is reached
+   */
+  boolean decode(TraceRecord record) {
+    while (true) {
+      if (!hasMore()) {
+        return false;
+      }
+      long head = getVarint();
+      int kind = (int) (head & 3);
+      long value = head >>> 2;
+      if (kind == TraceWriter.DATA) {
+        data = getString((int) value);
+        continue;
+      }
+      record.kind = kind;
+      record.id = -1;
+      record.data = null;
+      record.requirement = null;
+      record.passed = false;
+      if (kind == TraceWriter.REQUIREMENT) {
+        record.passed = (value == 1);
+        record.requirement = getString((int) getVarint());
+      } else {
+        record.id = (int) value;
+        time += getVarint();
+        if (kind == TraceWriter.VERTEX) {
+          record.data = data;
+        }
+      }
+      record.time = time;
+      return true;
+    }
+  }
+
+  private byte getByte() {
+    Util.AbortIf(!hasMore(), "Unexpected end of the execution trace '" + file + "'");
+    return nextByte();
+  }
+
+  private long getVarint() {
+    long value = 0;
+    for (int shift = 0;; shift += 7) {
+      byte b = getByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  private String getString(int length) {
+    byte[] bytes = new byte[length];
+    nextBytes(bytes, 0, length);
+    try {
+      return new String(bytes, "UTF-8");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
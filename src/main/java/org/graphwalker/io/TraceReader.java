@@ -0,0 +1,139 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.graphwalker.Util;
+
+/**
+ * Reads an execution trace written by {@link TraceWriter}, one record at a time.
+ * 
+ * @see MappedTraceReader
+ */
+public class TraceReader {
+
+  public static class TraceRecord {
+    /** {@link TraceWriter#EDGE}, {@link TraceWriter#VERTEX} or {@link TraceWriter#REQUIREMENT} */
+    public int kind;
+    /** The id of the edge or vertex in the compiled graph */
+    public int id = -1;
+    /** The time of the record in milliseconds */
+    public long time;
+    /** The data of the machine when a vertex was reached, or null if the machine has no data */
+    public String data = null;
+    public String requirement = null;
+    public boolean passed;
+  }
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private final long startTime;
+  private final TraceDecoder decoder;
+
+  public TraceReader(File file) {
+    this.file = file;
+    try {
+      channel = new FileInputStream(file).getChannel();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not open '" + file + "'", e);
+    }
+    buffer.flip();
+    byte[] header = new byte[Math.min(TraceDecoder.HEADER_SIZE, fill(TraceDecoder.HEADER_SIZE))];
+    buffer.get(header);
+    startTime = TraceDecoder.readHeader(file, header);
+    decoder = new TraceDecoder(file, startTime, null) {
+      @Override
+      protected boolean hasMore() {
+        return buffer.hasRemaining() || fill(1) > 0;
+      }
+
+      @Override
+      protected byte nextByte() {
+        return buffer.get();
+      }
+
+      @Override
+      protected void nextBytes(byte[] bytes, int offset, int length) {
+        int read = 0;
+        while (read < length) {
+          Util.AbortIf(!hasMore(), "Unexpected end of the execution trace '" + getFile() + "'");
+          int count = Math.min(length - read, buffer.remaining());
+          buffer.get(bytes, offset + read, count);
+          read += count;
+        }
+      }
+    };
+  }
+
+  public long getStartTime() {
+    return startTime;
+  }
+
+  /**
+   * @return The next record, or null if the end of the trace is reached. Data records are not
+   *         returned, their data is set on the vertex record following them.
+   */
+  public TraceRecord next() {
+    TraceRecord record = new TraceRecord();
+    return (decoder.decode(record) ? record : null);
+  }
+
+  public void close() {
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not close '" + file + "'", e);
+    }
+  }
+
+  /**
+   * Reads from the file until at least the given number of bytes is buffered, or the end of the
+   * file is reached.
+   * 
+   * @return The number of buffered bytes
+   */
+  private int fill(int bytes) {
+    if (buffer.remaining() >= bytes) {
+      return buffer.remaining();
+    }
+    buffer.compact();
+    try {
+      while (buffer.position() < bytes && channel.read(buffer) >= 0) {
+        // Keep reading
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not read '" + file + "'", e);
+    }
+    buffer.flip();
+    return buffer.remaining();
+  }
+}
@@ -0,0 +1,196 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.graphwalker.graph.CompiledGraph;
+
+/**
+ * Writes an execution trace, a compact binary alternative to the execution log. Elements are
+ * identified by their ids in the {@link CompiledGraph} of the model, so a trace can only be read
+ * together with the model it was written from.<br>
+ * The trace starts with the magic bytes <code>GWTR</code>, a version byte and the start time in
+ * milliseconds as 8 bytes. It is followed by records, each starting with a varint holding
+ * <code>(value &lt;&lt; 2) | kind</code>:
+ * <ul>
+ * <li>{@link #EDGE}: value is the edge id, followed by the time since the previous record as a
+ * varint.</li>
+ * <li>{@link #VERTEX}: value is the vertex id, followed by the time since the previous record as a
+ * varint.</li>
+ * <li>{@link #DATA}: value is the length of the UTF-8 encoded data string following it. Only
+ * written when the data differs from the data of the previous vertex, and always directly before
+ * the vertex record it belongs to.</li>
+ * <li>{@link #REQUIREMENT}: value is 1 for passed and 0 for failed, followed by the length of the
+ * UTF-8 encoded requirement as a varint, and the requirement.</li>
+ * </ul>
+ * Varints are written 7 bits at a time, least significant group first, with the high bit set on
+ * all bytes but the last.
+ */
+public class TraceWriter {
+
+  static final byte[] MAGIC = {'G', 'W', 'T', 'R'};
+  static final byte VERSION = 1;
+
+  public static final int EDGE = 0;
+  public static final int VERTEX = 1;
+  public static final int DATA = 2;
+  public static final int REQUIREMENT = 3;
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final File file;
+  private final FileChannel channel;
+  private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+  private long lastTime;
+  private String lastData = null;
+
+  public TraceWriter(File file) {
+    this.file = file;
+    try {
+      channel = new FileOutputStream(file).getChannel();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not create or open '" + file + "'", e);
+    }
+    lastTime = System.currentTimeMillis();
+    buffer.put(MAGIC);
+    buffer.put(VERSION);
+    buffer.putLong(lastTime);
+  }
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * @param edgeId The id of the walked edge in the compiled graph
+   */
+  public void writeEdge(int edgeId) {
+    ensureRemaining(20);
+    putVarint(((long) edgeId << 2) | EDGE);
+    putTime();
+  }
+
+  /**
+   * @param vertexId The id of the reached vertex in the compiled graph
+   * @param data The data of the machine, or null if it has no data
+   */
+  public void writeVertex(int vertexId, String data) {
+    if (data != null && !data.equals(lastData)) {
+      putString(DATA, data);
+      lastData = data;
+    }
+    ensureRemaining(20);
+    putVarint(((long) vertexId << 2) | VERTEX);
+    putTime();
+  }
+
+  /**
+   * @param requirement The requirement that got its verdict
+   * @param passed The verdict
+   */
+  public void writeRequirement(String requirement, boolean passed) {
+    ensureRemaining(10);
+    putVarint(((passed ? 1L : 0L) << 2) | REQUIREMENT);
+    putString(-1, requirement);
+  }
+
+  /**
+   * Writes the buffered records to the file.
+   */
+  public void flush() {
+    buffer.flip();
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write to '" + file + "'", e);
+    }
+    buffer.clear();
+  }
+
+  public void close() {
+    flush();
+    try {
+      channel.close();
+    } catch (IOException e) {
+      throw new RuntimeException("Could not close '" + file + "'", e);
+    }
+  }
+
+  private void ensureRemaining(int bytes) {
+    if (buffer.remaining() < bytes) {
+      flush();
+    }
+  }
+
+  private void putTime() {
+    long now = System.currentTimeMillis();
+    putVarint(Math.max(0, now - lastTime));
+    lastTime = Math.max(now, lastTime);
+  }
+
+  /**
+   * Writes the length of the string as a varint, as the value of a record of the kind if kind is
+   * not negative, followed by the UTF-8 bytes of the string.
+   */
+  private void putString(int kind, String string) {
+    byte[] bytes;
+    try {
+      bytes = string.getBytes("UTF-8");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    ensureRemaining(10);
+    putVarint(kind < 0 ? bytes.length : ((long) bytes.length << 2) | kind);
+    if (bytes.length > buffer.remaining()) {
+      flush();
+    }
+    if (bytes.length > buffer.remaining()) {
+      try {
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+        while (wrapped.hasRemaining()) {
+          channel.write(wrapped);
+        }
+      } catch (IOException e) {
+        throw new RuntimeException("Could not write to '" + file + "'", e);
+      }
+    } else {
+      buffer.put(bytes);
+    }
+  }
+
+  private void putVarint(long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+}
@@ -50,6 +50,7 @@ import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.exceptions.InvalidDataException;
 import org.graphwalker.filters.AccessableEdgeFilter;
 import org.graphwalker.graph.Edge;
+import org.graphwalker.statistics.MetricsRegistry;
 import org.json.simple.JSONObject;
 
 import bsh.EvalError;
@@ -118,15 +119,26 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
   @Override
   public Set<Edge> getCurrentOutEdges() throws FoundNoEdgeException {
     Set<Edge> retur = super.getCurrentOutEdges();
+    long start = System.nanoTime();
+    int evaluations = retur.size();
     for (Iterator<Edge> i = retur.iterator(); i.hasNext();) {
       Edge e = i.next();
-      if (!accessableFilter.acceptEdge(getModel(), e)) {
+      long guardStart = System.nanoTime();
+      boolean accessable = accessableFilter.acceptEdge(getModel(), e);
+      if (getMetrics() != null) {
+        getMetrics().recordLatency(MetricsRegistry.GUARD_LATENCY, e, System.nanoTime() - guardStart);
+      }
+      if (!accessable) {
         logger.debug("Not accessable: " + e + " from " + getCurrentVertexName());
         i.remove();
       } else {
         logger.debug("Accessable: " + e + " from " + getCurrentVertexName());
       }
     }
+    if (getMetrics() != null) {
+      getMetrics().add(MetricsRegistry.SCRIPT_TIME, System.nanoTime() - start);
+      getMetrics().add(MetricsRegistry.GUARD_EVALUATIONS, evaluations);
+    }
     if (retur.size() == 0) {
       throw new FoundNoEdgeException("Cul-De-Sac, dead end found in '" + getCurrentVertex() + "'");
     }
@@ -281,6 +293,7 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
     boolean hasWalkedEdge = super.walkEdge(edge);
     if (hasWalkedEdge) {
       if (hasAction(edge)) {
+        long start = System.nanoTime();
         PrintStream ps = System.out;
         System.setOut(Void);
 
@@ -309,6 +322,11 @@ public class ExtendedFiniteStateMachine extends FiniteStateMachine {
             System.setOut(ps);
           }
         }
+        if (getMetrics() != null) {
+          long elapsed = System.nanoTime() - start;
+          getMetrics().add(MetricsRegistry.SCRIPT_TIME, elapsed);
+          getMetrics().recordLatency(MetricsRegistry.ACTION_LATENCY, edge, elapsed);
+        }
       }
     }
     return hasWalkedEdge;
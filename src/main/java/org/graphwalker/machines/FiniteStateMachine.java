@@ -39,9 +39,11 @@ import org.graphwalker.Keywords;
 import org.graphwalker.Util;
 import org.graphwalker.exceptions.FoundNoEdgeException;
 import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.CompiledGraph;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
+import org.graphwalker.statistics.MetricsRegistry;
 
 /**
  * @author Johan Tejle
@@ -67,6 +69,7 @@ public class FiniteStateMachine {
   private final long start_time;
 
   private Hashtable<String, Integer> associatedRequirements;
+  private MetricsRegistry metrics = null;
 
   public int getNumOfCoveredEdges() {
     return numOfCoveredEdges;
@@ -118,6 +121,73 @@ public class FiniteStateMachine {
     start_time = System.currentTimeMillis();
   }
 
+  /**
+   * Creates a machine over a copy of the model of the given machine, in the same state. The current
+   * vertex, the last edge, the visits and the counters are the same, so the copy can be walked ahead
+   * without affecting the given machine.
+   */
+  public FiniteStateMachine(FiniteStateMachine machine) {
+    this();
+    CompiledGraph original = machine.getModel().getCompiledGraph();
+    model = new Graph(machine.getModel());
+    CompiledGraph copy = model.getCompiledGraph();
+    int vertexId = original.getVertexId(machine.getCurrentVertex());
+    Util.AbortIf(vertexId < 0, "The current vertex is not part of the model: " + machine.getCurrentVertex());
+    currentVertex = copy.getVertex(vertexId);
+    int edgeId = (machine.getLastEdge() == null ? -1 : original.getEdgeId(machine.getLastEdge()));
+    lastEdge = (edgeId < 0 ? null : copy.getEdge(edgeId));
+    weighted = machine.weighted;
+    numberOfEdgesTravesed = machine.numberOfEdgesTravesed;
+    numOfCoveredEdges = machine.numOfCoveredEdges;
+    numOfCoveredVertices = machine.numOfCoveredVertices;
+    if (machine.associatedRequirements != null) {
+      associatedRequirements = new Hashtable<String, Integer>(machine.associatedRequirements);
+    }
+  }
+
+  /**
+   * Brings a copy of a machine, created by {@link #FiniteStateMachine(FiniteStateMachine)}, to the
+   * state of the machine again, without copying its model. The model of the machine must not have
+   * been changed since the copy was created.
+   */
+  public void synchronize(FiniteStateMachine machine) {
+    CompiledGraph original = machine.getModel().getCompiledGraph();
+    CompiledGraph copy = model.getCompiledGraph();
+    Util.AbortIf(original.getVertexCount() != copy.getVertexCount() || original.getEdgeCount() != copy.getEdgeCount(),
+        "The model is not a copy of: " + machine.getModel());
+    for (int id = 0; id < copy.getVertexCount(); id++) {
+      copy.getVertex(id).setVisitedKey(original.getVertex(id).getVisitedKey());
+    }
+    for (int id = 0; id < copy.getEdgeCount(); id++) {
+      copy.getEdge(id).setVisitedKey(original.getEdge(id).getVisitedKey());
+    }
+    int vertexId = original.getVertexId(machine.getCurrentVertex());
+    Util.AbortIf(vertexId < 0, "The current vertex is not part of the model: " + machine.getCurrentVertex());
+    currentVertex = copy.getVertex(vertexId);
+    int edgeId = (machine.getLastEdge() == null ? -1 : original.getEdgeId(machine.getLastEdge()));
+    lastEdge = (edgeId < 0 ? null : copy.getEdge(edgeId));
+    edgeStack.clear();
+    vertexStore = null;
+    calculatingPath = false;
+    weighted = machine.weighted;
+    numberOfEdgesTravesed = machine.numberOfEdgesTravesed;
+    numOfCoveredEdges = machine.numOfCoveredEdges;
+    numOfCoveredVertices = machine.numOfCoveredVertices;
+    associatedRequirements = (machine.associatedRequirements == null ? null : new Hashtable<String, Integer>(machine.associatedRequirements));
+  }
+
+  public MetricsRegistry getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @param metrics The registry where the machine counts its guard evaluations and script time, or
+   *        null. Copies of the machine do not share the registry.
+   */
+  public void setMetrics(MetricsRegistry metrics) {
+    this.metrics = metrics;
+  }
+
   public void setModel(Graph model) {
     reset();
     this.model = model;
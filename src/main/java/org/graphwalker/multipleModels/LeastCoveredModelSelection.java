@@ -0,0 +1,51 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+
+package org.graphwalker.multipleModels;
+
+import java.util.List;
+
+import org.graphwalker.ModelBasedTesting;
+
+/**
+ * Selects the candidate with the lowest edge coverage. Ties are broken by the order of the
+ * candidates.
+ */
+public class LeastCoveredModelSelection implements ModelSelectionPolicy {
+
+  @Override
+  public int select(List<ModelBasedTesting> candidates) {
+    int selected = 0;
+    double lowest = Double.MAX_VALUE;
+    for (int i = 0; i < candidates.size(); i++) {
+      int[] statistics = candidates.get(i).getMachine().getStatistics();
+      double coverage = (statistics[0] == 0 ? 1 : statistics[1] / (double) statistics[0]);
+      if (coverage < lowest) {
+        lowest = coverage;
+        selected = i;
+      }
+    }
+    return selected;
+  }
+}
@@ -21,7 +21,11 @@
 package org.graphwalker.multipleModels;
 
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 
 import org.apache.log4j.Logger;
 import org.graphwalker.Keywords;
@@ -31,6 +35,7 @@ import org.graphwalker.WebRenderer;
 import org.graphwalker.conditions.NeverCondition;
 import org.graphwalker.generators.RandomPathGenerator;
 import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
 
 /**
  * The ModelHandler handles multiple models. The basic workflow using this class is:
@@ -63,9 +68,16 @@ public class ModelHandler {
 
   static Logger logger = Util.setupLogger(ModelHandler.class);
   ArrayList<ModelRunnable> models = new ArrayList<ModelRunnable>();
-  static private Random random = new Random();
+  private ModelSelectionPolicy selectionPolicy = new RandomModelSelection();
   private String currentVertex;
   private WebRenderer webdriver = null;
+  private final Object stateLock = new Object();
+  private long stateVersion = 0;
+  private boolean cooperative = false;
+  private long modelSequence = 0;
+  private final HashMap<String, ArrayList<ModelRunnable>> modelsByGraph = new HashMap<String, ArrayList<ModelRunnable>>();
+  private final HashMap<String, LinkedHashSet<ModelRunnable>> modelsByVertex = new HashMap<String, LinkedHashSet<ModelRunnable>>();
+  private final IdentityHashMap<ModelBasedTesting, ModelRunnable> modelsByMbt = new IdentityHashMap<ModelBasedTesting, ModelRunnable>();
 
   private static class ModelRunnable implements Runnable {
 
@@ -74,9 +86,15 @@ public class ModelHandler {
     private Object modelAPI;
     private boolean executionRestarted = false;
     private Exception thrownException = null;
+    private volatile boolean active = false;
+    private boolean handedOver = false;
+    private final long sequence;
+    private String indexedGraph = null;
+    private String indexedVertex = null;
 
-    public ModelRunnable(String name, ModelAPI modelAPI) {
+    public ModelRunnable(String name, ModelAPI modelAPI, long sequence) {
       this.name = name;
+      this.sequence = sequence;
       this.mbt = modelAPI.getMbt();
       this.modelAPI = modelAPI;
     }
@@ -89,9 +107,62 @@ public class ModelHandler {
       } catch (Exception e) {
         thrownException = e;
         Util.logStackTraceToError(e);
+      } finally {
+        active = false;
+        if (mbt.getMultiModelHandler() != null) {
+          mbt.getMultiModelHandler().stateChanged(mbt);
+        }
+      }
+    }
+
+    /**
+     * Runs the model on the current thread, until it is suspended at a handoff vertex, or its
+     * execution has finished.
+     */
+    public void runUntilHandoff() {
+      try {
+        if (!mbt.isSuspended()) {
+          logger.debug("Will start executing the model: " + this.mbt.getGraph());
+        }
+        mbt.executeUntilHandoff(modelAPI);
+      } catch (Exception e) {
+        thrownException = e;
+        Util.logStackTraceToError(e);
       }
     }
 
+    /**
+     * Starts executing the model in a thread of its own.
+     */
+    public void start() {
+      active = true;
+      handedOver = false;
+      new Thread(this, name).start();
+    }
+
+    /**
+     * @return True if the model is suspended, or has finished executing in a thread of its own, and
+     *         the execution has not yet been handed over to another model.
+     */
+    public boolean isWaitingForHandOver() {
+      return !handedOver && (mbt.isSuspended() || (!active && !mbt.hasNotStartedExecution()));
+    }
+
+    /**
+     * @return True if the model is executing in a thread of its own, and is not suspended.
+     */
+    public boolean isBusy() {
+      return active && !mbt.isSuspended();
+    }
+
+    public boolean isHandedOver() {
+      return handedOver;
+    }
+
+    public void setHandedOver(boolean handedOver) {
+      this.handedOver = handedOver;
+    }
+
     public String getName() {
       return name;
     }
@@ -125,6 +196,26 @@ public class ModelHandler {
     return models;
   }
 
+  /**
+   * @return True if the models are executed cooperatively on the calling thread.
+   */
+  public boolean isCooperative() {
+    return cooperative;
+  }
+
+  /**
+   * Sets whether the models are executed cooperatively. Then all models are executed on the thread
+   * calling {@link #execute(String)}, instead of one thread per model. A model runs until it is
+   * suspended at a {@link Keywords#SWITCH_MODEL SWITCH_MODEL} or {@link Keywords#GRAPH_VERTEX
+   * GRAPH_VERTEX} vertex, and then the execution is handed over to the next model. A suspended
+   * model does not hold any thread, so any number of models can be executed.
+   * 
+   * @param cooperative
+   */
+  public void setCooperative(boolean cooperative) {
+    this.cooperative = cooperative;
+  }
+
   /**
    * Adds a model to the handler.
    * 
@@ -147,7 +238,9 @@ public class ModelHandler {
     }
     logger.debug("Adding the model: " + Integer.toHexString(System.identityHashCode(modelAPI.getMbt())) + ", " + modelAPI.getMbt().getGraph());
     modelAPI.getMbt().setMultiModelHandler(this);
-    models.add(new ModelRunnable(name, modelAPI));
+    ModelRunnable model = new ModelRunnable(name, modelAPI, modelSequence++);
+    models.add(model);
+    index(model);
   }
 
   /**
@@ -156,7 +249,9 @@ public class ModelHandler {
    * @param model Removes the specified model from the handler.
    */
   public void remove(ModelRunnable model) {
-    models.remove(model);
+    if (models.remove(model)) {
+      unindex(model);
+    }
   }
 
   /**
@@ -165,7 +260,21 @@ public class ModelHandler {
    * @param index Removes the specified model by index from the handler.
    */
   public void remove(long index) {
-    models.remove((int) index);
+    unindex(models.remove((int) index));
+  }
+
+  public ModelSelectionPolicy getSelectionPolicy() {
+    return selectionPolicy;
+  }
+
+  /**
+   * Sets how the model to hand over the execution to is selected, when more than one model matches
+   * the handoff vertex. The default is {@link RandomModelSelection}.
+   * 
+   * @param selectionPolicy
+   */
+  public void setSelectionPolicy(ModelSelectionPolicy selectionPolicy) {
+    this.selectionPolicy = selectionPolicy;
   }
 
   /**
@@ -187,9 +296,13 @@ public class ModelHandler {
 
     ModelRunnable model = getModel(name);
 
+    if (cooperative) {
+      executeCooperatively(model);
+      return;
+    }
+
     // Start running the first model
-    Thread t = new Thread(model);
-    t.start();
+    model.start();
 
     // Enter main loop
     while (true) {
@@ -197,8 +310,10 @@ public class ModelHandler {
 
       // As long as we have any running model, let them run until finished or
       // paused.
+      long version = getStateVersion();
       while (isAnyModelRunning()) {
-        Thread.sleep(10);
+        waitForStateChange(version);
+        version = getStateVersion();
       }
       logger.debug("No model is running.");
 
@@ -208,31 +323,166 @@ public class ModelHandler {
       }
       logger.debug("Not all models has reached their desired stop conditions.");
 
-      // Now, find models with matching vertex name.
-      // If the model is paused, the current vertex is matched.
-      // If the model is not started, the graph name is matched.
-      ArrayList<ModelRunnable> pausedAndNotStartedModels = getModelMatchingCurrentVertex();
-      if (pausedAndNotStartedModels.isEmpty()) {
-        logger.debug("Did not find any models, matching the current vertex: " + currentVertex);
-        logger.debug(getStatistics());
+      model = selectNextModel();
+      if (model == null) {
         break;
       }
 
       // Run the model, but check for it's state. The model is either
       // suspended or not started.
-      int selectModel = random.nextInt(pausedAndNotStartedModels.size());
-      model = pausedAndNotStartedModels.get(selectModel);
-      logger.debug("Number of models to select from: " + pausedAndNotStartedModels.size());
-      logger.debug("Selecting model(" + selectModel + ") " + model.getName());
       if (model.getMbt().isSuspended()) {
         model.getMbt().resume();
       } else {
-        t = new Thread(model);
-        t.start();
+        model.start();
       }
     }
   }
 
+  /**
+   * Executes the models on the current thread, one at a time, handing over the execution at the
+   * handoff vertices.
+   * 
+   * @param model The model which will start the execution.
+   * @throws InterruptedException
+   */
+  private void executeCooperatively(ModelRunnable model) throws InterruptedException {
+    while (true) {
+      model.runUntilHandoff();
+      check4Crash(model);
+
+      // If all models are finished, then exit
+      if (isAllModelsDone()) {
+        break;
+      }
+      logger.debug("Not all models has reached their desired stop conditions.");
+
+      model = selectNextModel();
+      if (model == null) {
+        break;
+      }
+    }
+  }
+
+  /**
+   * Selects, by random, one of the models matching the current vertex.
+   * 
+   * @return The selected model, or null if no model matches the current vertex.
+   * @throws InterruptedException
+   */
+  private ModelRunnable selectNextModel() throws InterruptedException {
+    // Now, find models with matching vertex name.
+    // If the model is paused, the current vertex is matched.
+    // If the model is not started, the graph name is matched.
+    ArrayList<ModelRunnable> pausedAndNotStartedModels = getModelMatchingCurrentVertex();
+    if (pausedAndNotStartedModels.isEmpty()) {
+      logger.debug("Did not find any models, matching the current vertex: " + currentVertex);
+      logger.debug(getStatistics());
+      return null;
+    }
+
+    int selectModel = select(pausedAndNotStartedModels);
+    ModelRunnable model = pausedAndNotStartedModels.get(selectModel);
+    logger.debug("Number of models to select from: " + pausedAndNotStartedModels.size());
+    logger.debug("Selecting model(" + selectModel + ") " + model.getName());
+    return model;
+  }
+
+  /**
+   * Starts executing the models concurrently, each in a thread of its own. The execution is only
+   * serialized at the handoff vertices: when a model is suspended at a
+   * {@link Keywords#SWITCH_MODEL SWITCH_MODEL} or {@link Keywords#GRAPH_VERTEX GRAPH_VERTEX}
+   * vertex, a model matching the vertex is started or resumed, while the other models keep
+   * executing. The execution is finished when no model is executing, and no suspended model can be
+   * handed over to any other model.
+   * 
+   * @param names The logical names of the independent models which will start the execution.
+   * @throws InterruptedException
+   */
+  public void executeConcurrently(String... names) throws InterruptedException {
+    for (String name : names) {
+      if (!hasModel(name)) {
+        throw new IllegalArgumentException("The model name " + name + " does not exist in the model handler. Have you forgotten to add it?");
+      }
+    }
+
+    // All models are set and we are ready to start the websocket.
+    if (webdriver != null) {
+      webdriver.startup();
+    }
+
+    for (String name : names) {
+      getModel(name).start();
+    }
+
+    while (true) {
+      long version = getStateVersion();
+      boolean busy = isAnyModelBusy();
+
+      // If no model is executing, and all models are finished, then exit
+      if (!busy && isAllModelsDone()) {
+        break;
+      }
+
+      boolean handedOver = false;
+      for (ModelRunnable model : models) {
+        if (model.isWaitingForHandOver()) {
+          handedOver |= handOver(model);
+        }
+      }
+      if (handedOver) {
+        continue;
+      }
+      if (!busy) {
+        logger.debug("No model is executing, and no model can be handed over to.");
+        logger.debug(getStatistics());
+        break;
+      }
+      waitForStateChange(version);
+    }
+  }
+
+  /**
+   * Hands over the execution from a model suspended at a handoff vertex, or a model which has
+   * finished its execution, to a model matching the vertex, which is not executing.
+   * 
+   * @param model The suspended or finished model
+   * @return True if the execution was handed over, false if there was no model to hand over to.
+   * @throws InterruptedException
+   */
+  private boolean handOver(ModelRunnable model) throws InterruptedException {
+    String vertex = model.getMbt().getCurrentVertex().getLabelKey();
+    ArrayList<ModelRunnable> pausedAndNotStartedModels = getModelMatchingVertex(vertex, true);
+    if (pausedAndNotStartedModels.isEmpty()) {
+      logger.debug("Did not find any models, matching the vertex: " + vertex + ", of model: " + model.getName());
+      return false;
+    }
+
+    model.setHandedOver(true);
+    int selectModel = select(pausedAndNotStartedModels);
+    ModelRunnable nextModel = pausedAndNotStartedModels.get(selectModel);
+    logger.debug("Handing over from model: " + model.getName() + ", to model(" + selectModel + ") " + nextModel.getName());
+    if (nextModel.getMbt().isSuspended()) {
+      nextModel.setHandedOver(false);
+      nextModel.getMbt().resume();
+    } else {
+      nextModel.start();
+    }
+    return true;
+  }
+
+  /**
+   * @return True if any model is executing in a thread of its own, and is not suspended.
+   */
+  private boolean isAnyModelBusy() {
+    for (ModelRunnable model : models) {
+      check4Crash(model);
+      if (model.isBusy()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   /**
    * Wait for the model to enter a running, paused or stopped state
    * 
@@ -241,6 +491,7 @@ public class ModelHandler {
    */
   private void waitForModelToDoSomething(ModelRunnable model) throws InterruptedException {
     while (true) {
+      long version = getStateVersion();
       check4Crash(model);
       if (model.getMbt().isRunning()) {
         break;
@@ -249,7 +500,150 @@ public class ModelHandler {
       } else if (!model.getMbt().hasNextStep()) {
         break;
       }
-      Thread.sleep(10);
+      waitForStateChange(version);
+    }
+  }
+
+  private int select(ArrayList<ModelRunnable> candidates) {
+    ArrayList<ModelBasedTesting> mbts = new ArrayList<ModelBasedTesting>(candidates.size());
+    for (ModelRunnable model : candidates) {
+      mbts.add(model.getMbt());
+    }
+    return selectionPolicy.select(mbts);
+  }
+
+  /**
+   * Tells the handler that one of its models has started, been suspended, resumed, stopped, has
+   * crashed or has had its current vertex changed.
+   * 
+   * @param mbt The model
+   */
+  public void stateChanged(ModelBasedTesting mbt) {
+    ModelRunnable model;
+    synchronized (stateLock) {
+      model = modelsByMbt.get(mbt);
+    }
+    if (model != null) {
+      indexCurrentVertex(model);
+    }
+    synchronized (stateLock) {
+      stateVersion++;
+      stateLock.notifyAll();
+    }
+  }
+
+  /**
+   * Adds the model to the indexes of graph labels and current vertex labels, used to find the
+   * models matching a handoff vertex.
+   */
+  private void index(ModelRunnable model) {
+    synchronized (stateLock) {
+      modelsByMbt.put(model.getMbt(), model);
+      model.indexedGraph = model.getMbt().getGraph().getLabelKey();
+      ArrayList<ModelRunnable> graphModels = modelsByGraph.get(model.indexedGraph);
+      if (graphModels == null) {
+        graphModels = new ArrayList<ModelRunnable>();
+        modelsByGraph.put(model.indexedGraph, graphModels);
+      }
+      graphModels.add(model);
+    }
+    indexCurrentVertex(model);
+  }
+
+  private void unindex(ModelRunnable model) {
+    synchronized (stateLock) {
+      modelsByMbt.remove(model.getMbt());
+      ArrayList<ModelRunnable> graphModels = modelsByGraph.get(model.indexedGraph);
+      graphModels.remove(model);
+      if (graphModels.isEmpty()) {
+        modelsByGraph.remove(model.indexedGraph);
+      }
+      removeIndexedVertex(model);
+    }
+  }
+
+  /**
+   * Moves the model to the index entry of its current vertex label. The label is read before the
+   * index lock is taken, so the model is never locked while holding it.
+   */
+  private void indexCurrentVertex(ModelRunnable model) {
+    Vertex vertex = model.getMbt().getCurrentVertex();
+    String label = (vertex == null ? null : vertex.getLabelKey());
+    synchronized (stateLock) {
+      if (label != null && label.equals(model.indexedVertex)) {
+        return;
+      }
+      removeIndexedVertex(model);
+      model.indexedVertex = label;
+      if (label != null) {
+        LinkedHashSet<ModelRunnable> vertexModels = modelsByVertex.get(label);
+        if (vertexModels == null) {
+          vertexModels = new LinkedHashSet<ModelRunnable>();
+          modelsByVertex.put(label, vertexModels);
+        }
+        vertexModels.add(model);
+      }
+    }
+  }
+
+  private void removeIndexedVertex(ModelRunnable model) {
+    if (model.indexedVertex == null) {
+      return;
+    }
+    LinkedHashSet<ModelRunnable> vertexModels = modelsByVertex.get(model.indexedVertex);
+    vertexModels.remove(model);
+    if (vertexModels.isEmpty()) {
+      modelsByVertex.remove(model.indexedVertex);
+    }
+    model.indexedVertex = null;
+  }
+
+  /**
+   * @return The models with a graph label or current vertex label matching the vertex, in the order
+   *         they were added to the handler.
+   */
+  private ArrayList<ModelRunnable> getIndexedModels(String vertex) {
+    ArrayList<ModelRunnable> indexed = new ArrayList<ModelRunnable>();
+    synchronized (stateLock) {
+      ArrayList<ModelRunnable> graphModels = modelsByGraph.get(vertex);
+      if (graphModels != null) {
+        indexed.addAll(graphModels);
+      }
+      LinkedHashSet<ModelRunnable> vertexModels = modelsByVertex.get(vertex);
+      if (vertexModels != null) {
+        for (ModelRunnable model : vertexModels) {
+          if (!indexed.contains(model)) {
+            indexed.add(model);
+          }
+        }
+      }
+    }
+    Collections.sort(indexed, new Comparator<ModelRunnable>() {
+      @Override
+      public int compare(ModelRunnable arg0, ModelRunnable arg1) {
+        return (arg0.sequence < arg1.sequence ? -1 : (arg0.sequence == arg1.sequence ? 0 : 1));
+      }
+    });
+    return indexed;
+  }
+
+  private long getStateVersion() {
+    synchronized (stateLock) {
+      return stateVersion;
+    }
+  }
+
+  /**
+   * Waits until any model has changed its state, after the version was read.
+   * 
+   * @param version The state version, read before the models were examined.
+   * @throws InterruptedException
+   */
+  private void waitForStateChange(long version) throws InterruptedException {
+    synchronized (stateLock) {
+      while (stateVersion == version) {
+        stateLock.wait();
+      }
     }
   }
 
@@ -261,9 +655,24 @@ public class ModelHandler {
    * @return an array of models that matches
    */
   private ArrayList<ModelRunnable> getModelMatchingCurrentVertex() {
+    return getModelMatchingVertex(currentVertex, false);
+  }
+
+  /**
+   * Searches for any model with matching vertex name. If the model is paused, the current vertex is
+   * matched. If the model is not started, the graph name is matched.
+   * 
+   * @param currentVertex The vertex to match
+   * @param skipBusy If true, models executing in a thread of their own are not matched.
+   * @return an array of models that matches
+   */
+  private ArrayList<ModelRunnable> getModelMatchingVertex(String currentVertex, boolean skipBusy) {
     logger.debug("Looking for paused or not started model matching current vertex: " + currentVertex);
     ArrayList<ModelRunnable> array = new ArrayList<ModelRunnable>();
-    for (ModelRunnable model : models) {
+    for (ModelRunnable model : getIndexedModels(currentVertex)) {
+      if (skipBusy && model.isBusy()) {
+        continue;
+      }
       logger.debug("Examining model: " + model.getName());
       logger.debug("  Current vertex of graph: " + model.getMbt().getCurrentVertex());
 
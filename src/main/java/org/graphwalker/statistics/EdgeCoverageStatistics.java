@@ -55,17 +55,7 @@ public class EdgeCoverageStatistics extends Statistics {
    */
   @Override
   public void addProgress(AbstractElement element) {
-    if (element instanceof Edge) usedEdges.add(element.toString());
-  }
-
-  /*
-   * (non-Javadoc)
-   * 
-   * @see org.graphwalker.statistics.Statistics#getCurrent()
-   */
-  @Override
-  public int getCurrent() {
-    return usedEdges.size();
+    if (element instanceof Edge && usedEdges.add(element.toString())) covered();
   }
 
   /*
@@ -24,80 +24,78 @@
 package org.graphwalker.statistics;
 
 import java.util.HashSet;
-import java.util.Stack;
 
+import org.graphwalker.Util;
 import org.graphwalker.graph.AbstractElement;
+import org.graphwalker.graph.CompiledGraph;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 
 /**
+ * Counts the covered sequences of edges of a given length. The sequences are keyed by the ids of
+ * their edges in the {@link CompiledGraph} of the model, packed into a long when they fit, and the
+ * last edges walked are kept in a ring buffer. The number of possible sequences is counted without
+ * enumerating them: the number of sequences ending with an edge is the sum of the sequences, one
+ * edge shorter, ending with the in edges of its source vertex. That sum is computed once per vertex
+ * and step, so counting takes O(length * (V + E)).
+ * 
  * @author Johan Tejle
  * 
  */
 public class EdgeSequenceCoverageStatistics extends Statistics {
 
-  private HashSet<String> usedSequences;
-  private HashSet<String> allSequences;
-  private Stack<AbstractElement> pathHistory;
+  private CompiledGraph compiledGraph;
+  private LongHashSet usedPackedSequences;
+  private HashSet<Object> usedSequences;
+  private int max;
   private int length;
+  private int[] window;
+  private int windowPosition = 0;
+  private int windowSize = 0;
+  private int[] sequence;
 
   /**
    * 
    * @param model
    * @param sequenceLength
    */
-  @SuppressWarnings("unchecked")
   public EdgeSequenceCoverageStatistics(Graph model, int sequenceLength) {
+    Util.AbortIf(sequenceLength < 1, "The sequence length must be at least 1");
     this.length = sequenceLength;
-    usedSequences = new HashSet<String>();
-    allSequences = new HashSet<String>();
-    pathHistory = new Stack<AbstractElement>();
-
-    Stack<Edge>[] possibilities = new Stack[sequenceLength];
-    for (int i = 0; i < sequenceLength; i++) {
-      possibilities[i] = new Stack<Edge>();
-    }
-    possibilities[0].addAll(model.getEdges());
-    while (possibilities[0].size() > 0) {
-      for (int i = 0; i < sequenceLength - 1; i++) {
-        if (possibilities[i].size() == 0) return;
-        if (possibilities[i + 1].size() == 0) possibilities[i + 1].addAll(model.getOutEdges(model.getDest(possibilities[i].peek())));
-      }
-      while (possibilities[sequenceLength - 1].size() > 0) {
-        allSequences.add(getSequenceName(possibilities));
-        possibilities[sequenceLength - 1].pop();
-      }
-      for (int i = sequenceLength - 1; i > 0; i--) {
-        if (possibilities[i].size() == 0) {
-          possibilities[i - 1].pop();
-        }
-      }
-    }
+    compiledGraph = model.getCompiledGraph();
+    usedPackedSequences = new LongHashSet();
+    usedSequences = new HashSet<Object>();
+    window = new int[sequenceLength];
+    sequence = new int[sequenceLength];
+    max = countSequences();
   }
 
   /**
-   * @param possibilities
-   * @return
+   * @return the number of possible sequences, or Integer.MAX_VALUE if there are more than that
    */
-  private String getSequenceName(Stack<Edge>[] possibilities) {
-    StringBuilder stringBuilder = new StringBuilder();
-    for (Stack<Edge> possibility : possibilities) {
-      stringBuilder.append(possibility.peek().hashCode());
-      stringBuilder.append(" ");
+  private int countSequences() {
+    long[] counts = new long[compiledGraph.getEdgeCount()];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = 1;
     }
-    return stringBuilder.toString().trim();
-  }
-
-  /**
-   * @return
-   */
-  private String getCurrentSequenceName() {
-    StringBuilder stringBuilder = new StringBuilder();
-    for (int i = 0; i < pathHistory.size(); i++) {
-      stringBuilder.append(pathHistory.elementAt(i).hashCode());
-      stringBuilder.append(" ");
+    long[] sumIn = new long[compiledGraph.getVertexCount()];
+    for (int step = 1; step < length; step++) {
+      for (int vertex = 0; vertex < sumIn.length; vertex++) {
+        long sum = 0;
+        for (int inEdge : compiledGraph.getInEdges(vertex)) {
+          sum = Math.min(Integer.MAX_VALUE, sum + counts[inEdge]);
+        }
+        sumIn[vertex] = sum;
+      }
+      for (int edge = 0; edge < counts.length; edge++) {
+        counts[edge] = sumIn[compiledGraph.getSource(edge)];
+      }
+    }
+    long sum = 0;
+    for (long count : counts) {
+      sum = Math.min(Integer.MAX_VALUE, sum + count);
     }
-    return stringBuilder.toString().trim();
+    return (int) sum;
   }
 
   /*
@@ -108,25 +106,34 @@ public class EdgeSequenceCoverageStatistics extends Statistics {
    */
   @Override
   public void addProgress(AbstractElement element) {
-    if (element instanceof Edge) {
-      pathHistory.add(element);
+    if (!(element instanceof Edge)) {
+      return;
     }
-    if (pathHistory.size() > this.length) {
-      pathHistory.remove(0);
+    int edgeId = compiledGraph.getEdgeId((Edge) element);
+    if (edgeId < 0) {
+      // Not an edge of the model, no sequence can pass it
+      windowSize = 0;
+      return;
     }
-    if (pathHistory.size() == this.length) {
-      usedSequences.add(getCurrentSequenceName());
+    window[windowPosition] = edgeId;
+    windowPosition = (windowPosition + 1) % length;
+    if (windowSize < length) {
+      windowSize++;
+    }
+    if (windowSize == length) {
+      for (int i = 0; i < length; i++) {
+        sequence[i] = window[(windowPosition + i) % length];
+      }
+      boolean added;
+      if (compiledGraph.isPackable(length)) {
+        added = usedPackedSequences.add(compiledGraph.packEdgeSequence(sequence, length));
+      } else {
+        added = usedSequences.add(compiledGraph.getEdgeSequenceKey(sequence, length));
+      }
+      if (added) {
+        covered();
+      }
     }
-  }
-
-  /*
-   * (non-Javadoc)
-   * 
-   * @see org.graphwalker.statistics.Statistics#getCurrent()
-   */
-  @Override
-  public int getCurrent() {
-    return usedSequences.size();
   }
 
   /*
@@ -136,7 +143,7 @@ public class EdgeSequenceCoverageStatistics extends Statistics {
    */
   @Override
   public int getMax() {
-    return allSequences.size();
+    return max;
   }
 
 }
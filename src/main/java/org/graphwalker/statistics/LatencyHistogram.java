@@ -0,0 +1,171 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.statistics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of durations in nanoseconds, with log-linear buckets like an HDR histogram. Every
+ * power of 2 is divided into a fixed number of linear sub-buckets, so the relative error of a
+ * recorded value is bounded by the precision, whatever its magnitude. Durations longer than about
+ * 73 minutes are counted in the last bucket.<br>
+ * Recording is lock-free and does not allocate, so it can be done on every step. Reading while
+ * recording is allowed, the percentiles then reflect most of the recorded values.
+ */
+public class LatencyHistogram {
+
+  /** The bits of the largest duration tracked, 2^42 ns is about 73 minutes */
+  private static final int MAX_BITS = 42;
+
+  private final int subBucketBits;
+  private final int subBucketCount;
+  private final int halfCount;
+  private final AtomicLongArray buckets;
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Creates a histogram with a relative error of at most 1/32.
+   */
+  public LatencyHistogram() {
+    this(6);
+  }
+
+  /**
+   * @param subBucketBits The number of bits of the sub-buckets of each power of 2. The relative
+   *        error of a value is at most 2^-(subBucketBits - 1). Each bit doubles the memory used.
+   */
+  public LatencyHistogram(int subBucketBits) {
+    if (subBucketBits < 2 || subBucketBits > 16) {
+      throw new IllegalArgumentException("The sub-bucket bits must be between 2 and 16: " + subBucketBits);
+    }
+    this.subBucketBits = subBucketBits;
+    this.subBucketCount = 1 << subBucketBits;
+    this.halfCount = subBucketCount >> 1;
+    this.buckets = new AtomicLongArray(subBucketCount + (MAX_BITS - subBucketBits) * halfCount);
+  }
+
+  /**
+   * Records a duration. Negative durations are recorded as 0.
+   */
+  public void record(long nanos) {
+    long value = Math.max(0, nanos);
+    buckets.incrementAndGet(indexOf(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  private int indexOf(long value) {
+    if (value < subBucketCount) {
+      return (int) value;
+    }
+    int bits = 64 - Long.numberOfLeadingZeros(value);
+    if (bits > MAX_BITS) {
+      return buckets.length() - 1;
+    }
+    int shift = bits - subBucketBits;
+    return subBucketCount + (shift - 1) * halfCount + (int) (value >>> shift) - halfCount;
+  }
+
+  /**
+   * @return The largest value counted in the bucket of the index
+   */
+  private long highestValueOf(int index) {
+    if (index < subBucketCount) {
+      return index;
+    }
+    int shift = (index - subBucketCount) / halfCount + 1;
+    long subBucket = (index - subBucketCount) % halfCount + halfCount;
+    return (subBucket << shift) + (1L << shift) - 1;
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * @return The sum of all recorded durations, in nanoseconds
+   */
+  public long getTotal() {
+    return total.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long samples = count.get();
+    return (samples == 0 ? 0 : (double) total.get() / samples);
+  }
+
+  /**
+   * @param percentile The percentile, from 0 to 100, for instance 99.9
+   * @return The smallest duration which the percentile of the recorded durations are less than or
+   *         equal to, within the precision of the histogram. 0 if nothing is recorded.
+   */
+  public long getValueAtPercentile(double percentile) {
+    long samples = count.get();
+    if (samples == 0) {
+      return 0;
+    }
+    long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * samples));
+    long accumulated = 0;
+    for (int i = 0; i < buckets.length(); i++) {
+      accumulated += buckets.get(i);
+      if (accumulated >= target) {
+        return Math.min(highestValueOf(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < buckets.length(); i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    total.set(0);
+    max.set(0);
+  }
+
+  /**
+   * @return The number of samples, and the p50, p99, p99.9 and max durations in microseconds
+   */
+  @Override
+  public String toString() {
+    return "count=" + getCount() + " p50=" + micros(getValueAtPercentile(50)) + " p99=" + micros(getValueAtPercentile(99)) + " p99.9="
+        + micros(getValueAtPercentile(99.9)) + " max=" + micros(getMax());
+  }
+
+  private static String micros(long nanos) {
+    return String.format("%.1fus", nanos / 1000.0);
+  }
+}
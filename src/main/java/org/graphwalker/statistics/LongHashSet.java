@@ -0,0 +1,94 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.statistics;
+
+/**
+ * A set of longs, using open addressing on an array of primitives, so that adding keys does not
+ * allocate objects. The key 0 is used to mark empty slots, and can not be added.
+ */
+class LongHashSet {
+
+  private long[] keys = new long[16];
+  private int size = 0;
+
+  /**
+   * @param key The key to add, not 0
+   * @return true if the key was not in the set already
+   */
+  public boolean add(long key) {
+    if (key == 0) {
+      throw new IllegalArgumentException("The key 0 can not be added");
+    }
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    size++;
+    if (size * 2 > keys.length) {
+      rehash();
+    }
+    return true;
+  }
+
+  public boolean contains(long key) {
+    int mask = keys.length - 1;
+    int slot = hash(key) & mask;
+    while (keys[slot] != 0) {
+      if (keys[slot] == key) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void rehash() {
+    long[] old = keys;
+    keys = new long[old.length * 2];
+    int mask = keys.length - 1;
+    for (long key : old) {
+      if (key != 0) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+      }
+    }
+  }
+
+  private static int hash(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+}
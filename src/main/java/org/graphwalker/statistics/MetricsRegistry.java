@@ -0,0 +1,239 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.statistics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.graphwalker.graph.AbstractElement;
+
+/**
+ * Named counters of an execution, that can be read at any time without stopping the execution.
+ * Counters are {@link AtomicLong}s, so updating and reading them never blocks. Coverage
+ * {@link Statistics} can be registered as well, their current and max values are then part of the
+ * snapshot.<br>
+ * A snapshot reads every counter atomically, but not all counters at the same instant, so counters
+ * that are updated together may be one step apart in a snapshot taken during the execution.<br>
+ * Durations are recorded in {@link LatencyHistogram}s, in aggregate and per element.
+ */
+public class MetricsRegistry {
+
+  /** The number of generated steps */
+  public static final String STEPS = "steps";
+  /** The number of walked edges */
+  public static final String EDGES_WALKED = "edges.walked";
+  /** The number of reached vertices */
+  public static final String VERTICES_REACHED = "vertices.reached";
+  /** The number of distinct edges walked */
+  public static final String EDGES_COVERED = "edges.covered";
+  /** The number of distinct vertices reached */
+  public static final String VERTICES_COVERED = "vertices.covered";
+  public static final String REQUIREMENTS_PASSED = "requirements.passed";
+  public static final String REQUIREMENTS_FAILED = "requirements.failed";
+  /** The number of guards evaluated */
+  public static final String GUARD_EVALUATIONS = "guards.evaluated";
+  /** The time spent evaluating guards and actions, in nanoseconds */
+  public static final String SCRIPT_TIME = "script.time.ns";
+  /** The time spent by generators planning paths, in nanoseconds */
+  public static final String PLANNING_TIME = "planning.time.ns";
+
+  /** The time spent generating each step */
+  public static final String GENERATION_LATENCY = "latency.generation";
+  /** The time spent in the system under test, executing the method of each element */
+  public static final String EXECUTION_LATENCY = "latency.execution";
+  /** The time spent evaluating each guard */
+  public static final String GUARD_LATENCY = "latency.guard";
+  /** The time spent evaluating each action */
+  public static final String ACTION_LATENCY = "latency.action";
+
+  /** The sub-bucket bits of the per element histograms, which are kept smaller than the aggregates */
+  private static final int ELEMENT_SUB_BUCKET_BITS = 4;
+
+  private final ConcurrentHashMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+  private final ConcurrentHashMap<String, Statistics> statistics = new ConcurrentHashMap<String, Statistics>();
+  private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<String, LatencyHistogram>();
+  private final ConcurrentHashMap<String, ConcurrentHashMap<AbstractElement, LatencyHistogram>> elementHistograms =
+      new ConcurrentHashMap<String, ConcurrentHashMap<AbstractElement, LatencyHistogram>>();
+
+  /**
+   * @return The counter of the name, created the first time it is asked for
+   */
+  public AtomicLong getCounter(String name) {
+    AtomicLong counter = counters.get(name);
+    if (counter == null) {
+      AtomicLong created = new AtomicLong();
+      counter = counters.putIfAbsent(name, created);
+      if (counter == null) {
+        counter = created;
+      }
+    }
+    return counter;
+  }
+
+  public void increment(String name) {
+    getCounter(name).incrementAndGet();
+  }
+
+  public void add(String name, long delta) {
+    getCounter(name).addAndGet(delta);
+  }
+
+  public void set(String name, long value) {
+    getCounter(name).set(value);
+  }
+
+  public long get(String name) {
+    AtomicLong counter = counters.get(name);
+    return (counter == null ? 0 : counter.get());
+  }
+
+  /**
+   * Records a duration in the aggregate histogram of the name, and in the histogram of the element.
+   * 
+   * @param element The element the duration belongs to, or null to only record the aggregate.
+   */
+  public void recordLatency(String name, AbstractElement element, long nanos) {
+    getHistogram(name).record(nanos);
+    if (element != null) {
+      getHistogram(name, element).record(nanos);
+    }
+  }
+
+  /**
+   * @return The aggregate histogram of the name, created the first time it is asked for
+   */
+  public LatencyHistogram getHistogram(String name) {
+    LatencyHistogram histogram = histograms.get(name);
+    if (histogram == null) {
+      LatencyHistogram created = new LatencyHistogram();
+      histogram = histograms.putIfAbsent(name, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * @return The histogram of the name for the element, created the first time it is asked for
+   */
+  public LatencyHistogram getHistogram(String name, AbstractElement element) {
+    ConcurrentHashMap<AbstractElement, LatencyHistogram> perElement = elementHistograms.get(name);
+    if (perElement == null) {
+      ConcurrentHashMap<AbstractElement, LatencyHistogram> created = new ConcurrentHashMap<AbstractElement, LatencyHistogram>();
+      perElement = elementHistograms.putIfAbsent(name, created);
+      if (perElement == null) {
+        perElement = created;
+      }
+    }
+    LatencyHistogram histogram = perElement.get(element);
+    if (histogram == null) {
+      LatencyHistogram created = new LatencyHistogram(ELEMENT_SUB_BUCKET_BITS);
+      histogram = perElement.putIfAbsent(element, created);
+      if (histogram == null) {
+        histogram = created;
+      }
+    }
+    return histogram;
+  }
+
+  /**
+   * @param perElement If true, the histograms of every element follow the aggregates.
+   * @return One line per recorded histogram, with its count, p50, p99, p99.9 and max
+   */
+  public String getLatencyReport(boolean perElement) {
+    StringBuilder report = new StringBuilder();
+    for (String name : new TreeMap<String, LatencyHistogram>(histograms).keySet()) {
+      LatencyHistogram histogram = histograms.get(name);
+      if (histogram.getCount() == 0) {
+        continue;
+      }
+      report.append(name).append(": ").append(histogram).append('\n');
+      if (!perElement || !elementHistograms.containsKey(name)) {
+        continue;
+      }
+      List<String> lines = new ArrayList<String>();
+      for (Map.Entry<AbstractElement, LatencyHistogram> element : elementHistograms.get(name).entrySet()) {
+        if (element.getValue().getCount() > 0) {
+          lines.add("  " + element.getKey() + ": " + element.getValue());
+        }
+      }
+      Collections.sort(lines);
+      for (String line : lines) {
+        report.append(line).append('\n');
+      }
+    }
+    return report.toString();
+  }
+
+  /**
+   * Registers coverage statistics. The snapshot holds its current value as <code>name</code> and
+   * its max value as <code>name.max</code>.
+   */
+  public void register(String name, Statistics statistic) {
+    statistics.put(name, statistic);
+  }
+
+  /**
+   * @return The values of all counters and registered statistics, and the count, p50, p99, p99.9
+   *         and max of the aggregate histograms, in nanoseconds, sorted by name
+   */
+  public SortedMap<String, Long> getSnapshot() {
+    SortedMap<String, Long> snapshot = new TreeMap<String, Long>();
+    for (Map.Entry<String, AtomicLong> counter : counters.entrySet()) {
+      snapshot.put(counter.getKey(), counter.getValue().get());
+    }
+    for (Map.Entry<String, Statistics> statistic : statistics.entrySet()) {
+      snapshot.put(statistic.getKey(), (long) statistic.getValue().getCurrent());
+      snapshot.put(statistic.getKey() + ".max", (long) statistic.getValue().getMax());
+    }
+    for (Map.Entry<String, LatencyHistogram> histogram : histograms.entrySet()) {
+      LatencyHistogram value = histogram.getValue();
+      snapshot.put(histogram.getKey() + ".count", value.getCount());
+      snapshot.put(histogram.getKey() + ".p50", value.getValueAtPercentile(50));
+      snapshot.put(histogram.getKey() + ".p99", value.getValueAtPercentile(99));
+      snapshot.put(histogram.getKey() + ".p99.9", value.getValueAtPercentile(99.9));
+      snapshot.put(histogram.getKey() + ".max", value.getMax());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Sets all counters to 0, and removes the registered statistics and the histograms.
+   */
+  public void reset() {
+    for (AtomicLong counter : counters.values()) {
+      counter.set(0);
+    }
+    histograms.clear();
+    elementHistograms.clear();
+    statistics.clear();
+  }
+}
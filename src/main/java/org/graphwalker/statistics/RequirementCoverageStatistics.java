@@ -71,20 +71,14 @@ public class RequirementCoverageStatistics extends Statistics {
   @Override
   public void addProgress(AbstractElement element) {
     if (element != null && !element.getReqTagKey().isEmpty()) {
-      appendRequirements(usedRequirements, element.getReqTagKey());
+      for (String tag : element.getReqTagKey().split(",")) {
+        if (usedRequirements.add(tag)) {
+          covered();
+        }
+      }
     }
   }
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see org.graphwalker.statistics.Statistics#getCurrent()
-   */
-  @Override
-  public int getCurrent() {
-    return usedRequirements.size();
-  }
-
   /*
    * (non-Javadoc)
    * 
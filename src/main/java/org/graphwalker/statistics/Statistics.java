@@ -23,16 +23,32 @@
 
 package org.graphwalker.statistics;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.graphwalker.graph.AbstractElement;
 
 /**
+ * Coverage statistics, counting the covered items of a model. The current value is kept in an
+ * atomic counter, so it can be read from any thread while the execution adds progress.
+ * 
  * @author Johan Tejle
  * 
  */
 public abstract class Statistics {
+  private final AtomicInteger current = new AtomicInteger();
+
   public abstract void addProgress(AbstractElement element);
 
-  public abstract int getCurrent();
+  /**
+   * Called by the subclass for every newly covered item.
+   */
+  protected void covered() {
+    current.incrementAndGet();
+  }
+
+  public int getCurrent() {
+    return current.get();
+  }
 
   public abstract int getMax();
 }
@@ -56,20 +56,12 @@ public class VertexCoverageStatistics extends Statistics {
   @Override
   public void addProgress(AbstractElement element) {
     if (element instanceof Vertex) {
-      usedVertices.add(element.toString());
+      if (usedVertices.add(element.toString())) {
+        covered();
+      }
     }
   }
 
-  /*
-   * (non-Javadoc)
-   * 
-   * @see org.graphwalker.statistics.Statistics#getCurrent()
-   */
-  @Override
-  public int getCurrent() {
-    return usedVertices.size();
-  }
-
   /*
    * (non-Javadoc)
    * 
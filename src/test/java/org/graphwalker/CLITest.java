@@ -23,7 +23,9 @@
 
 package org.graphwalker;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -221,6 +223,54 @@ public class CLITest extends TestCase {
     assertTrue("Expected at least 78 lines, got: " + outMsg.split("\r\n|\r|\n").length, outMsg.split("\r\n|\r|\n").length >= 78);
   }
 
+  /**
+   * Test command: java -jar mbt.jar offline -f graphml/reqtags/ExtendedMain.graphml -g RANDOM -s
+   * EDGE_COVERAGE:100 -k 8 -m SHORTEST -n 4
+   */
+  public void testOfflineRandomEdgeCoverageWalkers() {
+    String args[] = {"offline", "-f", "graphml/reqtags/ExtendedMain.graphml", "-g", "RANDOM", "-s", "EDGE_COVERAGE:100", "-k", "8", "-m", "SHORTEST",
+        "-n", "4"};
+    runCommand(args);
+    assertTrue("No error messages should occur: " + errMsg, errMsg.isEmpty());
+    assertTrue("Expected at least 78 lines, got: " + outMsg.split("\r\n|\r|\n").length, outMsg.split("\r\n|\r|\n").length >= 78);
+  }
+
+  /**
+   * Test command: java -jar mbt.jar offline -f graphml/reqtags/ExtendedMain.graphml -g A_STAR -s
+   * EDGE_COVERAGE:100 -k 2 -e progress.txt -p cache
+   */
+  public void testOfflineWalkersWithStatisticsFileAndPlanCache() throws IOException {
+    File progress = File.createTempFile("progress", ".txt");
+    File cache = File.createTempFile("plancache", "");
+    cache.delete();
+    try {
+      String args[] = {"offline", "-f", "graphml/reqtags/ExtendedMain.graphml", "-g", "A_STAR", "-s", "EDGE_COVERAGE:100", "-k", "2", "-e",
+          progress.getPath(), "-p", cache.getPath()};
+      runCommand(args);
+      assertTrue("No error messages should occur: " + errMsg, errMsg.isEmpty());
+      int steps = outMsg.trim().split("\r\n|\r|\n").length;
+      BufferedReader reader = new BufferedReader(new FileReader(progress));
+      int lines = 0;
+      try {
+        while (reader.readLine() != null) {
+          lines++;
+        }
+      } finally {
+        reader.close();
+      }
+      assertTrue("Expected the steps of the selected walk in the statistics file, got " + lines + " lines for " + steps + " steps", lines > steps);
+      assertTrue("Expected the plan cache to be written", cache.isDirectory() && cache.listFiles().length > 0);
+    } finally {
+      progress.delete();
+      if (cache.isDirectory()) {
+        for (File file : cache.listFiles()) {
+          file.delete();
+        }
+      }
+      cache.delete();
+    }
+  }
+
   /**
    * Test command: java -jar mbt.jar offline -f graphml/reqtags/ExtendedMain.graphml -g RANDOM -s
    * VERTEX_COVERAGE:100
@@ -451,4 +501,46 @@ public class CLITest extends TestCase {
     }
     assertEquals("Did not find the expected count of lines.", 21, count);
   }
+
+  /**
+   * Test command: java -jar mbt.jar synthesize -o folder -v 40 -e 120 -n 1 -g 0.3
+   */
+  public void testSynthesize() throws IOException {
+    File folder = File.createTempFile("synthesized", "");
+    folder.delete();
+    try {
+      String args[] = {"synthesize", "-o", folder.getPath(), "-v", "40", "-e", "120", "-n", "1", "-g", "0.3", "-r", "0.2", "-d", "power_law"};
+      runCommand(args);
+      assertTrue("No error messages should occur: " + errMsg, errMsg.isEmpty());
+      assertTrue(new File(folder, "model.graphml").isFile());
+      assertTrue(new File(folder, "subgraph1.graphml").isFile());
+
+      String args2[] = {"offline", "-f", folder.getPath(), "-x", "-g", "RANDOM", "-s", "EDGE_COVERAGE:100"};
+      runCommand(args2);
+      assertTrue("No error messages should occur: " + errMsg, errMsg.isEmpty());
+      assertTrue(outMsg.contains("e_Init"));
+    } finally {
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+      folder.delete();
+    }
+  }
+
+  public void testMergeToGzipFile() throws IOException {
+    File file = File.createTempFile("merged", ".graphml.gz");
+    try {
+      String args[] = {"merge", "-f", "graphml/merging", "-o", file.getPath()};
+      runCommand(args);
+      assertTrue("No error messages should occur: " + errMsg, errMsg.isEmpty());
+      assertTrue(file.length() > 0);
+
+      String args2[] = {"merge", "-f", "graphml/merging"};
+      runCommand(args2);
+      assertTrue("No error messages should occur: " + errMsg, errMsg.isEmpty());
+      assertTrue(outMsg.contains("INDEX="));
+    } finally {
+      file.delete();
+    }
+  }
 }
@@ -86,4 +86,23 @@ public class FiniteStateMachineTest extends TestCase {
     assertEquals("{REQ001=1, REQ004=1, REQ003=1, REQ002=2}", FSM.getAllRequirements().toString());
     assertEquals("[REQ001, REQ004, REQ003, REQ002]", FSM.getCoveredRequirements().toString());
   }
+  public void testCopy() {
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(graph);
+    FSM.walkEdge(e1);
+    FSM.walkEdge(e2);
+
+    FiniteStateMachine copy = new FiniteStateMachine(FSM);
+    assertEquals("V2", copy.getCurrentVertexName());
+    assertEquals("E2", copy.getLastEdgeName());
+    assertEquals(FSM.getNumOfCoveredEdges(), copy.getNumOfCoveredEdges());
+    assertEquals(FSM.getCoveredRequirements(), copy.getCoveredRequirements());
+
+    copy.walkEdge(copy.findEdge("E4"));
+    assertEquals("V1", copy.getCurrentVertexName());
+    assertEquals(3, copy.getNumOfCoveredEdges());
+    assertEquals("V2", FSM.getCurrentVertexName());
+    assertEquals(2, FSM.getNumOfCoveredEdges());
+    assertEquals(0, e4.getVisitedKey().intValue());
+  }
 }
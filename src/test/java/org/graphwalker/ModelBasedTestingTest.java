@@ -29,15 +29,27 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintStream;
+import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import junit.framework.TestCase;
 
+import org.graphwalker.conditions.EdgeCoverage;
 import org.graphwalker.exceptions.GeneratorException;
 import org.graphwalker.exceptions.InvalidDataException;
 import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.generators.A_StarPathGenerator;
 import org.graphwalker.generators.NonOptimizedShortestPath;
+import org.graphwalker.generators.RandomPathGenerator;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.statistics.MetricsRegistry;
 import org.jdom2.JDOMException;
 
 /**
@@ -249,4 +261,265 @@ public class ModelBasedTestingTest extends TestCase {
     assertEquals("e_EnterBaseURL", mbt.getCurrentEdgeName());
     assertEquals("v_BaseURL", mbt.getCurrentVertexName());
   }
+
+  public void testPipelinedExecution() throws InterruptedException, StopConditionException {
+    for (int i = 0; i < 10; i++) {
+      ModelBasedTesting mbt = new ModelBasedTesting();
+      mbt.setGraph(createPipelineModel());
+      mbt.enableExtended(false);
+      mbt.setGenerator(new RandomPathGenerator(new EdgeCoverage(1.0)));
+      mbt.setPipelineCapacity(4);
+
+      PipelineExecutor executor = new PipelineExecutor(mbt);
+      mbt.executePath(executor);
+      assertEquals(1.0, mbt.getGenerator().getConditionFulfilment(), 0.0001);
+      assertTrue(executor.pipelined);
+      assertSame(mbt.getMachine(), mbt.getGenerator().getMachine());
+      assertEquals(executor.executed.size() / 2, mbt.getMachine().getNumberOfEdgesTravesed());
+    }
+  }
+
+  public void testPipelinedExecutionIsInvalidated() throws InterruptedException, StopConditionException {
+    ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(createPipelineModel());
+    mbt.enableExtended(false);
+    mbt.setGenerator(new A_StarPathGenerator(new EdgeCoverage(1.0)));
+    mbt.setPipelineCapacity(8);
+
+    PipelineExecutor executor = new PipelineExecutor(mbt);
+    executor.jumpFrom = "V3";
+    executor.jumpTo = "V2";
+    mbt.executePath(executor);
+    assertEquals(1.0, mbt.getGenerator().getConditionFulfilment(), 0.0001);
+    assertTrue(executor.executed.contains("V3"));
+    long executions = mbt.getMetrics().getHistogram(MetricsRegistry.EXECUTION_LATENCY).getCount();
+    assertTrue(executions > 0);
+    assertTrue(executions <= 2 * mbt.getMetrics().get(MetricsRegistry.STEPS));
+  }
+
+  public void testPipelineIsNotLockedWhileGenerating() throws Exception {
+    final CountDownLatch generating = new CountDownLatch(1);
+    final CountDownLatch generated = new CountDownLatch(1);
+    final ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(createPipelineModel());
+    mbt.enableExtended(false);
+    mbt.setGenerator(new RandomPathGenerator(new EdgeCoverage(1.0)) {
+      @Override
+      public String[] getNext() throws InterruptedException {
+        if (generated.getCount() > 0 && Thread.currentThread().getName().startsWith("Step pipeline")) {
+          generating.countDown();
+          generated.await();
+        }
+        return super.getNext();
+      }
+    });
+    mbt.setPipelineCapacity(4);
+
+    final PipelineExecutor executor = new PipelineExecutor(mbt);
+    FutureTask<Void> execution = new FutureTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          mbt.executePath(executor);
+        } catch (InterruptedException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }, null);
+    new Thread(execution).start();
+    assertTrue(generating.await(10, TimeUnit.SECONDS));
+
+    // The execution waits for the first step, without holding the lock of the model
+    FutureTask<Void> suspend = new FutureTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+        mbt.suspend();
+        mbt.resume();
+      }
+    }, null);
+    new Thread(suspend).start();
+    suspend.get(10, TimeUnit.SECONDS);
+
+    generated.countDown();
+    execution.get(30, TimeUnit.SECONDS);
+    assertEquals(1.0, mbt.getGenerator().getConditionFulfilment(), 0.0001);
+  }
+
+  public void testMissingMethodsAreFoundAtStart() throws InterruptedException, StopConditionException {
+    ModelBasedTesting mbt = new ModelBasedTesting();
+    Graph graph = createPipelineModel();
+    Vertex v4 = Util.addVertexToGraph(graph, "V4");
+    Util.addEdgeToGraph(graph, v4, v4, "e5", null, null, null);
+    Util.addEdgeToGraph(graph, graph.findVertex("V3"), v4, "", null, null, null);
+    mbt.setGraph(graph);
+    mbt.enableExtended(false);
+    mbt.setGenerator(new RandomPathGenerator(new EdgeCoverage(1.0)));
+
+    PipelineExecutor executor = new PipelineExecutor(mbt);
+    try {
+      mbt.executePath(executor);
+      fail("Expected a RuntimeException");
+    } catch (RuntimeException e) {
+      assertTrue(e.getCause().getMessage().contains("V4"));
+      assertTrue(e.getCause().getMessage().contains("e5"));
+    }
+    assertEquals(0, executor.executed.size());
+  }
+
+  public void testMetrics() throws InterruptedException, StopConditionException {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+    Util.addEdgeToGraph(graph, start, v1, "e_Init", null, null, "x=0;");
+    Util.addEdgeToGraph(graph, v1, v1, "e_Increment", null, "x<3", "x++;");
+    Util.addEdgeToGraph(graph, v1, v2, "e_Forward", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v1, "e_Back", null, null, null);
+
+    ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(graph);
+    mbt.enableExtended(true);
+    mbt.setGenerator(new A_StarPathGenerator(new EdgeCoverage(1.0)));
+    while (mbt.hasNextStep()) {
+      mbt.getNextStep();
+    }
+
+    Map<String, Long> snapshot = mbt.getMetrics().getSnapshot();
+    assertTrue(snapshot.get(MetricsRegistry.STEPS) >= 4);
+    assertEquals(mbt.getMachine().getNumberOfEdgesTravesed(), snapshot.get(MetricsRegistry.EDGES_WALKED).intValue());
+    assertEquals(snapshot.get(MetricsRegistry.EDGES_WALKED), snapshot.get(MetricsRegistry.VERTICES_REACHED));
+    assertEquals(4, snapshot.get(MetricsRegistry.EDGES_COVERED).intValue());
+    assertEquals(3, snapshot.get(MetricsRegistry.VERTICES_COVERED).intValue());
+    assertTrue(snapshot.get(MetricsRegistry.GUARD_EVALUATIONS) > 0);
+    assertTrue(snapshot.get(MetricsRegistry.SCRIPT_TIME) > 0);
+    assertTrue(snapshot.get(MetricsRegistry.PLANNING_TIME) > 0);
+    assertEquals(4, snapshot.get("Edge Coverage.max").intValue());
+    assertEquals(snapshot.get(MetricsRegistry.STEPS), snapshot.get(MetricsRegistry.GENERATION_LATENCY + ".count"));
+    assertTrue(snapshot.get(MetricsRegistry.GUARD_LATENCY + ".count") > 0);
+    // The actions are also evaluated while the A* generator plans the path
+    long actions = mbt.getMetrics().getHistogram(MetricsRegistry.ACTION_LATENCY).getCount();
+    assertTrue(actions >= 4);
+    Edge increment = graph.findEdge("e_Increment");
+    long increments = mbt.getMetrics().getHistogram(MetricsRegistry.ACTION_LATENCY, increment).getCount();
+    assertTrue(increments >= 3);
+    assertTrue(mbt.getLatencyStatistics().startsWith(MetricsRegistry.ACTION_LATENCY + ": count=" + actions + " p50="));
+    assertTrue(mbt.getLatencyStatisticsVerbose().contains("  " + increment + ": count=" + increments + " "));
+
+    mbt.reset();
+    assertEquals(0, mbt.getMetrics().get(MetricsRegistry.STEPS));
+  }
+
+  public void testExecutionWaitsForFuture() throws InterruptedException, StopConditionException {
+    final ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(createPipelineModel());
+    mbt.enableExtended(false);
+    mbt.setGenerator(new RandomPathGenerator(new EdgeCoverage(1.0)));
+    FutureTask<Object> future = new FutureTask<Object>(new Runnable() {
+      @Override
+      public void run() {}
+    }, null);
+    mbt.setFuture(future);
+
+    final PipelineExecutor executor = new PipelineExecutor(mbt);
+    Thread execution = new Thread() {
+      @Override
+      public void run() {
+        try {
+          mbt.executePath(executor);
+        } catch (InterruptedException e) {
+          Util.logStackTraceToError(e);
+        }
+      }
+    };
+    execution.start();
+    execution.join(200);
+    assertTrue(execution.isAlive());
+    assertEquals(0, executor.executed.size());
+
+    future.run();
+    execution.join(10000);
+    assertFalse(execution.isAlive());
+    assertEquals(1.0, mbt.getGenerator().getConditionFulfilment(), 0.0001);
+  }
+
+  private Graph createPipelineModel() {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+    Vertex v3 = Util.addVertexToGraph(graph, "V3");
+    Util.addEdgeToGraph(graph, start, v1, "e0", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v2, "e1", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v3, "e2", null, null, null);
+    Util.addEdgeToGraph(graph, v3, v1, "e3", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v1, "e4", null, null, null);
+    return graph;
+  }
+
+  /**
+   * Checks that every executed step continues from the previously executed vertex.
+   */
+  public static class PipelineExecutor {
+    private final ModelBasedTesting mbt;
+    private final Vector<String> executed = new Vector<String>();
+    private String lastVertex = "Start";
+    private String jumpFrom = null;
+    private String jumpTo = null;
+    private boolean pipelined = false;
+
+    public PipelineExecutor(ModelBasedTesting mbt) {
+      this.mbt = mbt;
+    }
+
+    private void edge(String name) {
+      assertEquals(name, mbt.getCurrentEdgeName());
+      assertEquals(lastVertex, mbt.getGraph().getSource(mbt.getCurrentEdge()).getLabelKey());
+      executed.add(name);
+      pipelined |= mbt.getGenerator().getMachine() != mbt.getMachine();
+    }
+
+    private void vertex(String name) {
+      assertEquals(name, mbt.getCurrentVertexName());
+      executed.add(name);
+      lastVertex = name;
+      if (name.equals(jumpFrom)) {
+        jumpFrom = null;
+        mbt.passRequirement(true);
+        assertTrue(mbt.setCurrentVertex(jumpTo));
+        lastVertex = jumpTo;
+      }
+    }
+
+    public void e0() {
+      edge("e0");
+    }
+
+    public void e1() {
+      edge("e1");
+    }
+
+    public void e2() {
+      edge("e2");
+    }
+
+    public void e3() {
+      edge("e3");
+    }
+
+    public void e4() {
+      edge("e4");
+    }
+
+    public void V1() {
+      vertex("V1");
+    }
+
+    public void V2() {
+      vertex("V2");
+    }
+
+    public void V3() {
+      vertex("V3");
+    }
+  }
 }
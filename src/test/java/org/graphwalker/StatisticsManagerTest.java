@@ -24,10 +24,13 @@
 package org.graphwalker;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintStream;
 
 import junit.framework.TestCase;
 
+import org.graphwalker.graph.AbstractElement;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
@@ -35,6 +38,7 @@ import org.graphwalker.statistics.EdgeCoverageStatistics;
 import org.graphwalker.statistics.EdgeSequenceCoverageStatistics;
 import org.graphwalker.statistics.RequirementCoverageStatistics;
 import org.graphwalker.statistics.VertexCoverageStatistics;
+import org.jdom2.output.XMLOutputter;
 
 /**
  * @author Johan Tejle
@@ -202,4 +206,67 @@ public class StatisticsManagerTest extends TestCase {
             + Util.newline + "</tr>" + Util.newline + "</table>" + Util.newline, out.toString());
   }
 
+  private StatisticsManager createStatisticsManager() {
+    StatisticsManager statisticsManager = new StatisticsManager();
+    statisticsManager.addStatisicsCounter("State Coverage", new VertexCoverageStatistics(graph));
+    statisticsManager.addStatisicsCounter("Edge Coverage", new EdgeCoverageStatistics(graph));
+    statisticsManager.addStatisicsCounter("2-Edge Sequence Coverage", new EdgeSequenceCoverageStatistics(graph, 2));
+    statisticsManager.addStatisicsCounter("3-Edge Sequence Coverage", new EdgeSequenceCoverageStatistics(graph, 3));
+    statisticsManager.addStatisicsCounter("Requirements Coverage", new RequirementCoverageStatistics(graph));
+    return statisticsManager;
+  }
+
+  public void testStreamingProgress() throws IOException {
+    StatisticsManager inMemory = createStatisticsManager();
+    StatisticsManager streaming = createStatisticsManager();
+    File file = File.createTempFile("statistics", ".txt");
+    file.deleteOnExit();
+
+    inMemory.addProgress(start);
+    streaming.addProgress(start);
+    streaming.setProgressFile(file);
+    for (AbstractElement element : new AbstractElement[] {e1, v1, e2, v2, e3, e4}) {
+      inMemory.addProgress(element);
+      streaming.addProgress(element);
+    }
+    assertEquals(7, streaming.getProgressCount());
+    assertEquals(inMemory.getFullProgressXml(), streaming.getFullProgressXml());
+
+    inMemory.setReportTemplate(getClass().getClassLoader().getResourceAsStream("templates/short.report"));
+    streaming.setReportTemplate(getClass().getClassLoader().getResourceAsStream("templates/short.report"));
+    ByteArrayOutputStream inMemoryReport = new ByteArrayOutputStream();
+    ByteArrayOutputStream streamingReport = new ByteArrayOutputStream();
+    inMemory.writeFullReport(new PrintStream(inMemoryReport));
+    streaming.writeFullReport(new PrintStream(streamingReport));
+    assertEquals(inMemoryReport.toString(), streamingReport.toString());
+
+    streaming.close();
+    assertEquals(inMemory.getFullProgressXml(), new XMLOutputter().outputString(StatisticsManager.readProgress(file)));
+  }
+
+  public void testIntermediateReport() throws IOException {
+    StatisticsManager inMemory = createStatisticsManager();
+    StatisticsManager streaming = createStatisticsManager();
+    File file = File.createTempFile("statistics", ".txt");
+    file.deleteOnExit();
+    streaming.setProgressFile(file);
+    for (AbstractElement element : new AbstractElement[] {start, e1, v1, e2, v2, e3, e4}) {
+      inMemory.addProgress(element);
+      streaming.addProgress(element);
+    }
+    inMemory.setReportTemplate(getClass().getClassLoader().getResourceAsStream("templates/short.report"));
+    streaming.setReportTemplate(getClass().getClassLoader().getResourceAsStream("templates/short.report"));
+
+    ByteArrayOutputStream fullReport = new ByteArrayOutputStream();
+    ByteArrayOutputStream intermediateReport = new ByteArrayOutputStream();
+    inMemory.writeFullReport(new PrintStream(fullReport));
+    inMemory.writeIntermediateReport(new PrintStream(intermediateReport));
+    assertEquals(fullReport.toString(), intermediateReport.toString());
+
+    intermediateReport.reset();
+    streaming.writeIntermediateReport(new PrintStream(intermediateReport));
+    assertTrue(intermediateReport.toString(), intermediateReport.toString().contains("chd=t:0,100|0,100|0,50|0,20&amp;"));
+    streaming.close();
+  }
+
 }
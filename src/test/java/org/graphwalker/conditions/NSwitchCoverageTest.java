@@ -118,4 +118,37 @@ public class NSwitchCoverageTest extends TestCase {
     assertEquals(1.0, mbt.getGenerator().getStopCondition().getFulfilment(), 0.01);
   }
 
+  public void testFulfillmentIsExact() throws StopConditionException, GeneratorException, InterruptedException {
+    ModelBasedTesting mbt = new ModelBasedTesting();
+
+    Graph graph = new Graph();
+
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+
+    Util.addEdgeToGraph(graph, start, v1, "E_Start_1", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v2, "E_1_2_a", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v2, "E_1_2_b", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v1, "E_2_1", null, null, null);
+
+    mbt.setGraph(graph);
+    mbt.setGenerator(new RandomPathGenerator(new NSwitchCoverage(2)));
+
+    // The feasible sequences of 3 edges are: a-2_1-a, a-2_1-b, b-2_1-a, b-2_1-b, 2_1-a-2_1 and
+    // 2_1-b-2_1
+    assertTrue(mbt.hasNextStep());
+    assertEquals(0.0, mbt.getGenerator().getStopCondition().getFulfilment(), 0.0001);
+    double fulfilment = 0;
+    int count = 0;
+    while (mbt.hasNextStep() && count < 1000) {
+      count++;
+      mbt.getNextStep();
+      double current = mbt.getGenerator().getStopCondition().getFulfilment();
+      assertTrue(current >= fulfilment);
+      assertEquals(0.0, (current * 6) - Math.round(current * 6), 0.0001);
+      fulfilment = current;
+    }
+    assertEquals(1.0, mbt.getGenerator().getStopCondition().getFulfilment(), 0.0001);
+  }
 }
@@ -26,12 +26,16 @@ package org.graphwalker.generators;
 import junit.framework.TestCase;
 
 import org.graphwalker.Util;
+import org.graphwalker.conditions.AlternativeCondition;
+import org.graphwalker.conditions.EdgeCoverage;
 import org.graphwalker.conditions.ReachedEdge;
 import org.graphwalker.conditions.ReachedVertex;
+import org.graphwalker.exceptions.StopConditionException;
 import org.graphwalker.graph.Edge;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
 import org.graphwalker.machines.FiniteStateMachine;
+import org.graphwalker.statistics.MetricsRegistry;
 
 public class A_StarPathGeneratorFSMTest extends TestCase {
 
@@ -101,4 +105,81 @@ public class A_StarPathGeneratorFSMTest extends TestCase {
     assertEquals("V2", stepPair[1]);
     assertFalse(pathGenerator.hasNext());
   }
+
+  public void test_FSM_ReachedVertexShortestPath() throws InterruptedException {
+    Graph model = new Graph();
+    Vertex s = Util.addVertexToGraph(model, "Start");
+    Vertex v1 = Util.addVertexToGraph(model, "V1");
+    Vertex v2 = Util.addVertexToGraph(model, "V2");
+    Vertex v3 = Util.addVertexToGraph(model, "V3");
+    Vertex v4 = Util.addVertexToGraph(model, "V4");
+    Vertex v5 = Util.addVertexToGraph(model, "V5");
+    Util.addEdgeToGraph(model, s, v1, "E0", null, null, null);
+    Util.addEdgeToGraph(model, v1, v2, "E1", null, null, null);
+    Util.addEdgeToGraph(model, v2, v3, "E2", null, null, null);
+    Util.addEdgeToGraph(model, v3, v4, "E3", null, null, null);
+    Util.addEdgeToGraph(model, v1, v5, "E4", null, null, null);
+    Util.addEdgeToGraph(model, v5, v4, "E5", null, null, null);
+    Util.addEdgeToGraph(model, v4, v1, "E6", null, null, null);
+
+    PathGenerator pathGenerator = new A_StarPathGenerator(new ReachedVertex("V4"));
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(model);
+    pathGenerator.setMachine(fsm);
+
+    assertEquals("E0", pathGenerator.getNext()[0]);
+    assertEquals("E4", pathGenerator.getNext()[0]);
+    assertEquals("E5", pathGenerator.getNext()[0]);
+    assertFalse(pathGenerator.hasNext());
+  }
+
+  public void test_FSM_ReachedVertexInAlternativeCondition() throws InterruptedException {
+    Graph model = new Graph();
+    Vertex s = Util.addVertexToGraph(model, "Start");
+    Vertex v1 = Util.addVertexToGraph(model, "V1");
+    Vertex v2 = Util.addVertexToGraph(model, "V2");
+    Vertex v3 = Util.addVertexToGraph(model, "V3");
+    Vertex v4 = Util.addVertexToGraph(model, "V4");
+    Vertex v5 = Util.addVertexToGraph(model, "V5");
+    Util.addEdgeToGraph(model, s, v1, "E0", null, null, null);
+    Util.addEdgeToGraph(model, v1, v2, "E1", null, null, null);
+    Util.addEdgeToGraph(model, v2, v3, "E2", null, null, null);
+    Util.addEdgeToGraph(model, v3, v4, "E3", null, null, null);
+    Util.addEdgeToGraph(model, v1, v5, "E4", null, null, null);
+    Util.addEdgeToGraph(model, v5, v4, "E5", null, null, null);
+    Util.addEdgeToGraph(model, v4, v1, "E6", null, null, null);
+
+    // The command line wraps its stop condition like this, even when it is a single condition
+    AlternativeCondition stopCondition = new AlternativeCondition();
+    stopCondition.add(new ReachedVertex("V4"));
+    PathGenerator pathGenerator = new A_StarPathGenerator(stopCondition);
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(model);
+    MetricsRegistry metrics = new MetricsRegistry();
+    fsm.setMetrics(metrics);
+    pathGenerator.setMachine(fsm);
+
+    assertEquals("E0", pathGenerator.getNext()[0]);
+    assertEquals("E4", pathGenerator.getNext()[0]);
+    assertEquals("E5", pathGenerator.getNext()[0]);
+    assertFalse(pathGenerator.hasNext());
+    // The path was found by the breadth first search, and not by the A* search
+    assertEquals(0, metrics.get(MetricsRegistry.PLANNING_TIME));
+  }
+
+  public void test_FSM_SearchBudget() throws InterruptedException, StopConditionException {
+    A_StarPathGenerator pathGenerator = new A_StarPathGenerator(new EdgeCoverage(1.0));
+    pathGenerator.setMaxExpandedPaths(1);
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    pathGenerator.setMachine(fsm);
+
+    int steps = 0;
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+      steps++;
+      assertTrue("Expected full edge coverage within 20 steps", steps < 20);
+    }
+    assertEquals(4, fsm.getNumOfCoveredEdges());
+  }
 }
@@ -66,4 +66,21 @@ public class AllPathPermutationsGeneratorTest extends TestCase {
     // assertEquals(3, ((AllPathPermutationsGenerator) pathGenerator).getDepth());
     logger.debug("==============================");
   }
+
+  public void test_MaxTrackedPaths() throws StopConditionException, InterruptedException {
+    GraphML gml = new GraphML();
+    gml.load("graphml/permutations/simple.graphml");
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(gml.getModel());
+
+    AllPathPermutationsGenerator pathGenerator = new AllPathPermutationsGenerator(new TestCaseLength(500));
+    pathGenerator.setMaxTrackedPaths(4);
+    pathGenerator.setMachine(FSM);
+
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+      assertTrue(pathGenerator.getNumberOfTrackedPaths() <= 4);
+    }
+    assertTrue(pathGenerator.getDepth() >= 1);
+  }
 }
@@ -26,9 +26,14 @@
  */
 package org.graphwalker.generators;
 
+import java.util.Vector;
+
 import junit.framework.TestCase;
 
 import org.graphwalker.Util;
+import org.graphwalker.conditions.EdgeCoverage;
+import org.graphwalker.conditions.ReachedVertex;
+import org.graphwalker.exceptions.StopConditionException;
 import org.graphwalker.graph.Graph;
 import org.graphwalker.graph.Vertex;
 import org.graphwalker.machines.FiniteStateMachine;
@@ -86,4 +91,67 @@ public class CombinedPathGeneratorTest extends TestCase {
     assertFalse(pathGenerator.hasNext());
 
   }
+  public void testPrefetch() throws InterruptedException, StopConditionException {
+    Graph model = new Graph();
+    Vertex start = Util.addVertexToGraph(model, "Start");
+    Vertex v1 = Util.addVertexToGraph(model, "V1");
+    Vertex v2 = Util.addVertexToGraph(model, "V2");
+    Vertex v3 = Util.addVertexToGraph(model, "V3");
+    Util.addEdgeToGraph(model, start, v1, "E0", null, null, null);
+    Util.addEdgeToGraph(model, v1, v2, "E1", null, null, null);
+    Util.addEdgeToGraph(model, v2, v3, "E2", null, null, null);
+    Util.addEdgeToGraph(model, v3, v1, "E3", null, null, null);
+    Util.addEdgeToGraph(model, v2, v1, "E4", null, null, null);
+
+    Vector<String> withoutPrefetch = walkCombined(model, false);
+    Vector<String> withPrefetch = walkCombined(model, true);
+    assertEquals(withoutPrefetch, withPrefetch);
+  }
+
+  public void testSetMachineWaitsForPrefetch() throws InterruptedException, StopConditionException {
+    Graph model = new Graph();
+    Vertex start = Util.addVertexToGraph(model, "Start");
+    Vertex v1 = Util.addVertexToGraph(model, "V1");
+    Vertex v2 = Util.addVertexToGraph(model, "V2");
+    Util.addEdgeToGraph(model, start, v1, "E0", null, null, null);
+    Util.addEdgeToGraph(model, v1, v2, "E1", null, null, null);
+    Util.addEdgeToGraph(model, v2, v1, "E2", null, null, null);
+
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(model);
+    FSM.setAllUnvisited();
+
+    CombinedPathGenerator pathGenerator = new CombinedPathGenerator();
+    pathGenerator.setPrefetch(true);
+    A_StarPathGenerator next = new A_StarPathGenerator(new EdgeCoverage(1.0));
+    pathGenerator.addPathGenerator(new A_StarPathGenerator(new ReachedVertex("V2")));
+    pathGenerator.addPathGenerator(next);
+    pathGenerator.setMachine(FSM);
+    pathGenerator.getNext();
+
+    FiniteStateMachine other = new FiniteStateMachine(FSM);
+    pathGenerator.setMachine(other);
+    assertSame(other, next.getMachine());
+    pathGenerator.reset();
+    assertSame(other, next.getMachine());
+  }
+
+  private Vector<String> walkCombined(Graph model, boolean prefetch) throws InterruptedException, StopConditionException {
+    FiniteStateMachine FSM = new FiniteStateMachine();
+    FSM.setModel(model);
+    FSM.setAllUnvisited();
+
+    CombinedPathGenerator pathGenerator = new CombinedPathGenerator();
+    pathGenerator.setPrefetch(prefetch);
+    pathGenerator.addPathGenerator(new A_StarPathGenerator(new ReachedVertex("V3")));
+    pathGenerator.addPathGenerator(new A_StarPathGenerator(new EdgeCoverage(1.0)));
+    pathGenerator.setMachine(FSM);
+
+    Vector<String> steps = new Vector<String>();
+    while (pathGenerator.hasNext()) {
+      steps.add(pathGenerator.getNext()[0]);
+    }
+    assertEquals(5, FSM.getNumOfCoveredEdges());
+    return steps;
+  }
 }
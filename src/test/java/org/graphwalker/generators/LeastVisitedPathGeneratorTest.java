@@ -0,0 +1,108 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Util;
+import org.graphwalker.conditions.EdgeCoverage;
+import org.graphwalker.conditions.TestCaseLength;
+import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.io.GraphML;
+import org.graphwalker.machines.FiniteStateMachine;
+
+public class LeastVisitedPathGeneratorTest extends TestCase {
+
+  public void test_EdgeCoverage() throws StopConditionException, InterruptedException {
+    GraphML gml = new GraphML();
+    gml.load("graphml/reqtags/ExtendedMain.graphml");
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(gml.getModel());
+
+    PathGenerator pathGenerator = new LeastVisitedPathGenerator(new EdgeCoverage(1.0));
+    pathGenerator.setMachine(fsm);
+
+    int steps = 0;
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+      steps++;
+      assertTrue("Expected full edge coverage within 1000 steps", steps < 1000);
+    }
+    assertEquals(fsm.getAllEdges().size(), fsm.getNumOfCoveredEdges());
+  }
+
+  /**
+   * Every time V1 is reached, the loop at V1 and the round trip through V2 and V3 are equally
+   * visited, or the least visited of them is chosen. So the visits stay in balance.
+   */
+  public void test_HeadsForLeastVisitedEdge() throws StopConditionException, InterruptedException {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+    Vertex v3 = Util.addVertexToGraph(graph, "V3");
+    Util.addEdgeToGraph(graph, start, v1, "E0", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v1, "E1", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v2, "E2", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v3, "E3", null, null, null);
+    Util.addEdgeToGraph(graph, v3, v1, "E4", null, null, null);
+
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    PathGenerator pathGenerator = new LeastVisitedPathGenerator(new TestCaseLength(41));
+    pathGenerator.setMachine(fsm);
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+    }
+
+    // The start edge is walked once, after that every round of 4 edges walks each edge once
+    for (Edge edge : graph.getEdges()) {
+      if (graph.getSource(edge) != start) {
+        assertEquals(edge.toString(), 10, edge.getVisitedKey().intValue());
+      }
+    }
+  }
+
+  public void test_IndexedMinHeap() {
+    IndexedMinHeap heap = new IndexedMinHeap(5);
+    heap.put(0, 5);
+    heap.put(1, 3);
+    heap.put(2, 4);
+    heap.put(3, 1);
+    heap.put(4, 2);
+    assertEquals(3, heap.peek());
+    heap.put(3, 6);
+    assertEquals(4, heap.peek());
+    heap.remove(4);
+    assertEquals(1, heap.peek());
+    heap.put(0, 0);
+    assertEquals(0, heap.peek());
+    assertEquals(0, heap.peekPriority());
+    assertEquals(4, heap.size());
+    assertFalse(heap.contains(4));
+  }
+}
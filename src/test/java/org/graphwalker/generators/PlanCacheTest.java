@@ -0,0 +1,116 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import java.io.File;
+import java.util.Vector;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Util;
+import org.graphwalker.conditions.EdgeCoverage;
+import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.machines.FiniteStateMachine;
+
+public class PlanCacheTest extends TestCase {
+
+  Graph graph;
+  File folder;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    graph = new Graph();
+
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+    Vertex v3 = Util.addVertexToGraph(graph, "V3");
+
+    Util.addEdgeToGraph(graph, start, v1, "E0", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v2, "E1", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v1, "E2", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v3, "E3", null, null, null);
+    Util.addEdgeToGraph(graph, v3, v1, "E4", null, null, null);
+
+    folder = File.createTempFile("plancache", "");
+    folder.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    if (folder.listFiles() != null) {
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+    }
+    folder.delete();
+    graph = null;
+  }
+
+  private Vector<String> walk(PlanCache planCache) throws InterruptedException, StopConditionException {
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    fsm.setAllUnvisited();
+    A_StarPathGenerator pathGenerator = new A_StarPathGenerator(new EdgeCoverage(1.0));
+    pathGenerator.setPlanCache(planCache);
+    pathGenerator.setMachine(fsm);
+
+    Vector<String> steps = new Vector<String>();
+    while (pathGenerator.hasNext()) {
+      steps.add(pathGenerator.getNext()[0]);
+    }
+    return steps;
+  }
+
+  public void test_ReusesPlanFromDisk() throws InterruptedException, StopConditionException {
+    Vector<String> searched = walk(new PlanCache(folder));
+    assertEquals(1, folder.listFiles().length);
+
+    Vector<String> cached = walk(new PlanCache(folder));
+    assertEquals(searched, cached);
+    assertEquals(1, folder.listFiles().length);
+  }
+
+  public void test_FallsBackWhenPlanDiverges() throws InterruptedException, StopConditionException {
+    PlanCache planCache = new PlanCache(folder);
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    fsm.setAllUnvisited();
+    String key = PlanCache.getKey(fsm, new EdgeCoverage(1.0));
+
+    // A plan walking E3 from Start, which is not possible
+    int e3 = graph.getCompiledGraph().getEdgeId(fsm.findEdge("E3"));
+    planCache.put(key, new int[] {e3});
+
+    Vector<String> steps = walk(planCache);
+    assertEquals("E0", steps.get(0));
+    for (int i = 0; i < graph.getCompiledGraph().getEdgeCount(); i++) {
+      assertTrue(graph.getCompiledGraph().getEdge(i).getVisitedKey() > 0);
+    }
+  }
+}
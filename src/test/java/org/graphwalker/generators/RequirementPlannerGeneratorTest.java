@@ -0,0 +1,114 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.generators;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Util;
+import org.graphwalker.conditions.ReachedRequirement;
+import org.graphwalker.conditions.RequirementCoverage;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.io.GraphML;
+import org.graphwalker.machines.FiniteStateMachine;
+
+public class RequirementPlannerGeneratorTest extends TestCase {
+
+  Graph graph;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    graph = new Graph();
+
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+    Vertex v3 = Util.addVertexToGraph(graph, "V3");
+    Vertex v4 = Util.addVertexToGraph(graph, "V4");
+    v2.setReqTagKey("R1");
+    v3.setReqTagKey("R2");
+
+    Util.addEdgeToGraph(graph, start, v1, "E0", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v2, "E1", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v1, "E2", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v3, "E3", null, null, null);
+    Util.addEdgeToGraph(graph, v3, v1, "E4", null, null, null);
+    Edge e5 = Util.addEdgeToGraph(graph, v1, v4, "E5", null, null, null);
+    Util.addEdgeToGraph(graph, v4, v1, "E6", null, null, null);
+    e5.setReqTagKey("R3");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    graph = null;
+  }
+
+  public void test_AllRequirements() throws InterruptedException {
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    RequirementPlannerGenerator pathGenerator = new RequirementPlannerGenerator(new RequirementCoverage(1.0));
+    pathGenerator.setMachine(fsm);
+
+    assertEquals(6, pathGenerator.getPlannedLength());
+    int steps = 0;
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+      steps++;
+    }
+    assertEquals(6, steps);
+    assertEquals(3, fsm.getCoveredRequirements().size());
+  }
+
+  public void test_ReachedRequirement() throws InterruptedException {
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(graph);
+    PathGenerator pathGenerator = new RequirementPlannerGenerator(new ReachedRequirement("R2"));
+    pathGenerator.setMachine(fsm);
+
+    String[] stepPair = pathGenerator.getNext();
+    assertEquals("E0", stepPair[0]);
+    assertEquals("V1", stepPair[1]);
+    stepPair = pathGenerator.getNext();
+    assertEquals("E3", stepPair[0]);
+    assertEquals("V3", stepPair[1]);
+    assertFalse(pathGenerator.hasNext());
+  }
+
+  public void test_ModelRequirements() throws InterruptedException {
+    GraphML gml = new GraphML();
+    gml.load("graphml/reqtags/ExtendedMain.graphml");
+    FiniteStateMachine fsm = new FiniteStateMachine();
+    fsm.setModel(gml.getModel());
+    PathGenerator pathGenerator = new RequirementPlannerGenerator(new RequirementCoverage(1.0));
+    pathGenerator.setMachine(fsm);
+
+    while (pathGenerator.hasNext()) {
+      pathGenerator.getNext();
+    }
+    assertEquals(fsm.getAllRequirements().size(), fsm.getCoveredRequirements().size());
+  }
+}
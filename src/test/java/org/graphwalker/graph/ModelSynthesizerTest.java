@@ -0,0 +1,174 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.ModelBasedTesting;
+import org.graphwalker.conditions.EdgeCoverage;
+import org.graphwalker.exceptions.StopConditionException;
+import org.graphwalker.generators.RandomPathGenerator;
+import org.graphwalker.io.GraphML;
+
+public class ModelSynthesizerTest extends TestCase {
+
+  private ModelSynthesizer createSynthesizer(int vertices, int edges) {
+    ModelSynthesizer synthesizer = new ModelSynthesizer();
+    synthesizer.setVertices(vertices);
+    synthesizer.setEdges(edges);
+    synthesizer.setSeed(7);
+    return synthesizer;
+  }
+
+  /**
+   * @return The edges of the graph, sorted since the graph does not keep the order of its edges
+   */
+  private String describe(Graph graph) {
+    List<String> edges = new ArrayList<String>();
+    for (Edge edge : graph.getEdges()) {
+      edges.add(graph.getSource(edge).getLabelKey() + " " + edge.getFullLabelKey() + " " + graph.getDest(edge).getLabelKey());
+    }
+    Collections.sort(edges);
+    return edges.toString();
+  }
+
+  private int countGuards(Graph graph) {
+    int guards = 0;
+    for (Edge edge : graph.getEdges()) {
+      if (!edge.getGuardKey().isEmpty()) {
+        guards++;
+      }
+    }
+    return guards;
+  }
+
+  private int countRequirements(Graph graph) {
+    int requirements = 0;
+    for (Vertex vertex : graph.getVertices()) {
+      if (!vertex.getReqTagKey().isEmpty()) {
+        requirements++;
+      }
+    }
+    return requirements;
+  }
+
+  public void testCounts() {
+    Graph graph = createSynthesizer(50, 200).createGraph();
+    assertEquals(51, graph.getVertexCount());
+    assertEquals(201, graph.getEdgeCount());
+    assertEquals(0, countGuards(graph));
+    assertEquals(0, countRequirements(graph));
+  }
+
+  public void testDeterministic() {
+    ModelSynthesizer synthesizer = createSynthesizer(100, 400);
+    synthesizer.setGuardDensity(0.5);
+    assertEquals(describe(synthesizer.createGraph()), describe(synthesizer.createGraph()));
+    synthesizer.setSeed(8);
+    String other = describe(synthesizer.createGraph());
+    synthesizer.setSeed(7);
+    assertFalse(describe(synthesizer.createGraph()).equals(other));
+  }
+
+  public void testTooFewEdges() {
+    ModelSynthesizer synthesizer = createSynthesizer(10, 11);
+    synthesizer.setDepth(1);
+    synthesizer.setComponents(2);
+    try {
+      synthesizer.createGraph();
+      fail("12 edges are needed to connect the model");
+    } catch (RuntimeException e) {
+      assertTrue(e.getMessage().contains("12 edges"));
+    }
+  }
+
+  public void testPowerLaw() {
+    ModelSynthesizer synthesizer = createSynthesizer(1000, 5000);
+    int uniform = maxOutDegree(synthesizer.createGraph());
+    synthesizer.setOutDegree(ModelSynthesizer.OutDegree.POWER_LAW);
+    int powerLaw = maxOutDegree(synthesizer.createGraph());
+    assertTrue(powerLaw > 2 * uniform);
+  }
+
+  private int maxOutDegree(Graph graph) {
+    int max = 0;
+    for (Vertex vertex : graph.getVertices()) {
+      max = Math.max(max, graph.getOutEdges(vertex).size());
+    }
+    return max;
+  }
+
+  public void testSubgraphsMergeToTheSameModel() throws IOException {
+    ModelSynthesizer synthesizer = createSynthesizer(60, 180);
+    synthesizer.setDepth(2);
+    synthesizer.setComponents(3);
+    synthesizer.setGuardDensity(0.3);
+    synthesizer.setRequirementDensity(0.5);
+    Graph graph = synthesizer.createGraph();
+
+    File folder = File.createTempFile("synthesized", "");
+    folder.delete();
+    try {
+      List<File> files = synthesizer.write(folder);
+      assertEquals(3, files.size());
+
+      GraphML graphML = new GraphML();
+      graphML.load(folder);
+      Graph merged = graphML.getModel();
+      assertEquals(graph.getVertexCount(), merged.getVertexCount());
+      assertEquals(graph.getEdgeCount(), merged.getEdgeCount());
+      assertEquals(countGuards(graph), countGuards(merged));
+      assertTrue(countGuards(merged) > 0);
+      assertEquals(countRequirements(graph), countRequirements(merged));
+      assertTrue(countRequirements(merged) > 0);
+    } finally {
+      for (File file : folder.listFiles()) {
+        file.delete();
+      }
+      folder.delete();
+    }
+  }
+
+  public void testGuardedModelCanBeCovered() throws StopConditionException, InterruptedException {
+    ModelSynthesizer synthesizer = createSynthesizer(30, 90);
+    synthesizer.setGuardDensity(0.5);
+    synthesizer.setDepth(1);
+    ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(synthesizer.createGraph());
+    mbt.enableExtended(true);
+    mbt.setGenerator(new RandomPathGenerator(new EdgeCoverage(1.0)));
+    int steps = 0;
+    while (mbt.hasNextStep() && steps < 100000) {
+      mbt.getNextStep();
+      steps++;
+    }
+    assertEquals(1.0, mbt.getGenerator().getConditionFulfilment(), 0.0001);
+  }
+}
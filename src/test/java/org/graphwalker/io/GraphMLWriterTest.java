@@ -0,0 +1,128 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.ModelBasedTesting;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+
+public class GraphMLWriterTest extends TestCase {
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ModelBasedTesting.getInstance().reset();
+    file = File.createTempFile("graphwalker", ".graphml");
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    file.delete();
+    super.tearDown();
+  }
+
+  private Graph load(String fileOrFolder) {
+    GraphML modelHandler = new GraphML();
+    modelHandler.load(fileOrFolder);
+    return modelHandler.getModel();
+  }
+
+  private byte[] write(Graph graph, boolean printIndex) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new GraphMLWriter(printIndex).write(graph, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * @return The elements of the graph, sorted since the graph does not keep the order of its elements
+   */
+  private String describe(Graph graph) {
+    List<String> elements = new ArrayList<String>();
+    for (Vertex vertex : graph.getVertices()) {
+      elements.add(vertex.getLabelKey() + " " + vertex.getReqTagKey());
+    }
+    for (Edge edge : graph.getEdges()) {
+      elements.add(graph.getSource(edge).getLabelKey() + " " + edge.getLabelKey() + " [" + edge.getGuardKey() + "] /" + edge.getActionsKey() + " "
+          + edge.getReqTagKey() + " " + graph.getDest(edge).getLabelKey());
+    }
+    Collections.sort(elements);
+    return elements.toString();
+  }
+
+  public void testRoundTrip() throws IOException {
+    Graph graph = load("graphml/reqtags/ExtendedMain.graphml");
+    new GraphMLWriter(false).write(graph, file);
+    Graph reloaded = load(file.getPath());
+    assertEquals(graph.getVertexCount(), reloaded.getVertexCount());
+    assertEquals(graph.getEdgeCount(), reloaded.getEdgeCount());
+    assertEquals(describe(graph), describe(reloaded));
+  }
+
+  public void testDeterministic() throws IOException {
+    Graph graph = load("graphml/merging");
+    byte[] first = write(graph, true);
+    assertTrue(new String(first, "UTF-8").contains("INDEX="));
+    assertTrue(Arrays.equals(first, write(graph, true)));
+    assertTrue(Arrays.equals(first, write(load("graphml/merging"), true)));
+
+    new GraphMLWriter(false).write(graph, file);
+    byte[] reloaded = write(load(file.getPath()), false);
+    assertFalse(new String(reloaded, "UTF-8").contains("INDEX="));
+    assertTrue(Arrays.equals(write(graph, false), reloaded));
+  }
+
+  public void testGzip() throws IOException {
+    Graph graph = load("graphml/reqtags/ExtendedMain.graphml");
+    GraphMLWriter writer = new GraphMLWriter(false);
+    writer.setGzip(true);
+    writer.write(graph, file);
+
+    GZIPInputStream in = new GZIPInputStream(new FileInputStream(file));
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      byte[] buffer = new byte[4096];
+      for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+        out.write(buffer, 0, read);
+      }
+    } finally {
+      in.close();
+    }
+    assertTrue(Arrays.equals(write(graph, false), out.toByteArray()));
+  }
+}
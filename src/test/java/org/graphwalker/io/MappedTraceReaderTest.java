@@ -0,0 +1,156 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.io.MappedTraceReader.Cursor;
+import org.graphwalker.io.MappedTraceReader.RangeScanner;
+import org.graphwalker.io.TraceReader.TraceRecord;
+
+public class MappedTraceReaderTest extends TestCase {
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = File.createTempFile("trace", ".bin");
+    file.deleteOnExit();
+    TraceWriter writer = new TraceWriter(file);
+    for (int i = 0; i < 1000; i++) {
+      writer.writeEdge(i % 7);
+      writer.writeVertex(i % 5, "x=" + (i / 3));
+      if (i % 11 == 0) {
+        writer.writeRequirement("REQ" + i, i % 2 == 0);
+      }
+    }
+    writer.close();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    file.delete();
+  }
+
+  private List<TraceRecord> readAll() {
+    List<TraceRecord> records = new ArrayList<TraceRecord>();
+    TraceReader reader = new TraceReader(file);
+    TraceRecord record;
+    while ((record = reader.next()) != null) {
+      records.add(record);
+    }
+    reader.close();
+    return records;
+  }
+
+  private void assertRecordEquals(TraceRecord expected, TraceRecord actual) {
+    assertEquals(expected.kind, actual.kind);
+    assertEquals(expected.id, actual.id);
+    assertEquals(expected.time, actual.time);
+    assertEquals(expected.data, actual.data);
+    assertEquals(expected.requirement, actual.requirement);
+    assertEquals(expected.passed, actual.passed);
+  }
+
+  public void testRandomAccess() {
+    List<TraceRecord> records = readAll();
+    MappedTraceReader reader = new MappedTraceReader(file, 64);
+    assertEquals(records.size(), reader.getRecordCount());
+    for (int i = records.size() - 1; i >= 0; i--) {
+      assertRecordEquals(records.get(i), reader.getRecord(i));
+    }
+
+    Cursor cursor = reader.getCursor(1001);
+    for (int i = 1001; i < records.size(); i++) {
+      assertEquals(i, cursor.getIndex());
+      assertRecordEquals(records.get(i), cursor.next());
+    }
+    assertNull(cursor.next());
+    reader.close();
+  }
+
+  public void testParallelScan() throws InterruptedException {
+    List<TraceRecord> records = readAll();
+    final int[] expected = new int[7];
+    for (TraceRecord record : records) {
+      if (record.kind == TraceWriter.EDGE) {
+        expected[record.id]++;
+      }
+    }
+
+    MappedTraceReader reader = new MappedTraceReader(file, 100);
+    List<long[]> results = reader.scan(new RangeScanner<long[]>() {
+      @Override
+      public long[] scan(Cursor cursor) {
+        // The first and last record of the range, followed by the edge counts
+        long[] result = new long[9];
+        result[0] = cursor.getIndex();
+        TraceRecord record;
+        while ((record = cursor.next()) != null) {
+          if (record.kind == TraceWriter.EDGE) {
+            result[2 + record.id]++;
+          }
+        }
+        result[1] = cursor.getIndex();
+        return result;
+      }
+    }, 3);
+    reader.close();
+
+    assertTrue(results.size() > 1);
+    long next = 0;
+    int[] counts = new int[7];
+    for (long[] result : results) {
+      assertEquals(next, result[0]);
+      next = result[1];
+      for (int i = 0; i < counts.length; i++) {
+        counts[i] += result[2 + i];
+      }
+    }
+    assertEquals(records.size(), next);
+    for (int i = 0; i < counts.length; i++) {
+      assertEquals(expected[i], counts[i]);
+    }
+  }
+
+  public void testEmptyTrace() throws InterruptedException {
+    new TraceWriter(file).close();
+    MappedTraceReader reader = new MappedTraceReader(file);
+    assertEquals(0, reader.getRecordCount());
+    assertNull(reader.getCursor(0).next());
+    assertEquals(1, reader.scan(new RangeScanner<Object>() {
+      @Override
+      public Object scan(Cursor cursor) {
+        return cursor.next();
+      }
+    }, 2).size());
+    reader.close();
+  }
+}
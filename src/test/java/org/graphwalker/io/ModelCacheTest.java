@@ -0,0 +1,187 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.ModelBasedTesting;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+
+public class ModelCacheTest extends TestCase {
+
+  private File folder;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    ModelBasedTesting.getInstance().reset();
+    folder = File.createTempFile("modelcache", "");
+    folder.delete();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    ModelBasedTesting.getInstance().setModelCache(null);
+    delete(folder);
+    super.tearDown();
+  }
+
+  private void delete(File file) {
+    if (file.isDirectory()) {
+      for (File child : file.listFiles()) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+
+  private Graph load(String fileOrFolder, ModelCache cache) {
+    GraphML modelHandler = new GraphML();
+    modelHandler.setModelCache(cache);
+    modelHandler.load(fileOrFolder);
+    return modelHandler.getModel();
+  }
+
+  private byte[] write(Graph graph) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new GraphMLWriter(true).write(graph, out);
+    return out.toByteArray();
+  }
+
+  /**
+   * @return The keys of the elements, by index, since the graph does not keep the order of its elements
+   */
+  private String describe(Graph graph) {
+    Map<Integer, String> elements = new TreeMap<Integer, String>();
+    for (Vertex vertex : graph.getVertices()) {
+      elements.put(vertex.getIndexKey(), vertex.getLabelKey() + " " + vertex.getReqTagKey());
+    }
+    for (Edge edge : graph.getEdges()) {
+      elements.put(edge.getIndexKey(), edge.getLabelKey() + " " + edge.getParameterKey() + " [" + edge.getGuardKey() + "] /" + edge.getActionsKey() + " "
+          + edge.getReqTagKey());
+    }
+    return elements.toString();
+  }
+
+  private void copy(File from, File to) throws IOException {
+    FileInputStream in = new FileInputStream(from);
+    FileOutputStream out = new FileOutputStream(to);
+    try {
+      out.getChannel().transferFrom(in.getChannel(), 0, from.length());
+    } finally {
+      in.close();
+      out.close();
+    }
+  }
+
+  public void testCachedModelIsEqual() throws IOException {
+    ModelCache cache = new ModelCache(new File(folder, "cache"));
+    Graph parsed = load("graphml/merging", null);
+    Graph first = load("graphml/merging", cache);
+    assertEquals(0, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(1, cache.getFolder().listFiles().length);
+
+    Graph cached = load("graphml/merging", cache);
+    assertEquals(1, cache.getHits());
+    assertNotSame(first, cached);
+    assertEquals(parsed.getLabelKey(), cached.getLabelKey());
+    assertEquals(parsed.getVertexCount(), cached.getVertexCount());
+    assertEquals(parsed.getEdgeCount(), cached.getEdgeCount());
+    assertTrue(Arrays.equals(write(parsed), write(cached)));
+  }
+
+  public void testGuardsActionsAndRequirements() throws IOException {
+    ModelCache cache = new ModelCache(folder);
+    Graph parsed = load("graphml/reqtags/ExtendedMain.graphml", cache);
+    Graph cached = load("graphml/reqtags/ExtendedMain.graphml", cache);
+    assertEquals(1, cache.getHits());
+    assertTrue(Arrays.equals(write(parsed), write(cached)));
+    assertTrue(describe(parsed).contains("req 79"));
+    assertEquals(describe(parsed), describe(cached));
+  }
+
+  public void testChangedModelIsNotCached() throws IOException {
+    ModelCache cache = new ModelCache(new File(folder, "cache"));
+    folder.mkdirs();
+    File model = new File(folder, "model.graphml");
+    copy(new File(getClass().getResource("/graphml/reqtags/ExtendedMain.graphml").getFile()), model);
+    load(model.getPath(), cache);
+
+    RandomAccessFile file = new RandomAccessFile(model, "rw");
+    try {
+      file.seek(file.length());
+      file.write('\n');
+    } finally {
+      file.close();
+    }
+    load(model.getPath(), cache);
+    assertEquals(0, cache.getHits());
+    assertEquals(2, cache.getMisses());
+    assertEquals(2, cache.getFolder().listFiles().length);
+  }
+
+  public void testCorruptCacheIsIgnored() throws IOException {
+    ModelCache cache = new ModelCache(folder);
+    Graph parsed = load("graphml/merging", cache);
+    File cached = folder.listFiles()[0];
+    RandomAccessFile file = new RandomAccessFile(cached, "rw");
+    try {
+      file.setLength(cached.length() / 2);
+    } finally {
+      file.close();
+    }
+
+    Graph reparsed = load("graphml/merging", cache);
+    assertEquals(0, cache.getHits());
+    assertTrue(Arrays.equals(write(parsed), write(reparsed)));
+
+    load("graphml/merging", cache);
+    assertEquals(1, cache.getHits());
+  }
+
+  public void testReadGraph() throws IOException {
+    ModelBasedTesting mbt = ModelBasedTesting.getInstance();
+    ModelCache cache = new ModelCache(folder);
+    mbt.setModelCache(cache);
+    mbt.readGraph("graphml/merging");
+    byte[] parsed = write(mbt.getGraph());
+    mbt.reset();
+    mbt.readGraph("graphml/merging");
+    assertEquals(1, cache.getHits());
+    assertTrue(Arrays.equals(parsed, write(mbt.getGraph())));
+  }
+}
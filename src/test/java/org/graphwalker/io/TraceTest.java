@@ -0,0 +1,175 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.ModelBasedTesting;
+import org.graphwalker.Util;
+import org.graphwalker.conditions.EdgeCoverage;
+import org.graphwalker.generators.RandomPathGenerator;
+import org.graphwalker.generators.ReplayGenerator;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+import org.graphwalker.io.TraceReader.TraceRecord;
+
+public class TraceTest extends TestCase {
+
+  private File file;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    file = File.createTempFile("trace", ".bin");
+    file.deleteOnExit();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    file.delete();
+  }
+
+  private Graph createGraph() {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+    Vertex v3 = Util.addVertexToGraph(graph, "V3");
+    Util.addEdgeToGraph(graph, start, v1, "e_Start", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v2, "e_1_2", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v3, "e_1_3", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v1, "e_2_1", null, null, null);
+    Util.addEdgeToGraph(graph, v2, v3, "e_2_3", null, null, null);
+    Util.addEdgeToGraph(graph, v3, v1, "e_3_1", null, null, null);
+    Util.addEdgeToGraph(graph, v3, v3, "e_3_3", null, null, null);
+    return graph;
+  }
+
+  public void testRecords() throws IOException {
+    char[] chars = new char[100000];
+    Arrays.fill(chars, 'x');
+    String longData = new String(chars);
+
+    TraceWriter writer = new TraceWriter(file);
+    writer.writeEdge(3);
+    writer.writeVertex(1, "y=1");
+    writer.writeEdge(300000);
+    writer.writeVertex(2, "y=1");
+    writer.writeRequirement("REQ001", false);
+    writer.writeRequirement("REQ002", true);
+    writer.writeVertex(5, longData);
+    writer.writeVertex(6, null);
+    writer.close();
+
+    TraceReader reader = new TraceReader(file);
+    TraceRecord record = reader.next();
+    assertEquals(TraceWriter.EDGE, record.kind);
+    assertEquals(3, record.id);
+    assertTrue(record.time >= reader.getStartTime());
+    record = reader.next();
+    assertEquals(TraceWriter.VERTEX, record.kind);
+    assertEquals(1, record.id);
+    assertEquals("y=1", record.data);
+    record = reader.next();
+    assertEquals(TraceWriter.EDGE, record.kind);
+    assertEquals(300000, record.id);
+    record = reader.next();
+    assertEquals(2, record.id);
+    assertEquals("y=1", record.data);
+    record = reader.next();
+    assertEquals(TraceWriter.REQUIREMENT, record.kind);
+    assertEquals("REQ001", record.requirement);
+    assertFalse(record.passed);
+    record = reader.next();
+    assertEquals("REQ002", record.requirement);
+    assertTrue(record.passed);
+    record = reader.next();
+    assertEquals(5, record.id);
+    assertEquals(longData, record.data);
+    record = reader.next();
+    assertEquals(6, record.id);
+    assertEquals(longData, record.data);
+    assertNull(reader.next());
+    reader.close();
+  }
+
+  public void testReplay() throws Exception {
+    ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(createGraph());
+    mbt.setGenerator(new RandomPathGenerator(new EdgeCoverage(1.0)));
+    TraceWriter writer = new TraceWriter(file);
+    mbt.setTraceWriter(writer);
+    ArrayList<String> path = new ArrayList<String>();
+    while (mbt.hasNextStep()) {
+      String[] step = mbt.getNextStep();
+      path.add(step[0] + " " + step[1]);
+    }
+    writer.close();
+
+    ModelBasedTesting replay = new ModelBasedTesting();
+    replay.setGraph(createGraph());
+    replay.setGenerator(new ReplayGenerator(file));
+    ArrayList<String> replayed = new ArrayList<String>();
+    while (replay.hasNextStep()) {
+      String[] step = replay.getNextStep();
+      replayed.add(step[0] + " " + step[1]);
+    }
+    assertEquals(path, replayed);
+    int[] statistics = replay.getMachine().getStatistics();
+    assertEquals(statistics[0], statistics[1]);
+  }
+
+  public void testReplayOfAnotherModelFails() throws Exception {
+    ModelBasedTesting mbt = new ModelBasedTesting();
+    mbt.setGraph(createGraph());
+    mbt.setGenerator(new RandomPathGenerator(new EdgeCoverage(1.0)));
+    TraceWriter writer = new TraceWriter(file);
+    mbt.setTraceWriter(writer);
+    while (mbt.hasNextStep()) {
+      mbt.getNextStep();
+    }
+    writer.close();
+
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Util.addEdgeToGraph(graph, start, Util.addVertexToGraph(graph, "V1"), "e_Start", null, null, null);
+    ModelBasedTesting replay = new ModelBasedTesting();
+    replay.setGraph(graph);
+    replay.setGenerator(new ReplayGenerator(file));
+    try {
+      while (replay.hasNextStep()) {
+        replay.getNextStep();
+      }
+      fail("The replay should not be possible");
+    } catch (RuntimeException e) {
+      // Expected
+    }
+  }
+}
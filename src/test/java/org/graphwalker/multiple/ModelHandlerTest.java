@@ -10,8 +10,10 @@ import org.graphwalker.conditions.EdgeCoverage;
 import org.graphwalker.conditions.NeverCondition;
 import org.graphwalker.conditions.ReachedVertex;
 import org.graphwalker.generators.RandomPathGenerator;
+import org.graphwalker.multipleModels.LeastCoveredModelSelection;
 import org.graphwalker.multipleModels.ModelAPI;
 import org.graphwalker.multipleModels.ModelHandler;
+import org.graphwalker.multipleModels.RoundRobinModelSelection;
 import org.junit.Ignore;
 import org.junit.Test;
 
@@ -106,6 +108,68 @@ public class ModelHandlerTest {
     assertTrue(modelhandler.isAllModelsDone());
   }
 
+  @Test
+  public void executeTwoModelCooperatively() throws Exception {
+    ModelHandler modelhandler = new ModelHandler();
+    modelhandler.setCooperative(true);
+    modelhandler.add("A", new Model_A_API("graphml/multiple/switch/A.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.add("B", new Model_B_API("graphml/multiple/switch/B.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.execute("A");
+    assertTrue(modelhandler.isAllModelsDone());
+  }
+
+  @Test
+  public void executeThreeModelCooperatively() throws Exception {
+    ModelHandler modelhandler = new ModelHandler();
+    modelhandler.setCooperative(true);
+    modelhandler.add("A", new Model_A_API("graphml/multiple/switch/A.graphml", true, new RandomPathGenerator(new ReachedVertex("v_WhatsNew"))));
+    modelhandler.add("B", new Model_B_API("graphml/multiple/switch/B.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.add("C", new Model_C_API("graphml/multiple/switch/C.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.execute("A");
+    assertTrue(modelhandler.isAllModelsDone());
+  }
+
+  @Test
+  public void executeThreeModelConcurrently() throws Exception {
+    ModelHandler modelhandler = new ModelHandler();
+    modelhandler.add("A", new Model_A_API("graphml/multiple/switch/A.graphml", true, new RandomPathGenerator(new ReachedVertex("v_WhatsNew"))));
+    modelhandler.add("B", new Model_B_API("graphml/multiple/switch/B.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.add("C", new Model_C_API("graphml/multiple/switch/C.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.executeConcurrently("A");
+    assertTrue(modelhandler.isAllModelsDone());
+  }
+
+  @Test
+  public void executeIndependentModelsConcurrently() throws Exception {
+    ModelHandler modelhandler = new ModelHandler();
+    modelhandler.add("A1", new Model_A_API("graphml/multiple/switch/A.graphml", true, new RandomPathGenerator(new ReachedVertex("v_WhatsNew"))));
+    modelhandler.add("A2", new Model_A_API("graphml/multiple/switch/A.graphml", true, new RandomPathGenerator(new ReachedVertex("v_WhatsNew"))));
+    modelhandler.executeConcurrently("A1", "A2");
+    assertTrue(modelhandler.isAllModelsDone());
+  }
+
+  @Test
+  public void executeThreeModelRoundRobin() throws Exception {
+    ModelHandler modelhandler = new ModelHandler();
+    modelhandler.setSelectionPolicy(new RoundRobinModelSelection());
+    modelhandler.add("A", new Model_A_API("graphml/multiple/switch/A.graphml", true, new RandomPathGenerator(new ReachedVertex("v_WhatsNew"))));
+    modelhandler.add("B", new Model_B_API("graphml/multiple/switch/B.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.add("C", new Model_C_API("graphml/multiple/switch/C.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.execute("A");
+    assertTrue(modelhandler.isAllModelsDone());
+  }
+
+  @Test
+  public void executeThreeModelLeastCovered() throws Exception {
+    ModelHandler modelhandler = new ModelHandler();
+    modelhandler.setSelectionPolicy(new LeastCoveredModelSelection());
+    modelhandler.add("A", new Model_A_API("graphml/multiple/switch/A.graphml", true, new RandomPathGenerator(new ReachedVertex("v_WhatsNew"))));
+    modelhandler.add("B", new Model_B_API("graphml/multiple/switch/B.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.add("C", new Model_C_API("graphml/multiple/switch/C.graphml", true, new RandomPathGenerator(new EdgeCoverage(1.0))));
+    modelhandler.execute("A");
+    assertTrue(modelhandler.isAllModelsDone());
+  }
+
   @Test
   public void getStatistics() throws Exception {
     ModelHandler modelhandler = new ModelHandler();
@@ -0,0 +1,77 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.statistics;
+
+import junit.framework.TestCase;
+
+import org.graphwalker.Util;
+import org.graphwalker.graph.Edge;
+import org.graphwalker.graph.Graph;
+import org.graphwalker.graph.Vertex;
+
+public class EdgeSequenceCoverageStatisticsTest extends TestCase {
+
+  public void testDeadEnd() {
+    Graph graph = new Graph();
+    Vertex start = Util.addVertexToGraph(graph, "Start");
+    Vertex v1 = Util.addVertexToGraph(graph, "V1");
+    Vertex v2 = Util.addVertexToGraph(graph, "V2");
+    Vertex v3 = Util.addVertexToGraph(graph, "V3");
+    Edge e1 = Util.addEdgeToGraph(graph, start, v1, "E1", null, null, null);
+    Edge e2 = Util.addEdgeToGraph(graph, v1, v2, "E2", null, null, null);
+    Util.addEdgeToGraph(graph, v1, v3, "E3", null, null, null);
+    Edge e4 = Util.addEdgeToGraph(graph, v2, v1, "E4", null, null, null);
+
+    // E1-E2, E1-E3, E2-E4, E4-E2 and E4-E3. V3 is a dead end.
+    EdgeSequenceCoverageStatistics statistics = new EdgeSequenceCoverageStatistics(graph, 2);
+    assertEquals(5, statistics.getMax());
+    assertEquals(0, statistics.getCurrent());
+    statistics.addProgress(start);
+    statistics.addProgress(e1);
+    assertEquals(0, statistics.getCurrent());
+    statistics.addProgress(v1);
+    statistics.addProgress(e2);
+    assertEquals(1, statistics.getCurrent());
+    statistics.addProgress(e4);
+    statistics.addProgress(e2);
+    assertEquals(3, statistics.getCurrent());
+    statistics.addProgress(e4);
+    assertEquals(3, statistics.getCurrent());
+  }
+
+  public void testLargeModel() {
+    Graph graph = new Graph();
+    Vertex[] vertices = new Vertex[1000];
+    for (int i = 0; i < vertices.length; i++) {
+      vertices[i] = Util.addVertexToGraph(graph, "V" + i);
+    }
+    for (int i = 0; i < vertices.length; i++) {
+      for (int j = 1; j <= 8; j++) {
+        Util.addEdgeToGraph(graph, vertices[i], vertices[(i + j) % vertices.length], "E" + i + "_" + j, null, null, null);
+      }
+    }
+    EdgeSequenceCoverageStatistics statistics = new EdgeSequenceCoverageStatistics(graph, 3);
+    assertEquals(8000 * 8 * 8, statistics.getMax());
+  }
+}
@@ -0,0 +1,73 @@
+// This file is part of the GraphWalker java package
+// The MIT License
+//
+// Copyright (c) 2010 graphwalker.org
+//
+// Permission is hereby granted, free of charge, to any person obtaining a copy
+// of this software and associated documentation files (the "Software"), to deal
+// in the Software without restriction, including without limitation the rights
+// to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+// copies of the Software, and to permit persons to whom the Software is
+// furnished to do so, subject to the following conditions:
+//
+// The above copyright notice and this permission notice shall be included in
+// all copies or substantial portions of the Software.
+//
+// THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+// IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+// FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+// AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+// LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+// OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+// THE SOFTWARE.
+
+package org.graphwalker.statistics;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+    assertEquals(0.0, histogram.getMean(), 0.0);
+  }
+
+  public void testSmallValuesAreExact() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 50; i++) {
+      histogram.record(i);
+    }
+    assertEquals(50, histogram.getCount());
+    assertEquals(25, histogram.getValueAtPercentile(50));
+    assertEquals(50, histogram.getValueAtPercentile(100));
+    assertEquals(50, histogram.getMax());
+    assertEquals(25.5, histogram.getMean(), 0.0001);
+  }
+
+  public void testPercentilesWithinPrecision() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 100000; i++) {
+      histogram.record(i * 1000);
+    }
+    assertEquals(50000000, histogram.getValueAtPercentile(50), 50000000 / 32);
+    assertEquals(99000000, histogram.getValueAtPercentile(99), 99000000 / 32);
+    assertEquals(99900000, histogram.getValueAtPercentile(99.9), 99900000 / 32);
+    assertEquals(100000000, histogram.getMax());
+  }
+
+  public void testOutliers() {
+    LatencyHistogram histogram = new LatencyHistogram(4);
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(2, histogram.getCount());
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals(Long.MAX_VALUE, histogram.getMax());
+    assertTrue(histogram.getValueAtPercentile(100) > 1L << 41);
+
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMax());
+  }
+}